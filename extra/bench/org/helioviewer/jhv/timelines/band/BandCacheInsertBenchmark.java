@@ -0,0 +1,62 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Insertion of downloads into an empty cache, whole and in blocks of 21 days like the downloader
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BandCacheInsertBenchmark {
+
+    private static final int BLOCK = 21 * 1440;
+
+    @Param({"BandCacheMinute", "BandCacheAll"})
+    public String cache;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private BenchData data;
+
+    @Setup
+    public void setup() {
+        data = new BenchData(size);
+    }
+
+    @Benchmark
+    public BandCache insertWhole() {
+        BandCache c = BenchData.createCache(cache);
+        c.addToCache(BenchData.yAxis, data.values, data.dates);
+        return c;
+    }
+
+    @Benchmark
+    public BandCache insertBlocks() {
+        BandCache c = BenchData.createCache(cache);
+        for (int from = 0; from < size; from += BLOCK) {
+            int to = Math.min(from + BLOCK, size);
+            float[] values = new float[to - from];
+            long[] dates = new long[to - from];
+            System.arraycopy(data.values, from, values, 0, values.length);
+            System.arraycopy(data.dates, from, dates, 0, dates.length);
+            c.addToCache(BenchData.yAxis, values, dates);
+        }
+        return c;
+    }
+
+}
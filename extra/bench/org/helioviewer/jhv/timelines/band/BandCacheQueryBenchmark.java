@@ -0,0 +1,70 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Queries of a filled cache for a window in the middle of the data, zoom is the fraction of the data covered.
+// getStats is the successor of getBounds.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BandCacheQueryBenchmark {
+
+    private static final double GRAPH_WIDTH = 3 * 1920;
+
+    @Param({"BandCacheMinute", "BandCacheAll"})
+    public String cache;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"1", "0.1", "0.01"})
+    public double zoom;
+
+    private BandCache bandCache;
+    private long start;
+    private long end;
+
+    @Setup
+    public void setup() {
+        BenchData data = new BenchData(size);
+        bandCache = BenchData.createCache(cache);
+        bandCache.addToCache(BenchData.yAxis, data.values, data.dates);
+
+        long span = (long) ((data.end() - BenchData.START) * zoom);
+        start = BenchData.START + (data.end() - BenchData.START - span) / 2;
+        end = start + span;
+        bandCache.getStats(start, end); // builds the lazy summaries
+    }
+
+    @Benchmark
+    public void getValues(Blackhole bh) {
+        bandCache.getValues(GRAPH_WIDTH, start, end, (milli, value) -> bh.consume(value));
+    }
+
+    @Benchmark
+    public BandStats getStats() {
+        return bandCache.getStats(start, end);
+    }
+
+    @Benchmark
+    public float getValue() {
+        return bandCache.getValue((start + end) / 2);
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import okio.Buffer;
+
+// Parse of a timeline download of size entries, streaming as downloaded and through the org.json tree
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BandResponseBenchmark {
+
+    @Param({"30240", "302400"}) // 21 days at 1 minute and at 6 seconds
+    public int size;
+
+    private byte[] bytes;
+    private String string;
+
+    @Setup
+    public void setup() {
+        BenchData data = new BenchData(size);
+        StringBuilder sb = new StringBuilder(size * 26);
+        sb.append("{\"timeline\":\"GOES_XRSB\",\"multiplier\":1,\"data\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append('[').append(data.dates[i] / 1000).append(',').append(String.format(Locale.ROOT, "%.4e", data.values[i])).append(']');
+        }
+        sb.append("]}");
+        string = sb.toString();
+        bytes = string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public BandResponse parseStreaming() throws Exception {
+        return BandResponseParser.parse(new Buffer().write(bytes), bytes.length);
+    }
+
+    @Benchmark
+    public BandResponse parseJSONObject() {
+        return new BandResponse(new JSONObject(new String(bytes, StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,38 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.util.SplittableRandom;
+
+import org.helioviewer.jhv.timelines.draw.YAxis;
+
+// Synthetic band data at a cadence of one minute: a slow oscillation with noise and a few flares
+class BenchData {
+
+    static final long START = 1577836800000L; // 2020-01-01
+    static final long CADENCE = 60000;
+    static final YAxis yAxis = new YAxis(1e-9, 1e-3, YAxis.generateScale("logarithmic", "W/m^2"));
+
+    final long[] dates;
+    final float[] values;
+
+    BenchData(int size) {
+        dates = new long[size];
+        values = new float[size];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < size; i++) {
+            dates[i] = START + i * CADENCE;
+            double v = 1e-6 * (1.5 + Math.sin(i / 1440.) + 0.2 * random.nextDouble());
+            if (random.nextInt(20000) == 0)
+                v *= 100;
+            values[i] = (float) v;
+        }
+    }
+
+    long end() {
+        return dates[dates.length - 1];
+    }
+
+    static BandCache createCache(String type) {
+        return "BandCacheAll".equals(type) ? new BandCacheAll() : new BandCacheMinute();
+    }
+
+}
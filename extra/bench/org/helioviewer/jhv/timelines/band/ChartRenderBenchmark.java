@@ -0,0 +1,98 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.helioviewer.jhv.timelines.draw.TimeAxis;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Off-screen drawing of a band through Band.buildGraph and Band.draw, the code behind Band.updateGraph
+// and ChartDrawGraphPane.drawData, without the Swing state of the timeline panel; zoom is the fraction
+// of the data covered by the time axis
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChartRenderBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 400;
+
+    @Param({"BandCacheMinute", "BandCacheAll"})
+    public String cache;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"1", "0.1", "0.01"})
+    public double zoom;
+
+    private final Rectangle graphArea = new Rectangle(0, 0, WIDTH, HEIGHT);
+    private Band band;
+    private TimeAxis timeAxis;
+    private BufferedImage image;
+    private Graphics2D g;
+
+    @Setup
+    public void setup() {
+        JSONObject jo = new JSONObject().put("name", "Bench_" + cache).put("bandCacheType", cache)
+                .put("range", new JSONArray().put(1e-9).put(1e-3)).put("scale", "logarithmic").put("unitLabel", "W/m^2");
+        band = Band.createFromType(new BandType(jo));
+        band.setEnabled(false); // no graph updates from the empty timeline panel while adding
+        BenchData data = new BenchData(size);
+        band.addToCache(data.values, data.dates);
+        band.setEnabled(true);
+
+        long span = (long) ((data.end() - BenchData.START) * zoom);
+        long start = BenchData.START + (data.end() - BenchData.START - span) / 2;
+        timeAxis = new TimeAxis(start, start + span);
+
+        // the layer image as set up by ChartDrawGraphPane.drawData, but for the UI font which needs a display
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setClip(graphArea);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public Band buildGraph() {
+        band.buildGraph(graphArea, timeAxis);
+        return band;
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setComposite(AlphaComposite.SrcOver);
+        band.buildGraph(graphArea, timeAxis);
+        band.draw(g, graphArea, timeAxis, null);
+        return image;
+    }
+
+}
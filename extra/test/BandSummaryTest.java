@@ -0,0 +1,89 @@
+package org.helioviewer.jhv.timelines.band;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.helioviewer.jhv.timelines.draw.YAxis;
+import org.junit.Test;
+
+public class BandSummaryTest {
+
+    private static final int LENGTH = 300000;
+    private static final int QUERIES = 200;
+
+    private final Random random = new Random(42);
+
+    private float[] randomValues() {
+        float[] values = new float[LENGTH];
+        for (int i = 0; i < LENGTH; i++)
+            values[i] = random.nextInt(10) == 0 ? YAxis.BLANK : (float) (1000 * random.nextGaussian());
+        return values;
+    }
+
+    // checks bounds and statistics of random ranges against a scan of the values
+    private void check(float[] values, BandSummary summary) {
+        for (int q = 0; q < QUERIES; q++) {
+            int from = random.nextInt(LENGTH);
+            int to = q % 10 == 0 ? LENGTH : from + 1 + random.nextInt(LENGTH - from);
+            if (q % 50 == 0)
+                from = 0;
+
+            int count = 0;
+            double sum = 0;
+            float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+            float[] sorted = new float[to - from];
+            for (int i = from; i < to; i++) {
+                float v = values[i];
+                if (v != YAxis.BLANK) {
+                    sorted[count++] = v;
+                    sum += v;
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+            }
+
+            float[] bounds = {Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+            summary.bounds(from, to, bounds);
+            assertEquals(min, bounds[0], 0);
+            assertEquals(max, bounds[1], 0);
+
+            BandStats.Accumulator acc = new BandStats.Accumulator();
+            summary.accumulate(from, to, acc);
+            BandStats stats = acc.build();
+            assertEquals(count, stats.count);
+            assertEquals(min, stats.min, 0);
+            assertEquals(max, stats.max, 0);
+            assertEquals(sum, stats.sum, 1e-9 * Math.abs(sum) + 1e-3);
+
+            if (count > 1000) { // the sample is too thin for short ranges
+                Arrays.sort(sorted, 0, count);
+                float median = sorted[count / 2];
+                assertTrue(Math.abs(stats.median() - median) <= 0.02 * (max - min));
+            }
+        }
+    }
+
+    @Test
+    public void testSummary() {
+        float[] values = randomValues();
+        check(values, new BandSummary(values, LENGTH));
+    }
+
+    @Test
+    public void testInvalidate() {
+        float[] values = randomValues();
+        BandSummary summary = new BandSummary(values, LENGTH);
+        check(values, summary);
+
+        for (int n = 0; n < 5000; n++) {
+            int i = random.nextInt(LENGTH);
+            values[i] = random.nextInt(10) == 0 ? YAxis.BLANK : (float) (5000 * random.nextGaussian());
+            summary.invalidate(i);
+        }
+        check(values, summary);
+    }
+
+}
@@ -4,12 +4,14 @@ import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.TimeZone;
 
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 
+import org.helioviewer.jhv.export.BatchExport;
 import org.helioviewer.jhv.gui.JHVFrame;
 import org.helioviewer.jhv.gui.UIGlobals;
 import org.helioviewer.jhv.gui.UITimer;
@@ -35,6 +37,10 @@ public class JHelioviewer {
         // Per default, the US locale should be used
         Locale.setDefault(Locale.US);
 
+        if (args.length != 0 && args[0].equals("--batch")) {
+            System.exit(batch(Arrays.copyOfRange(args, 1, args.length)) ? 0 : 1);
+        }
+
         if (isHeadless())
             throw new Exception("This application cannot run in a headless configuration.");
 
@@ -107,6 +113,24 @@ public class JHelioviewer {
         });
     }
 
+    // Movie export of job files without a display, see BatchExport
+    private static boolean batch(String[] jobFiles) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        Platform.init();
+        JHVGlobals.createDirs();
+        Log.init();
+        Log.info("JHelioviewer batch export started with job files: " + String.join(" ", jobFiles));
+
+        JHVGlobals.getVersion();
+        Settings.load();
+        System.setProperty("org.sqlite.tmpdir", JHVGlobals.libCacheDir);
+        System.setProperty("org.lwjgl.system.SharedLibraryExtractPath", JHVGlobals.libCacheDir);
+
+        JHVInit.init();
+        return BatchExport.run(Arrays.asList(jobFiles));
+    }
+
     private static boolean isHeadless() {
         if (GraphicsEnvironment.isHeadless()) {
             return true;
@@ -20,6 +20,9 @@ public class Settings {
             super.setProperty("display.time", "Observer");
             super.setProperty("timeout.read", "120000");
             super.setProperty("timeout.connect", "30000");
+            super.setProperty("jpip.channels", "3");
+            super.setProperty("decode.stripes", "1");
+            super.setProperty("video.stream", "true");
             super.setProperty("update.next", "0");
             super.setProperty("video.format", "H264");
         }
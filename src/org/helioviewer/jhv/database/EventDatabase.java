@@ -6,14 +6,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 
 import javax.annotation.Nullable;
@@ -24,6 +26,7 @@ import org.helioviewer.jhv.base.Pair;
 import org.helioviewer.jhv.base.interval.Interval;
 import org.helioviewer.jhv.base.interval.RequestCache;
 import org.helioviewer.jhv.events.JHVEvent;
+import org.helioviewer.jhv.events.JHVEventSummary;
 import org.helioviewer.jhv.events.SWEK;
 import org.helioviewer.jhv.events.SWEKGroup;
 import org.helioviewer.jhv.events.SWEKSupplier;
@@ -31,11 +34,20 @@ import org.helioviewer.jhv.io.JSONUtils;
 import org.helioviewer.jhv.threads.JHVThread;
 import org.helioviewer.jhv.threads.SingleExecutor;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
 public class EventDatabase {
 
+    // writes and the bookkeeping of the downloaded intervals on one thread, queries on a pool of readers
     private static final SingleExecutor executor = new SingleExecutor(new JHVThread.NamedClassThreadFactory(EventDatabaseThread.class, "EventDatabase"));
+    private static final int NUM_READERS = 3;
+    private static final ListeningExecutorService readers = MoreExecutors.listeningDecorator(
+            Executors.newFixedThreadPool(NUM_READERS, new JHVThread.NamedClassThreadFactory(EventDatabaseThread.Reader.class, "EventDatabase Reader")));
 
-    public record Event2Db(byte[] compressedJson, long start, long end, long archiv, String uid,
+    // summary is the JHVEventSummary of the event parsed without the full parameter set
+    public record Event2Db(byte[] compressedJson, byte[] summary, long start, long end, long archiv, String uid,
                            List<JHVDatabaseParam> paramList) {
     }
 
@@ -43,33 +55,45 @@ public class EventDatabase {
     public static int config_hash;
 
     private static final String INSERT_EVENT = "INSERT INTO events(uid) VALUES(?)";
-    private static final String INSERT_FULL_EVENT = "INSERT INTO events(type_id, uid, start, end, archiv, data) VALUES(?,?,?,?,?,?)";
+    private static final String UPSERT_EVENT = "INSERT INTO events(type_id, uid, start, end, archiv, data, summary) VALUES(?,?,?,?,?,?,?) " +
+            "ON CONFLICT(uid) DO UPDATE SET type_id=excluded.type_id, start=excluded.start, end=excluded.end, data=excluded.data, summary=excluded.summary";
     private static final String SELECT_EVENT_TYPE = "SELECT id FROM event_type WHERE name=? AND supplier=?";
     private static final String INSERT_EVENT_TYPE = "INSERT INTO event_type(name, supplier) VALUES(?,?)";
     private static final String INSERT_LINK = "INSERT INTO event_link(left_id, right_id) VALUES(?,?)";
     private static final String SELECT_EVENT_ID_FROM_UID = "SELECT id FROM events WHERE uid=?";
-    private static final String SELECT_LAST_INSERT = "SELECT last_insert_rowid()";
-    private static final String UPDATE_EVENT = "UPDATE events SET type_id=?, uid=?,  start=?, end=?, data=? WHERE id=?";
+    private static final int UID_CHUNK = 256;
+    private static final String SELECT_EVENT_IDS_FROM_UIDS = "SELECT uid, id FROM events WHERE uid IN (" + String.join(",", Collections.nCopies(UID_CHUNK, "?")) + ')';
     private static final String DELETE_DATERANGE = "DELETE FROM date_range where type_id=?";
     private static final String INSERT_DATERANGE = "INSERT INTO date_range(type_id,  start, end) VALUES(?,?,?)";
     private static final String SELECT_DATERANGE = "SELECT start, end FROM date_range where type_id=? order by start, end ";
     private static final String SELECT_LAST_EVENT = "SELECT end FROM events WHERE type_id=? order by end DESC LIMIT 1";
     private static final String SELECT_ASSOCIATIONS = "SELECT left_events.id, right_events.id FROM event_link " + "LEFT JOIN events AS left_events ON left_events.id=event_link.left_id " + "LEFT JOIN events AS right_events ON right_events.id=event_link.right_id " + "WHERE left_events.start BETWEEN ? AND ? and left_events.type_id=? order by left_events.start, left_events.end ";
-    private static final String SELECT_EVENT_BY_ID = "SELECT e.id, e.start, e.end, e.data, event_type.supplier FROM events AS e LEFT JOIN event_type ON e.type_id = event_type.id WHERE e.id=?";
+    private static final String SELECT_EVENT_BY_ID = "SELECT e.id, e.start, e.end, e.%s, event_type.supplier FROM events AS e LEFT JOIN event_type ON e.type_id = event_type.id WHERE e.id=?";
 
-    private static final HashMap<String, PreparedStatement> statements = new HashMap<>();
     private static final HashMap<SWEKSupplier, RequestCache> downloadedCache = new HashMap<>();
 
     private static PreparedStatement getPreparedStatement(String statement) throws Exception {
-        PreparedStatement pstat = statements.get(statement);
-        if (pstat == null) {
-            pstat = EventDatabaseThread.getConnection().prepareStatement(statement);
-            pstat.setQueryTimeout(30);
-            statements.put(statement, pstat);
-        }
-        return pstat;
+        return EventDatabaseThread.getPreparedStatement(statement);
     }
 
+    // Runs the query on a reader in one read transaction, so that it sees a single snapshot;
+    // failures are logged and give the empty result
+    private static <T> ListenableFuture<T> read(Callable<T> query, T empty) {
+        return readers.submit(() -> {
+            try {
+                try {
+                    return query.call();
+                } finally {
+                    EventDatabaseThread.getConnection().commit();
+                }
+            } catch (Exception e) {
+                Log.error(e);
+                return empty;
+            }
+        });
+    }
+
+    // on the writer, creates the event type if missing
     private static int getEventTypeId(SWEKSupplier eventType) throws Exception {
         int typeId = _getEventTypeId(eventType);
         if (typeId == -1) {
@@ -158,23 +182,20 @@ public class EventDatabase {
                     pstatement.setInt(1, id1);
                     pstatement.setInt(2, id0);
                 }
-                pstatement.executeUpdate();
+                pstatement.addBatch();
             } else if (id0 != id1) {
                 errorcode = -1;
                 Log.error("Could not add association to database");
             }
             i++;
         }
+        pstatement.executeBatch();
         pstatement.getConnection().commit();
     }
 
-    public static int dump_association2db(Pair<String, String>[] assocs) {
-        try {
-            return executor.invokeAndWait(new DumpAssociation2Db(assocs));
-        } catch (Exception e) {
-            Log.error(e);
-        }
-        return -1;
+    // Queued on the writer, the result is -1 if an association could not be added
+    public static Future<Integer> dump_association2db(Pair<String, String>[] assocs) {
+        return executor.submit(new DumpAssociation2Db(assocs));
     }
 
     private record DumpAssociation2Db(Pair<String, String>[] assocs) implements Callable<Integer> {
@@ -193,123 +214,119 @@ public class EventDatabase {
                 if (id0 != -1 && id1 != -1) {
                     pstatement.setInt(1, id0);
                     pstatement.setInt(2, id1);
-                    pstatement.executeUpdate();
+                    pstatement.addBatch();
                 } else {
                     errorcode = -1;
                     Log.error("Could not add association to database");
                 }
                 i++;
             }
+            pstatement.executeBatch();
             pstatement.getConnection().commit();
             return errorcode;
         }
     }
 
-    private static int getEventId(String uid) throws Exception {
-        int generatedKey = -1;
-        PreparedStatement pstatement = getPreparedStatement(SELECT_EVENT_ID_FROM_UID);
-        pstatement.setString(1, uid);
-
-        try (ResultSet rs = pstatement.executeQuery()) {
-            if (rs.next()) {
-                generatedKey = rs.getInt(1);
+    // uid -> id of the events of the list, looked up UID_CHUNK at a time, missing slots bound to NULL
+    private static HashMap<String, Integer> getEventIds(List<Event2Db> event2db_list) throws Exception {
+        HashMap<String, Integer> ids = new HashMap<>(event2db_list.size() * 2);
+        PreparedStatement pstatement = getPreparedStatement(SELECT_EVENT_IDS_FROM_UIDS);
+        int llen = event2db_list.size();
+        for (int i = 0; i < llen; i += UID_CHUNK) {
+            for (int j = 0; j < UID_CHUNK; j++) {
+                if (i + j < llen)
+                    pstatement.setString(j + 1, event2db_list.get(i + j).uid);
+                else
+                    pstatement.setNull(j + 1, Types.VARCHAR);
+            }
+            try (ResultSet rs = pstatement.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(rs.getString(1), rs.getInt(2));
+                }
             }
         }
-        return generatedKey;
+        return ids;
     }
 
-    private static int[] get_id_init_list(int sz) {
-        int[] inserted_ids = new int[sz];
-        Arrays.fill(inserted_ids, -1);
-        return inserted_ids;
-    }
-
-    public static void dump_event2db(List<Event2Db> event2db_list, SWEKSupplier type) {
-        try {
-            executor.invokeAndWait(new DumpEvent2Db(event2db_list, type));
-        } catch (Exception e) {
-            Log.error(e);
-        }
+    // Queued on the writer, the future fails with the error of the write
+    public static Future<Void> dump_event2db(List<Event2Db> event2db_list, SWEKSupplier type) {
+        return executor.submit(new DumpEvent2Db(event2db_list, type));
     }
 
+    // One transaction per page: the events are upserted in a batch, their ids read back by uid,
+    // and the rows of the type table batched per column set
     private record DumpEvent2Db(List<Event2Db> event2db_list, SWEKSupplier type) implements Callable<Void> {
         @Override
         public Void call() throws Exception {
-            int[] inserted_ids = get_id_init_list(event2db_list.size());
+            long t0 = System.nanoTime();
             int typeId = getEventTypeId(type);
-            int llen = event2db_list.size();
+            if (typeId == -1) {
+                Log.error("Failed to insert events");
+                return null;
+            }
 
-            PreparedStatement insertFullEvent = getPreparedStatement(INSERT_FULL_EVENT);
-            PreparedStatement selectLastInsert = getPreparedStatement(SELECT_LAST_INSERT);
-            PreparedStatement updateEvent = getPreparedStatement(UPDATE_EVENT);
+            PreparedStatement upsertEvent = getPreparedStatement(UPSERT_EVENT);
+            for (Event2Db event2db : event2db_list) {
+                upsertEvent.setInt(1, typeId);
+                upsertEvent.setString(2, event2db.uid);
+                upsertEvent.setLong(3, event2db.start);
+                upsertEvent.setLong(4, event2db.end);
+                upsertEvent.setLong(5, event2db.archiv);
+                upsertEvent.setBytes(6, event2db.compressedJson);
+                upsertEvent.setBytes(7, event2db.summary);
+                upsertEvent.addBatch();
+            }
+            upsertEvent.executeBatch();
 
-            for (int i = 0; i < llen; i++) {
+            HashMap<String, Integer> ids = getEventIds(event2db_list);
+            int[] inserted_ids = new int[event2db_list.size()];
+            HashMap<String, PreparedStatement> batches = new HashMap<>();
+            for (int i = 0; i < inserted_ids.length; i++) {
                 Event2Db event2db = event2db_list.get(i);
-                int generatedKey = -1;
-                if (typeId != -1) {
-                    generatedKey = getEventId(event2db.uid);
-
-                    if (generatedKey == -1) {
-                        insertFullEvent.setInt(1, typeId);
-                        insertFullEvent.setString(2, event2db.uid);
-                        insertFullEvent.setLong(3, event2db.start);
-                        insertFullEvent.setLong(4, event2db.end);
-                        insertFullEvent.setLong(5, event2db.archiv);
-                        insertFullEvent.setBinaryStream(6, new ByteArrayInputStream(event2db.compressedJson), event2db.compressedJson.length);
-                        insertFullEvent.executeUpdate();
-
-                        try (ResultSet rs = selectLastInsert.executeQuery()) {
-                            if (rs.next()) {
-                                generatedKey = rs.getInt(1);
-                            }
-                        }
-                    } else {
-                        updateEvent.setInt(1, typeId);
-                        updateEvent.setString(2, event2db.uid);
-                        updateEvent.setLong(3, event2db.start);
-                        updateEvent.setLong(4, event2db.end);
-                        updateEvent.setBinaryStream(5, new ByteArrayInputStream(event2db.compressedJson), event2db.compressedJson.length);
-                        updateEvent.setInt(6, generatedKey);
-                        updateEvent.executeUpdate();
-                    }
-                    {
-                        StringBuilder fieldString = new StringBuilder();
-                        StringBuilder varString = new StringBuilder();
-                        for (JHVDatabaseParam p : event2db.paramList) {
-                            fieldString.append(',').append(p.getParamName());
-                            varString.append(",?");
-                        }
-                        String full_statement = "INSERT INTO " + type.getDatabaseName() + "(event_id" + fieldString + ") VALUES(?" + varString + ')';
-                        PreparedStatement pstatement = getPreparedStatement(full_statement);
-                        pstatement.setInt(1, generatedKey);
-
-                        int index = 2;
-                        for (JHVDatabaseParam p : event2db.paramList) {
-                            if (p.isInt()) {
-                                pstatement.setInt(index, p.getIntValue());
-                            } else if (p.isString()) {
-                                pstatement.setString(index, p.getStringValue());
-                            } else if (p.isDouble()) {
-                                pstatement.setDouble(index, p.getDoubleValue());
-                            }
-                            index++;
-                        }
-                        pstatement.executeUpdate();
+                Integer id = ids.get(event2db.uid);
+                inserted_ids[i] = id == null ? -1 : id;
+                if (id == null)
+                    continue;
+
+                StringBuilder fieldString = new StringBuilder();
+                StringBuilder varString = new StringBuilder();
+                for (JHVDatabaseParam p : event2db.paramList) {
+                    fieldString.append(',').append(p.getParamName());
+                    varString.append(",?");
+                }
+                String full_statement = "INSERT INTO " + type.getDatabaseName() + "(event_id" + fieldString + ") VALUES(?" + varString + ')';
+                PreparedStatement pstatement = getPreparedStatement(full_statement);
+                pstatement.setInt(1, id);
+
+                int index = 2;
+                for (JHVDatabaseParam p : event2db.paramList) {
+                    if (p.isInt()) {
+                        pstatement.setInt(index, p.getIntValue());
+                    } else if (p.isString()) {
+                        pstatement.setString(index, p.getStringValue());
+                    } else if (p.isDouble()) {
+                        pstatement.setDouble(index, p.getDoubleValue());
                     }
-                } else {
-                    Log.error("Failed to insert event");
+                    index++;
                 }
-                inserted_ids[i] = generatedKey;
+                pstatement.addBatch();
+                batches.put(full_statement, pstatement);
             }
-            insertFullEvent.getConnection().commit();
+            for (PreparedStatement pstatement : batches.values()) {
+                pstatement.executeBatch();
+            }
+            upsertEvent.getConnection().commit();
+
+            long t1 = System.nanoTime();
+            int llen = event2db_list.size();
+            Log.info(type.getKey() + ": " + llen + " events written in " + (t1 - t0) / 1000000 + "ms (" + (long) (llen * 1e9 / Math.max(1, t1 - t0)) + " events/s)");
 
             ArrayList<Pair<Integer, Integer>> assocs = new ArrayList<>();
             for (int id : inserted_ids) {
                 if (id == -1) {
                     Log.error("Failed to dump to database");
-                    assocs.add(new Pair<>(1, 1));
                 } else {
-                    List<JHVEvent> rels = _getOtherRelations(id, type, true, false, true);
+                    List<JHVEvent> rels = _getOtherRelations(id, type, true, false, false);
                     rels.forEach(rel -> assocs.add(new Pair<>(id, rel.getUniqueID())));
                 }
             }
@@ -318,9 +335,16 @@ public class EventDatabase {
         }
     }
 
+    // The full event needs the JSON, else the summary is enough
+    private static String dataColumn(boolean full) {
+        return full ? "data" : "summary";
+    }
+
     private static JHVEvent parseJSON(JsonEvent jsonEvent, boolean full) throws Exception {
-        try (InputStream bais = new ByteArrayInputStream(jsonEvent.json); InputStream is = new GZIPInputStream(bais)) {
-            return jsonEvent.type.getSource().handler().parseEventJSON(JSONUtils.get(is), jsonEvent.type, jsonEvent.id, jsonEvent.start, jsonEvent.end, full);
+        if (!full)
+            return JHVEventSummary.deserialize(jsonEvent.data, jsonEvent.type, jsonEvent.id, jsonEvent.start, jsonEvent.end);
+        try (InputStream bais = new ByteArrayInputStream(jsonEvent.data); InputStream is = new GZIPInputStream(bais)) {
+            return jsonEvent.type.getSource().handler().parseEventJSON(JSONUtils.get(is), jsonEvent.type, jsonEvent.id, jsonEvent.start, jsonEvent.end, true);
         }
     }
 
@@ -337,12 +361,14 @@ public class EventDatabase {
         return uniqueEvents;
     }
 
-    public static List<JHVEvent> getOtherRelations(int id, SWEKSupplier jhvEventType, boolean similartype, boolean full) throws Exception {
-        return _getOtherRelations(id, jhvEventType, similartype, full, false);
+    // The event with its related events
+    public static ListenableFuture<List<JHVEvent>> getOtherRelations(int id, SWEKSupplier jhvEventType, boolean similartype, boolean full) {
+        return read(() -> _getOtherRelations(id, jhvEventType, similartype, full, true), Collections.emptyList());
     }
 
     // Given an event id and its type, return all related events. If similartype is true, return only related events having the same type.
-    private static List<JHVEvent> _getOtherRelations(int id, SWEKSupplier jhvEventType, boolean similartype, boolean full, boolean is_dbthread) throws Exception {
+    // If withEvent is true, the event itself is included.
+    private static List<JHVEvent> _getOtherRelations(int id, SWEKSupplier jhvEventType, boolean similartype, boolean full, boolean withEvent) throws Exception {
         SWEKGroup group = jhvEventType.getGroup();
         List<JHVEvent> nEvents = new ArrayList<>();
         List<JsonEvent> jsonEvents = new ArrayList<>();
@@ -357,9 +383,7 @@ public class EventDatabase {
                     for (Enumeration<TreeNode> e = reType.children(); e.hasMoreElements(); ) {
                         SWEKSupplier supplier = (SWEKSupplier) e.nextElement();
                         if (similartype == (supplier == jhvEventType)) {
-                            jsonEvents.addAll(is_dbthread
-                                    ? rel2prog(id, jhvEventType, supplier, f, w)
-                                    : relations2Program(id, jhvEventType, supplier, f, w));
+                            jsonEvents.addAll(rel2prog(id, jhvEventType, supplier, f, w, full));
                         }
                     }
                 }
@@ -374,9 +398,7 @@ public class EventDatabase {
                     for (Enumeration<TreeNode> e = reType.children(); e.hasMoreElements(); ) {
                         SWEKSupplier supplier = (SWEKSupplier) e.nextElement();
                         if (similartype == (supplier == jhvEventType)) {
-                            jsonEvents.addAll(is_dbthread
-                                    ? rel2prog(id, supplier, jhvEventType, f, w)
-                                    : relations2Program(id, supplier, jhvEventType, f, w));
+                            jsonEvents.addAll(rel2prog(id, supplier, jhvEventType, f, w, full));
                         }
                     }
                 }
@@ -393,8 +415,7 @@ public class EventDatabase {
         }
 
         JsonEvent ev;
-        if (!is_dbthread && (ev = event2Program(id)) != null) {
-            jsonEvents.add(ev);
+        if (withEvent && (ev = event2Program(id, full)) != null) {
             try {
                 nEvents.add(parseJSON(ev, full));
             } catch (Exception e) {
@@ -492,16 +513,12 @@ public class EventDatabase {
         return last_timestamp;
     }
 
-    private record JsonEvent(byte[] json, SWEKSupplier type, int id, long start, long end) {
+    // data is the compressed JSON or the summary, see dataColumn
+    private record JsonEvent(byte[] data, SWEKSupplier type, int id, long start, long end) {
     }
 
-    public static List<JHVEvent> events2Program(long start, long end, SWEKSupplier type, List<SWEK.Param> params) {
-        try {
-            return executor.invokeAndWait(new Events2Program(start, end, type, params));
-        } catch (Exception e) {
-            Log.error(e);
-        }
-        return Collections.emptyList();
+    public static ListenableFuture<List<JHVEvent>> events2Program(long start, long end, SWEKSupplier type, List<SWEK.Param> params) {
+        return read(new Events2Program(start, end, type, params), Collections.emptyList());
     }
 
     private record Events2Program(long start, long end, SWEKSupplier type, List<SWEK.Param> params)
@@ -509,7 +526,7 @@ public class EventDatabase {
         @Override
         public List<JHVEvent> call() throws Exception {
             List<JHVEvent> eventList = new ArrayList<>();
-            int typeId = getEventTypeId(type);
+            int typeId = _getEventTypeId(type);
             if (typeId != -1) {
                 String join = "LEFT JOIN " + type.getDatabaseName() + " AS tp ON tp.event_id=e.id";
                 StringBuilder and = new StringBuilder();
@@ -518,7 +535,7 @@ public class EventDatabase {
                         and.append("AND tp.").append(p.name()).append(p.operand().representation).append(p.value()).append(' ');
                     }
                 }
-                String sqlt = "SELECT e.id, e.start, e.end, e.data FROM events AS e " + join + " WHERE e.start BETWEEN ? AND ? and e.type_id=? " + and + " order by e.start, e.end ";
+                String sqlt = "SELECT e.id, e.start, e.end, e.summary FROM events AS e " + join + " WHERE e.start BETWEEN ? AND ? and e.type_id=? " + and + " order by e.start, e.end ";
                 PreparedStatement pstatement = getPreparedStatement(sqlt);
                 pstatement.setLong(1, start);
                 pstatement.setLong(2, end);
@@ -529,9 +546,9 @@ public class EventDatabase {
                         int id = rs.getInt(1);
                         long _start = rs.getLong(2);
                         long _end = rs.getLong(3);
-                        byte[] json = rs.getBytes(4);
+                        byte[] summary = rs.getBytes(4);
                         try {
-                            eventList.add(parseJSON(new JsonEvent(json, type, id, _start, _end), false));
+                            eventList.add(parseJSON(new JsonEvent(summary, type, id, _start, _end), false));
                         } catch (Exception e) {
                             Log.error(e);
                         }
@@ -542,13 +559,8 @@ public class EventDatabase {
         }
     }
 
-    public static List<Pair<Integer, Integer>> associations2Program(long start, long end, SWEKSupplier type) {
-        try {
-            return executor.invokeAndWait(new Associations2Program(start, end, type));
-        } catch (Exception e) {
-            Log.error(e);
-        }
-        return Collections.emptyList();
+    public static ListenableFuture<List<Pair<Integer, Integer>>> associations2Program(long start, long end, SWEKSupplier type) {
+        return read(new Associations2Program(start, end, type), Collections.emptyList());
     }
 
     private record Associations2Program(long start, long end, SWEKSupplier type)
@@ -556,7 +568,7 @@ public class EventDatabase {
         @Override
         public List<Pair<Integer, Integer>> call() throws Exception {
             List<Pair<Integer, Integer>> assocList = new ArrayList<>();
-            int typeId = getEventTypeId(type);
+            int typeId = _getEventTypeId(type);
             if (typeId != -1) {
                 PreparedStatement pstatement = getPreparedStatement(SELECT_ASSOCIATIONS);
                 pstatement.setLong(1, start);
@@ -573,18 +585,9 @@ public class EventDatabase {
         }
     }
 
-    private static List<JsonEvent> relations2Program(int event_id, SWEKSupplier type_left, SWEKSupplier type_right, String param_left, String param_right) {
-        try {
-            return executor.invokeAndWait(new Relations2Program(event_id, type_left, type_right, param_left, param_right));
-        } catch (Exception e) {
-            Log.error(e);
-        }
-        return Collections.emptyList();
-    }
-
-    private static List<JsonEvent> rel2prog(int event_id, SWEKSupplier type_left, SWEKSupplier type_right, String param_left, String param_right) throws Exception {
-        int type_left_id = getEventTypeId(type_left);
-        int type_right_id = getEventTypeId(type_right);
+    private static List<JsonEvent> rel2prog(int event_id, SWEKSupplier type_left, SWEKSupplier type_right, String param_left, String param_right, boolean full) throws Exception {
+        int type_left_id = _getEventTypeId(type_left);
+        int type_right_id = _getEventTypeId(type_right);
 
         if (type_left_id != -1 && type_right_id != -1) {
             String table_left_name = type_left.getDatabaseName();
@@ -608,7 +611,7 @@ public class EventDatabase {
                 }
             }
 
-            String query = "SELECT distinct events.id, events.start, events.end, events.data, event_type.supplier FROM events LEFT JOIN event_type ON events.type_id = event_type.id WHERE events.id IN ( " + idList + ") AND events.id != " + event_id;
+            String query = "SELECT distinct events.id, events.start, events.end, events." + dataColumn(full) + ", event_type.supplier FROM events LEFT JOIN event_type ON events.type_id = event_type.id WHERE events.id IN ( " + idList + ") AND events.id != " + event_id;
             List<JsonEvent> ret = new ArrayList<>();
             try (Statement statement = pstatement.getConnection().createStatement();
                  ResultSet rs = statement.executeQuery(query)) {
@@ -625,43 +628,22 @@ public class EventDatabase {
         return Collections.emptyList();
     }
 
-    private record Relations2Program(int event_id, SWEKSupplier type_left, SWEKSupplier type_right, String param_left,
-                                     String param_right) implements Callable<List<JsonEvent>> {
-        @Override
-        public List<JsonEvent> call() throws Exception {
-            return rel2prog(event_id, type_left, type_right, param_left, param_right);
-        }
-    }
-
-    private record Event2Program(int event_id) implements Callable<JsonEvent> {
-        @Nullable
-        @Override
-        public JsonEvent call() throws Exception {
-            PreparedStatement ps = getPreparedStatement(SELECT_EVENT_BY_ID);
-            ps.setLong(1, event_id);
+    @Nullable
+    private static JsonEvent event2Program(int event_id, boolean full) throws Exception {
+        PreparedStatement ps = getPreparedStatement(String.format(SELECT_EVENT_BY_ID, dataColumn(full)));
+        ps.setLong(1, event_id);
 
-            JsonEvent je = null;
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    int id = rs.getInt(1);
-                    long start = rs.getLong(2);
-                    long end = rs.getLong(3);
-                    byte[] json = rs.getBytes(4);
-                    je = new JsonEvent(json, SWEKSupplier.getSupplier(rs.getString(5)), id, start, end);
-                }
+        JsonEvent je = null;
+        try (ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) {
+                int id = rs.getInt(1);
+                long start = rs.getLong(2);
+                long end = rs.getLong(3);
+                byte[] json = rs.getBytes(4);
+                je = new JsonEvent(json, SWEKSupplier.getSupplier(rs.getString(5)), id, start, end);
             }
-            return je;
-        }
-    }
-
-    @Nullable
-    private static JsonEvent event2Program(int event_id) {
-        try {
-            return executor.invokeAndWait(new Event2Program(event_id));
-        } catch (Exception e) {
-            Log.error(e);
         }
-        return null;
+        return je;
     }
 
 }
@@ -7,25 +7,55 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.HashMap;
 
 import javax.annotation.Nonnull;
 
 import org.helioviewer.jhv.JHVDirectory;
+import org.sqlite.SQLiteConfig;
 
+// Each database thread has its own connection and prepared statements. The writer thread has the
+// only writable connection, the reader threads read-only ones which, in WAL mode, query a snapshot
+// of the last commit concurrently with the writer.
 public class EventDatabaseThread extends Thread {
 
-    private static final int CURRENT_VERSION_SCHEMA = 10;
-    private static Connection connection;
+    private static final int CURRENT_VERSION_SCHEMA = 11;
+    private static boolean schemaChecked;
+
+    private final HashMap<String, PreparedStatement> statements = new HashMap<>();
+    private Connection connection;
 
     public EventDatabaseThread(Runnable r, String name) {
         super(r, name);
     }
 
-    private static void createSchema() throws Exception {
+    public static class Reader extends EventDatabaseThread {
+
+        public Reader(Runnable r, String name) {
+            super(r, name);
+        }
+
+        // auto-commit off: a task reads in one transaction, committed by EventDatabase after the task
+        @Override
+        Connection open(String url) throws Exception {
+            SQLiteConfig config = new SQLiteConfig();
+            config.setReadOnly(true);
+            Connection c = DriverManager.getConnection(url, config.toProperties());
+            try (Statement statement = c.createStatement()) {
+                statement.setQueryTimeout(30);
+                statement.execute("PRAGMA cache_size=-8192"); // KiB
+            }
+            c.setAutoCommit(false);
+            return c;
+        }
+
+    }
+
+    private static void createSchema(Connection connection) throws Exception {
         try (Statement statement = connection.createStatement()) {
             statement.setQueryTimeout(30);
             statement.executeUpdate("CREATE TABLE if not exists event_type (id INTEGER PRIMARY KEY AUTOINCREMENT, name STRING, supplier STRING, UNIQUE(name, supplier) ON CONFLICT IGNORE)");
-            statement.executeUpdate("CREATE TABLE if not exists events (id INTEGER PRIMARY KEY AUTOINCREMENT, type_id INTEGER, uid STRING, start BIGINTEGER, end BIGINTEGER, archiv BIGINTEGER, data BLOB, FOREIGN KEY(type_id) REFERENCES event_type(id), UNIQUE(uid) ON CONFLICT FAIL)");
+            statement.executeUpdate("CREATE TABLE if not exists events (id INTEGER PRIMARY KEY AUTOINCREMENT, type_id INTEGER, uid STRING, start BIGINTEGER, end BIGINTEGER, archiv BIGINTEGER, data BLOB, summary BLOB, FOREIGN KEY(type_id) REFERENCES event_type(id), UNIQUE(uid) ON CONFLICT FAIL)");
             statement.executeUpdate("CREATE INDEX if not exists evt_uid ON events (uid)");
             statement.executeUpdate("CREATE INDEX if not exists evt_end ON events (end)");
             statement.executeUpdate("CREATE INDEX if not exists evt_start ON events (start)");
@@ -44,40 +74,82 @@ public class EventDatabaseThread extends Thread {
         }
     }
 
-    @Nonnull
-    static Connection getConnection() throws Exception {
-        if (connection != null)
-            return connection;
+    // Recreates the database if its schema or the configuration changed, before any thread opens it
+    private static synchronized void checkSchema(Path path) throws Exception {
+        if (schemaChecked)
+            return;
 
-        Path path = Path.of(JHVDirectory.CACHE.getPath(), "events.db");
         boolean fexist = Files.isWritable(path);
-        connection = DriverManager.getConnection("jdbc:sqlite:" + path);
-
-        if (fexist) {
-            int found_version = -1;
-            int found_hash = -1;
-            try (PreparedStatement pstatement = connection.prepareStatement("SELECT version, hash from version LIMIT 1")) {
-                pstatement.setQueryTimeout(30);
-                try (ResultSet rs = pstatement.executeQuery()) {
-                    if (rs.next()) {
-                        found_version = rs.getInt(1);
-                        found_hash = rs.getInt(2);
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+        try {
+            if (fexist) {
+                int found_version = -1;
+                int found_hash = -1;
+                try (PreparedStatement pstatement = connection.prepareStatement("SELECT version, hash from version LIMIT 1")) {
+                    pstatement.setQueryTimeout(30);
+                    try (ResultSet rs = pstatement.executeQuery()) {
+                        if (rs.next()) {
+                            found_version = rs.getInt(1);
+                            found_hash = rs.getInt(2);
+                        }
                     }
                 }
+
+                if (found_version != CURRENT_VERSION_SCHEMA || EventDatabase.config_hash != found_hash) {
+                    connection.close();
+                    Files.delete(path);
+                    connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+                    createSchema(connection);
+                }
+            } else {
+                createSchema(connection);
             }
 
-            if (found_version != CURRENT_VERSION_SCHEMA || EventDatabase.config_hash != found_hash) {
-                connection.close();
-                Files.delete(path);
-                connection = DriverManager.getConnection("jdbc:sqlite:" + path);
-                createSchema();
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(30);
+                statement.execute("PRAGMA journal_mode=WAL"); // persistent, for all connections
             }
-        } else {
-            createSchema();
+        } finally {
+            connection.close();
+        }
+        schemaChecked = true;
+    }
+
+    // WAL with synchronous=NORMAL: a commit is an append to the log, fsync only at checkpoints
+    Connection open(String url) throws Exception {
+        Connection c = DriverManager.getConnection(url);
+        try (Statement statement = c.createStatement()) {
+            statement.setQueryTimeout(30);
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("PRAGMA cache_size=-16384"); // KiB
+            statement.execute("PRAGMA temp_store=MEMORY");
+        }
+        c.setAutoCommit(false);
+        return c;
+    }
+
+    // The connection of the current database thread
+    @Nonnull
+    static Connection getConnection() throws Exception {
+        EventDatabaseThread thread = (EventDatabaseThread) Thread.currentThread();
+        if (thread.connection == null) {
+            Path path = Path.of(JHVDirectory.CACHE.getPath(), "events.db");
+            checkSchema(path);
+            thread.connection = thread.open("jdbc:sqlite:" + path);
         }
+        return thread.connection;
+    }
 
-        connection.setAutoCommit(false);
-        return connection;
+    static PreparedStatement getPreparedStatement(String statement) throws Exception {
+        Connection c = getConnection();
+        HashMap<String, PreparedStatement> threadStatements = ((EventDatabaseThread) Thread.currentThread()).statements;
+        PreparedStatement pstat = threadStatements.get(statement);
+        if (pstat == null) {
+            pstat = c.prepareStatement(statement);
+            pstat.setQueryTimeout(30);
+            threadStatements.put(statement, pstat);
+        }
+        return pstat;
     }
 
 }
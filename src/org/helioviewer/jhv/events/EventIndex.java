@@ -0,0 +1,88 @@
+package org.helioviewer.jhv.events;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+// Overlap index of the related events of a supplier. The events are kept sorted by start in arrays which
+// form an implicit binary tree, the middle of each range being the root of its subtree, and each node
+// holds the maximum end of its subtree. A query descends only into the subtrees which can overlap and
+// reports the events in the order of their start. Changes of the events mark the index, which is
+// rebuilt at the next query, so that a page of downloaded events costs one rebuild.
+class EventIndex {
+
+    private static final Comparator<JHVRelatedEvents> order =
+            Comparator.comparingLong(JHVRelatedEvents::getStart).thenComparingLong(JHVRelatedEvents::getEnd);
+
+    private final HashSet<JHVRelatedEvents> members = new HashSet<>();
+    private boolean dirty;
+
+    private JHVRelatedEvents[] sorted = new JHVRelatedEvents[0];
+    private long[] starts = new long[0];
+    private long[] ends = new long[0];
+    private long[] maxEnds = new long[0];
+
+    void add(JHVRelatedEvents event) {
+        if (members.add(event))
+            dirty = true;
+    }
+
+    void remove(JHVRelatedEvents event) {
+        if (members.remove(event))
+            dirty = true;
+    }
+
+    // the interval of a member changed
+    void update() {
+        dirty = true;
+    }
+
+    private void rebuild() {
+        int n = members.size();
+        sorted = members.toArray(JHVRelatedEvents[]::new);
+        Arrays.sort(sorted, order);
+        if (starts.length != n) {
+            starts = new long[n];
+            ends = new long[n];
+            maxEnds = new long[n];
+        }
+        for (int i = 0; i < n; i++) {
+            starts[i] = sorted[i].getStart();
+            ends[i] = sorted[i].getEnd();
+        }
+        build(0, n);
+        dirty = false;
+    }
+
+    private long build(int lo, int hi) {
+        if (lo >= hi)
+            return Long.MIN_VALUE;
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(ends[mid], Math.max(build(lo, mid), build(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    // Appends the events overlapping [start, end] to result
+    void query(long start, long end, List<JHVRelatedEvents> result) {
+        if (dirty)
+            rebuild();
+        query(0, sorted.length, start, end, result);
+    }
+
+    private void query(int lo, int hi, long start, long end, List<JHVRelatedEvents> result) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (maxEnds[mid] < start) // nothing in this subtree reaches start
+                return;
+            query(lo, mid, start, end, result);
+            if (starts[mid] > end) // neither this node nor the right subtree starts before end
+                return;
+            if (ends[mid] >= start)
+                result.add(sorted[mid]);
+            lo = mid + 1;
+        }
+    }
+
+}
@@ -131,6 +131,13 @@ public class JHVEvent {
         visibleParametersArray = new ArrayList<>();
     }
 
+    // The parameters of a summary, instead of addParameter and finishParams
+    void setParams(JHVEventParameter[] all, JHVEventParameter[] visible, JHVEventParameter[] simpleVisible) {
+        allParameters = all;
+        visibleParameters = visible;
+        simpleVisibleParameters = simpleVisible;
+    }
+
     public boolean isCactus() {
         return supplier.isCactus();
     }
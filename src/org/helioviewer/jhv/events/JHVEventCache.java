@@ -1,12 +1,10 @@
 package org.helioviewer.jhv.events;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.SortedMap;
 
 import org.helioviewer.jhv.Log;
 import org.helioviewer.jhv.base.Pair;
@@ -17,10 +15,9 @@ import org.helioviewer.jhv.time.TimeUtils;
 public class JHVEventCache {
 
     private static final double FACTOR = 0.2;
-    private static final long DELTAT_GET = TimeUtils.DAY_IN_MILLIS;
 
     private static final HashSet<JHVEventListener.Handle> cacheEventHandlers = new HashSet<>();
-    private static final HashMap<SWEKSupplier, SortedMap<Interval, JHVRelatedEvents>> events = new HashMap<>();
+    private static final HashMap<SWEKSupplier, EventIndex> events = new HashMap<>();
     private static final HashMap<Integer, JHVRelatedEvents> relEvents = new HashMap<>();
     private static final HashSet<SWEKSupplier> activeEventTypes = new HashSet<>();
     private static final HashMap<SWEKSupplier, RequestCache> downloadedCache = new HashMap<>();
@@ -123,26 +120,21 @@ public class JHVEventCache {
         }
     }
 
-    public static List<JHVRelatedEvents> getEvents(long start, long end) {
-        if (activeEventTypes.isEmpty())
-            return Collections.emptyList();
-
-        Interval first = new Interval(start - DELTAT_GET, start - DELTAT_GET);
-        Interval last = new Interval(end + DELTAT_GET, end + DELTAT_GET);
-
-        if (first.compareTo(last) > 0) { // should not happen, but some users hit
+    // Fills result with the events overlapping [start, end], in the order of their start per supplier;
+    // the list is cleared first, so that the callers drawing every frame can reuse theirs
+    public static void getEvents(long start, long end, List<JHVRelatedEvents> result) {
+        result.clear();
+        if (start > end) { // should not happen, but some users hit
             Log.error(start + " > " + end);
-            return Collections.emptyList();
+            return;
         }
 
-        List<JHVRelatedEvents> result = new ArrayList<>();
         for (SWEKSupplier evt : activeEventTypes) {
-            SortedMap<Interval, JHVRelatedEvents> sortedEvents = events.get(evt);
-            if (sortedEvents != null) {
-                result.addAll(sortedEvents.subMap(first, last).values());
+            EventIndex index = events.get(evt);
+            if (index != null) {
+                index.query(start, end, result);
             }
         }
-        return result;
     }
 
     private static void downloadMissingIntervals(long start, long end) {
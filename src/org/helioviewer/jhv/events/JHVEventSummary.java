@@ -0,0 +1,128 @@
+package org.helioviewer.jhv.events;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.helioviewer.jhv.astronomy.Position;
+import org.helioviewer.jhv.math.Vec3;
+import org.helioviewer.jhv.time.JHVTime;
+
+// Compact binary record of an event as parsed without the full parameter set: the parameters kept
+// for display with their visibility, and the position. It is written in the database next to the
+// compressed JSON at insert time, so that loading events for display does not inflate and parse the JSON.
+public class JHVEventSummary {
+
+    private static final int VERSION = 1;
+
+    private static final int VISIBLE = 1;
+    private static final int SIMPLE = 2;
+
+    public static byte[] serialize(JHVEvent event) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            out.writeByte(VERSION);
+
+            JHVEventParameter[] all = event.getAllEventParameters();
+            JHVEventParameter[] visible = event.getVisibleEventParameters();
+            JHVEventParameter[] simple = event.getSimpleVisibleEventParameters();
+            out.writeInt(all.length);
+            for (JHVEventParameter p : all) {
+                writeString(out, p.getParameterName());
+                writeString(out, p.getParameterDisplayName());
+                writeString(out, p.getParameterValue());
+                out.writeByte((contains(visible, p) ? VISIBLE : 0) | (contains(simple, p) ? SIMPLE : 0));
+            }
+
+            JHVPositionInformation pi = event.getPositionInformation();
+            out.writeBoolean(pi != null);
+            if (pi != null) {
+                Vec3 c = pi.centralPoint();
+                out.writeBoolean(c != null);
+                if (c != null) {
+                    out.writeDouble(c.x);
+                    out.writeDouble(c.y);
+                    out.writeDouble(c.z);
+                }
+
+                float[] bbox = pi.getBoundBox();
+                out.writeInt(bbox.length);
+                for (float v : bbox)
+                    out.writeFloat(v);
+
+                Position earth = pi.getEarth();
+                out.writeBoolean(earth != null);
+                if (earth != null) {
+                    out.writeLong(earth.time.milli);
+                    out.writeDouble(earth.distance);
+                    out.writeDouble(earth.lon);
+                    out.writeDouble(earth.lat);
+                }
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    public static JHVEvent deserialize(byte[] summary, SWEKSupplier supplier, int id, long start, long end) throws IOException {
+        JHVEvent event = new JHVEvent(supplier, id, start, end);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(summary))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION)
+                throw new IOException("Unknown event summary version " + version);
+
+            int len = in.readInt();
+            JHVEventParameter[] all = new JHVEventParameter[len];
+            List<JHVEventParameter> visible = new ArrayList<>(len);
+            List<JHVEventParameter> simple = new ArrayList<>(len);
+            for (int i = 0; i < len; i++) {
+                JHVEventParameter p = new JHVEventParameter(readString(in), readString(in), readString(in));
+                int flags = in.readUnsignedByte();
+                if ((flags & VISIBLE) != 0)
+                    visible.add(p);
+                if ((flags & SIMPLE) != 0)
+                    simple.add(p);
+                all[i] = p;
+            }
+            event.setParams(all, visible.toArray(JHVEventParameter[]::new), simple.toArray(JHVEventParameter[]::new));
+
+            if (in.readBoolean()) {
+                Vec3 c = in.readBoolean() ? new Vec3(in.readDouble(), in.readDouble(), in.readDouble()) : null;
+
+                int blen = in.readInt() / 3;
+                List<Vec3> bbox = new ArrayList<>(blen);
+                for (int i = 0; i < blen; i++)
+                    bbox.add(new Vec3(in.readFloat(), in.readFloat(), in.readFloat()));
+
+                Position earth = in.readBoolean() ? new Position(new JHVTime(in.readLong()), in.readDouble(), in.readDouble(), in.readDouble()) : null;
+                event.addPositionInformation(new JHVPositionInformation(c, bbox, null, earth));
+            }
+        }
+        return event;
+    }
+
+    private static boolean contains(JHVEventParameter[] params, JHVEventParameter p) {
+        for (JHVEventParameter q : params) {
+            if (q == p)
+                return true;
+        }
+        return false;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+}
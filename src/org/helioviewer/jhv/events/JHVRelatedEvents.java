@@ -5,8 +5,6 @@ import java.awt.Point;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -29,16 +27,14 @@ public class JHVRelatedEvents implements ClickableDrawable {
     private Interval interval;
     private boolean highlighted;
 
-    JHVRelatedEvents(JHVEvent event, Map<SWEKSupplier, SortedMap<Interval, JHVRelatedEvents>> eventsMap) {
+    JHVRelatedEvents(JHVEvent event, Map<SWEKSupplier, EventIndex> eventsMap) {
         supplier = event.getSupplier();
         color = EventColors.getNextColor();
         highlighted = false;
 
         events.add(event);
-        eventsMap.computeIfAbsent(supplier, k -> new TreeMap<>());
-
         interval = new Interval(event.start, event.end);
-        eventsMap.get(supplier).put(interval, this);
+        eventsMap.computeIfAbsent(supplier, k -> new EventIndex()).add(this);
     }
 
     public List<JHVEvent> getEvents() {
@@ -62,16 +58,16 @@ public class JHVRelatedEvents implements ClickableDrawable {
         return supplier.getGroup().getIcon();
     }
 
-    void merge(JHVRelatedEvents found, Map<SWEKSupplier, SortedMap<Interval, JHVRelatedEvents>> eventsMap) {
+    void merge(JHVRelatedEvents found, Map<SWEKSupplier, EventIndex> eventsMap) {
         events.addAll(found.events);
         associations.addAll(found.associations);
 
-        eventsMap.computeIfAbsent(supplier, k -> new TreeMap<>());
-        eventsMap.get(supplier).remove(found.interval);
-        eventsMap.get(supplier).remove(interval);
+        EventIndex index = eventsMap.computeIfAbsent(supplier, k -> new EventIndex());
+        eventsMap.computeIfAbsent(found.supplier, k -> new EventIndex()).remove(found);
 
         interval = new Interval(Math.min(interval.start, found.interval.start), Math.max(interval.end, found.interval.end));
-        eventsMap.get(supplier).put(interval, this);
+        index.add(this);
+        index.update();
     }
 
     public SWEKSupplier getSupplier() {
@@ -151,7 +147,7 @@ public class JHVRelatedEvents implements ClickableDrawable {
         return nEvents;
     }
 
-    void swapEvent(JHVEvent event, Map<SWEKSupplier, SortedMap<Interval, JHVRelatedEvents>> eventsMap) {
+    void swapEvent(JHVEvent event, Map<SWEKSupplier, EventIndex> eventsMap) {
         int eid = event.getUniqueID();
         int i = 0;
         while (events.get(i).getUniqueID() != eid) {
@@ -162,7 +158,7 @@ public class JHVRelatedEvents implements ClickableDrawable {
         resetTime(eventsMap);
     }
 
-    private void resetTime(Map<SWEKSupplier, SortedMap<Interval, JHVRelatedEvents>> eventsMap) {
+    private void resetTime(Map<SWEKSupplier, EventIndex> eventsMap) {
         long start = Long.MAX_VALUE;
         long end = Long.MIN_VALUE;
         for (JHVEvent evt : events) {
@@ -176,10 +172,10 @@ public class JHVRelatedEvents implements ClickableDrawable {
             }
         }
 
-        eventsMap.computeIfAbsent(supplier, k -> new TreeMap<>()).remove(interval);
-
         interval = new Interval(start, end);
-        eventsMap.get(supplier).put(interval, this);
+        EventIndex index = eventsMap.computeIfAbsent(supplier, k -> new EventIndex());
+        index.add(this);
+        index.update();
     }
 
     @Override
@@ -42,6 +42,7 @@ class SWEKDownloadManager implements FilterManager.Listener {
             worker.stopWorker();
             JHVEventCache.intervalNotDownloaded(supplier, worker.start(), worker.end());
         });
+        workerMap.removeAll(supplier); // stopped workers do not report back
         JHVEventCache.removeSupplier(supplier, keepActive);
         supplier.getGroup().stoppedDownload();
     }
@@ -6,29 +6,68 @@ import java.util.List;
 import org.helioviewer.jhv.base.Pair;
 import org.helioviewer.jhv.database.EventDatabase;
 
-record SWEKDownloadWorker(SWEKSupplier supplier, long start, long end, List<SWEK.Param> params) implements Runnable {
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
+// not a record: workers of the same interval are distinct, each with its own stop
+class SWEKDownloadWorker implements Runnable {
+
+    private final SWEKSupplier supplier;
+    private final long start;
+    private final long end;
+    private final List<SWEK.Param> params;
+    private final SWEKHandler.Stop stop = new SWEKHandler.Stop();
+
+    SWEKDownloadWorker(SWEKSupplier _supplier, long _start, long _end, List<SWEK.Param> _params) {
+        supplier = _supplier;
+        start = _start;
+        end = _end;
+        params = _params;
+    }
+
+    long start() {
+        return start;
+    }
+
+    long end() {
+        return end;
+    }
+
+    // a stopped worker no longer reports to the manager, which already gave its interval back
     @Override
     public void run() {
-        boolean success = supplier.getSource().handler().remote2db(supplier, start, end, params);
+        if (stop.isStopped())
+            return;
+
+        boolean success = supplier.getSource().handler().remote2db(supplier, start, end, params, stop);
+        if (stop.isStopped())
+            return;
+
         if (success) {
-            List<Pair<Integer, Integer>> assocList = EventDatabase.associations2Program(start, end, supplier);
-            List<JHVEvent> eventList = EventDatabase.events2Program(start, end, supplier, params);
-            EventQueue.invokeLater(() -> {
-                assocList.forEach(JHVEventCache::addAssociation);
-                eventList.forEach(JHVEventCache::addEvent);
+            // both queries run concurrently on the database readers, the results are handed to the EDT together
+            ListenableFuture<List<Pair<Integer, Integer>>> assocList = EventDatabase.associations2Program(start, end, supplier);
+            ListenableFuture<List<JHVEvent>> eventList = EventDatabase.events2Program(start, end, supplier, params);
+            Futures.whenAllComplete(assocList, eventList).run(() -> {
+                if (stop.isStopped())
+                    return;
+                Futures.getUnchecked(assocList).forEach(JHVEventCache::addAssociation);
+                Futures.getUnchecked(eventList).forEach(JHVEventCache::addEvent);
                 JHVEventCache.fireEventCacheChanged();
 
                 SWEKDownloadManager.workerFinished(supplier, this);
-            });
+            }, EventQueue::invokeLater);
             EventDatabase.addDaterange2db(start, end, supplier);
         } else {
-            EventQueue.invokeLater(() -> SWEKDownloadManager.workerForcedToStop(supplier, this));
+            EventQueue.invokeLater(() -> {
+                if (!stop.isStopped())
+                    SWEKDownloadManager.workerForcedToStop(supplier, this);
+            });
         }
     }
 
+    // on the EDT
     void stopWorker() {
-        //TBD
+        stop.stop();
     }
 
 }
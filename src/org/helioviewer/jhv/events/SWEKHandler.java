@@ -1,47 +1,132 @@
 package org.helioviewer.jhv.events;
 
 import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
 
 import org.helioviewer.jhv.Log;
+import org.helioviewer.jhv.base.Pair;
 import org.helioviewer.jhv.base.interval.Interval;
 import org.helioviewer.jhv.database.EventDatabase;
 import org.helioviewer.jhv.io.JSONUtils;
+import org.helioviewer.jhv.threads.JHVThread;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 public abstract class SWEKHandler {
 
-    public boolean remote2db(SWEKSupplier supplier, long start, long end, List<SWEK.Param> params) {
+    // pages fetched and parsed ahead of the one being handed to the database, per download
+    private static final int PAGE_WINDOW = 4;
+    private static final int NUMBER_THREADS = 8;
+    private static final ExecutorService pagePool = Executors.newFixedThreadPool(NUMBER_THREADS, new JHVThread.NamedThreadFactory("SWEK Page"));
+
+    private record Page(List<EventDatabase.Event2Db> events, Pair<String, String>[] associations, boolean overmax) {
+    }
+
+    // Stops a download: the pages in flight are cancelled and no more are requested
+    public static class Stop {
+
+        private final Set<Future<?>> pending = ConcurrentHashMap.newKeySet();
+        private volatile boolean stopped;
+
+        public void stop() {
+            stopped = true;
+            pending.forEach(f -> f.cancel(true));
+        }
+
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        private <T> Future<T> add(Future<T> future) {
+            pending.add(future);
+            if (stopped)
+                future.cancel(true);
+            return future;
+        }
+
+    }
+
+    // Pages are fetched and parsed on the page pool and handed in order to the database writer, which
+    // stores them while the next ones are parsed. Once the first page says there are more, up to
+    // PAGE_WINDOW pages are requested ahead, and no more after a page without overmax.
+    public boolean remote2db(SWEKSupplier supplier, long start, long end, List<SWEK.Param> params, Stop stop) {
         for (Interval interval : EventDatabase.db2daterange(supplier)) {
             if (interval.start <= start && interval.end >= end) {
                 return true;
             }
         }
 
+        ArrayDeque<Future<Page>> window = new ArrayDeque<>();
+        List<Future<?>> writes = new ArrayList<>();
+        List<Future<Integer>> assocWrites = new ArrayList<>();
         try {
-            int page = 0;
-            boolean success = true;
-            boolean overmax = true;
-            while (overmax && success) {
-                JSONObject eventJSON = JSONUtils.get(createURI(supplier.getGroup(), start, end, params, page));
-                overmax = eventJSON.optBoolean("overmax", false);
-                success = parseRemote(eventJSON, supplier) && parseAssociations(eventJSON);
-                page++;
+            int next = 0;
+            window.add(requestPage(supplier, start, end, params, next++, stop));
+            while (!window.isEmpty()) {
+                Future<Page> future = window.poll();
+                Page page = future.get();
+                stop.pending.remove(future);
+                if (stop.isStopped())
+                    return false;
+
+                writes.add(EventDatabase.dump_event2db(page.events, supplier));
+                assocWrites.add(EventDatabase.dump_association2db(page.associations));
+                if (page.overmax) {
+                    while (window.size() < PAGE_WINDOW)
+                        window.add(requestPage(supplier, start, end, params, next++, stop));
+                } else
+                    break; // pages requested ahead are past the end
             }
+
+            for (Future<?> write : writes)
+                write.get();
+            boolean success = true;
+            for (Future<Integer> write : assocWrites)
+                success &= write.get() != -1;
             return success;
         } catch (Exception e) {
-            Log.error("Error loading SWEK", e);
+            if (!stop.isStopped())
+                Log.error("Error loading SWEK", e);
+        } finally {
+            window.forEach(f -> f.cancel(true));
+            stop.pending.removeAll(window);
         }
         return false;
     }
 
-    protected abstract boolean parseRemote(JSONObject eventJSON, SWEKSupplier supplier);
+    private Future<Page> requestPage(SWEKSupplier supplier, long start, long end, List<SWEK.Param> params, int page, Stop stop) {
+        return stop.add(pagePool.submit(() -> {
+            JSONObject eventJSON = JSONUtils.get(createURI(supplier.getGroup(), start, end, params, page));
+            return new Page(parseRemote(eventJSON, supplier), parseAssociations(eventJSON), eventJSON.optBoolean("overmax", false));
+        }));
+    }
+
+    protected abstract List<EventDatabase.Event2Db> parseRemote(JSONObject eventJSON, SWEKSupplier supplier) throws Exception;
 
-    protected abstract boolean parseAssociations(JSONObject eventJSON);
+    protected abstract Pair<String, String>[] parseAssociations(JSONObject eventJSON) throws Exception;
 
     protected abstract URI createURI(SWEKGroup group, long start, long end, List<SWEK.Param> params, int page) throws Exception;
 
+    // The event as parsed for display, stored beside the JSON; null if it cannot be parsed
+    @Nullable
+    protected byte[] summarize(JSONObject json, SWEKSupplier supplier, long start, long end) {
+        try {
+            return JHVEventSummary.serialize(parseEventJSON(json, supplier, 0, start, end, false));
+        } catch (Exception e) {
+            Log.warn("Cannot parse event: " + json, e);
+        }
+        return null;
+    }
+
     public abstract JHVEvent parseEventJSON(JSONObject json, SWEKSupplier supplier, int id, long start, long end, boolean full) throws JSONException;
 
 }
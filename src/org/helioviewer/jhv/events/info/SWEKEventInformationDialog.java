@@ -1,11 +1,11 @@
 package org.helioviewer.jhv.events.info;
 
+import java.awt.EventQueue;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Window;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
 
 import javax.annotation.Nonnull;
 import javax.swing.BoxLayout;
@@ -20,9 +20,9 @@ import org.helioviewer.jhv.events.JHVEvent;
 import org.helioviewer.jhv.events.JHVEventCache;
 import org.helioviewer.jhv.events.JHVRelatedEvents;
 import org.helioviewer.jhv.gui.JHVFrame;
-import org.helioviewer.jhv.threads.EventQueueCallbackExecutor;
 
 import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 
 // Popup displaying information about a HEK event.
 // This panel is a JDialog, so that it can be displayed on top of an GLCanvas,
@@ -79,7 +79,7 @@ public class SWEKEventInformationDialog extends JDialog implements DataCollapsib
 
         add(allTablePanel, allTablePanelConstraint);
 
-        EventQueueCallbackExecutor.pool.submit(new DatabaseCallable(event), new DatabaseCallback());
+        Futures.addCallback(EventDatabase.getOtherRelations(event.getUniqueID(), event.getSupplier(), false, true), new DatabaseCallback(), EventQueue::invokeLater);
     }
 
     private void initAllTablePanel() {
@@ -197,13 +197,6 @@ public class SWEKEventInformationDialog extends JDialog implements DataCollapsib
         pack();
     }
 
-    private record DatabaseCallable(JHVEvent qEvent) implements Callable<List<JHVEvent>> {
-        @Override
-        public List<JHVEvent> call() throws Exception {
-            return EventDatabase.getOtherRelations(qEvent.getUniqueID(), qEvent.getSupplier(), false, true);
-        }
-    }
-
     private class DatabaseCallback implements FutureCallback<List<JHVEvent>> {
 
         @Override
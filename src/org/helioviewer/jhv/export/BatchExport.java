@@ -0,0 +1,206 @@
+package org.helioviewer.jhv.export;
+
+import java.awt.image.BufferedImage;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+import org.helioviewer.jhv.JHVDirectory;
+import org.helioviewer.jhv.Log;
+import org.helioviewer.jhv.astronomy.Position;
+import org.helioviewer.jhv.base.Region;
+import org.helioviewer.jhv.base.image.MappedImageFactory;
+import org.helioviewer.jhv.base.lut.LUT;
+import org.helioviewer.jhv.imagedata.ImageData;
+import org.helioviewer.jhv.io.LoadLayer;
+import org.helioviewer.jhv.metadata.MetaData;
+import org.helioviewer.jhv.opengl.GLImage;
+import org.helioviewer.jhv.opengl.GLImage.DifferenceMode;
+import org.helioviewer.jhv.threads.JHVThread;
+import org.helioviewer.jhv.time.JHVTime;
+import org.helioviewer.jhv.time.TimeUtils;
+import org.helioviewer.jhv.view.DecodeExecutor;
+import org.helioviewer.jhv.view.ManyView;
+import org.helioviewer.jhv.view.View;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Headless movie export of job files, without OpenGL or a display. The frames of the first layer set
+// the timeline and the viewpoint; each frame is decoded and rendered on the CPU by RasterRenderer,
+// several frames concurrently, then encoded in order. A job file looks like
+//   {"width": 1280, "height": 720, "fps": 20, "format": "H264", "output": "/path/prefix", "fov": 1,
+//    "corona": true, "diffRotation": false,
+//    "layers": [{"uri": "file:///path/aia171.jpx", "lut": "SDO-AIA 171", "mgn": false, "imageParams": {...}}]}
+// where "uris" may replace "uri", "imageParams" follows the state files and "fov" in degrees is optional,
+// by default the first layer fits.
+public class BatchExport {
+
+    private static final int MACROBLOCK = 8;
+
+    private record Layer(View view, GLImage glImage, int[] lut) {
+    }
+
+    // Returns false if any job failed
+    public static boolean run(List<String> jobFiles) {
+        boolean success = true;
+        for (String file : jobFiles) {
+            try {
+                long start = System.currentTimeMillis();
+                String path = export(new JSONObject(Files.readString(Path.of(file))));
+                Log.info("Batch export of " + file + " in " + (System.currentTimeMillis() - start) / 1000 + "s: " + path);
+            } catch (Exception e) {
+                Log.error("Batch export of " + file + " failed", e);
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    private static String export(JSONObject jo) throws Exception {
+        VideoFormat format = VideoFormat.valueOf(jo.optString("format", VideoFormat.H264.name()));
+        int w = jo.optInt("width", 1280);
+        int h = jo.optInt("height", 720);
+        if (format != VideoFormat.PNG) {
+            w = (w / MACROBLOCK) * MACROBLOCK;
+            h = (h / MACROBLOCK) * MACROBLOCK;
+        }
+        if (w < MACROBLOCK || h < MACROBLOCK)
+            throw new Exception("Invalid size " + w + "x" + h);
+        int fps = jo.optInt("fps", 20);
+        boolean corona = jo.optBoolean("corona", true);
+        boolean diffRotation = jo.optBoolean("diffRotation", false);
+
+        String output = jo.optString("output", null);
+        String prefix = output == null ?
+                JHVDirectory.EXPORTS.getPath() + "JHV_" + TimeUtils.formatFilename(System.currentTimeMillis()) :
+                Path.of(output).toAbsolutePath().toString();
+
+        DecodeExecutor executor = new DecodeExecutor(); // unused by the synchronous decode
+        List<Layer> layers = new ArrayList<>();
+        try {
+            JSONArray ja = jo.getJSONArray("layers");
+            for (int i = 0; i < ja.length(); i++)
+                layers.add(loadLayer(executor, ja.getJSONObject(i)));
+            if (layers.isEmpty())
+                throw new Exception("No layers");
+
+            View master = layers.get(0).view;
+            double cameraWidth = cameraWidth(jo, master.getMetaData(master.getFirstTime()), w / (double) h);
+            String path = encode(layers, new MovieExporter(format, w, h, fps, prefix), w, h, cameraWidth, corona, diffRotation);
+            return path == null ? prefix + format.extension : path;
+        } finally {
+            layers.forEach(layer -> layer.view.abolish());
+            executor.abolish();
+        }
+    }
+
+    private static Layer loadLayer(DecodeExecutor executor, JSONObject jo) throws Exception {
+        List<URI> uris = new ArrayList<>();
+        if (jo.has("uri"))
+            uris.add(new URI(jo.getString("uri")));
+        JSONArray ja = jo.optJSONArray("uris");
+        if (ja != null)
+            for (int i = 0; i < ja.length(); i++)
+                uris.add(new URI(ja.getString(i)));
+        if (uris.isEmpty())
+            throw new Exception("Layer without uri: " + jo);
+
+        View view;
+        if (uris.size() == 1)
+            view = LoadLayer.loadView(executor, null, uris.get(0), false);
+        else {
+            List<View> views = new ArrayList<>(uris.size());
+            for (URI uri : uris)
+                views.add(LoadLayer.loadView(executor, null, uri, false));
+            view = new ManyView(views);
+        }
+        view.setMGN(jo.optBoolean("mgn", false));
+
+        GLImage glImage = new GLImage();
+        JSONObject imageParams = jo.optJSONObject("imageParams");
+        if (imageParams != null)
+            glImage.fromJson(imageParams);
+
+        LUT lut = jo.has("lut") ? LUT.get(jo.getString("lut")) : view.getDefaultLUT();
+        if (glImage.getDifferenceMode() != DifferenceMode.None || lut == null)
+            lut = LUT.get("Gray");
+        return new Layer(view, glImage, glImage.getInvertLUT() ? lut.lut8Inv() : lut.lut8());
+    }
+
+    // Camera.updateWidth for a given field of view, otherwise zoom to fit
+    private static double cameraWidth(JSONObject jo, MetaData m, double aspect) {
+        if (jo.has("fov"))
+            return 2 * m.getViewpoint().distance * Math.tan(0.5 * Math.toRadians(jo.getDouble("fov")));
+        Region r = m.getPhysicalRegion();
+        return Math.max(r.height, r.width / aspect);
+    }
+
+    @Nullable
+    private static String encode(List<Layer> layers, MovieExporter exporter, int w, int h, double cameraWidth, boolean corona, boolean diffRotation) throws Exception {
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService renderExecutor = Executors.newFixedThreadPool(numThreads, new JHVThread.NamedThreadFactory("Batch Render"));
+        ArrayDeque<Future<BufferedImage>> pending = new ArrayDeque<>();
+        try {
+            View master = layers.get(0).view;
+            int maxFrame = master.getMaximumFrameNumber();
+            for (int i = 0; i <= maxFrame; i++) {
+                JHVTime time = master.getFrameTime(i);
+                pending.add(renderExecutor.submit(() -> renderFrame(layers, time, w, h, cameraWidth, corona, diffRotation)));
+                if (pending.size() >= 2 * numThreads) // bound the frames in flight
+                    encodeFrame(exporter, pending.poll().get());
+            }
+            while (!pending.isEmpty())
+                encodeFrame(exporter, pending.poll().get());
+        } finally {
+            renderExecutor.shutdownNow();
+            for (Future<BufferedImage> future : pending) {
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        MappedImageFactory.free(future.get());
+                    } catch (Exception ignore) {
+                    }
+                }
+            }
+        }
+        return exporter.close();
+    }
+
+    private static void encodeFrame(MovieExporter exporter, BufferedImage image) throws Exception {
+        try {
+            exporter.encode(image, null, -1);
+        } finally {
+            MappedImageFactory.free(image);
+        }
+    }
+
+    private static BufferedImage renderFrame(List<Layer> layers, JHVTime time, int w, int h, double cameraWidth, boolean corona, boolean diffRotation) throws Exception {
+        Position camera = layers.get(0).view.getMetaData(time).getViewpoint();
+        RasterRenderer renderer = new RasterRenderer(w, h, camera, cameraWidth, corona, diffRotation);
+        double pixFactor = h / cameraWidth;
+
+        for (Layer layer : layers) {
+            View view = layer.view;
+            int height = (int) (view.getMetaData(time).getPhysicalRegion().height * pixFactor + .5);
+            ImageData data = view.decodeFrame(time, height);
+            ImageData diffData = switch (layer.glImage.getDifferenceMode()) {
+                case None -> data;
+                case Running -> view.decodeFrame(view.getLowerTime(view.getNearestTime(time)), height);
+                case Base -> view.decodeFrame(view.getFirstTime(), height);
+            };
+            renderer.render(data, diffData, layer.glImage, layer.lut);
+        }
+
+        BufferedImage image = MappedImageFactory.createCompatible(w, h, BufferedImage.TYPE_3BYTE_BGR);
+        renderer.readPixels(MappedImageFactory.getByteBuffer(image));
+        return image;
+    }
+
+}
@@ -1,9 +1,13 @@
 package org.helioviewer.jhv.export;
 
+import java.awt.EventQueue;
 import java.awt.image.BufferedImage;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.helioviewer.jhv.JHVDirectory;
+import org.helioviewer.jhv.JHVGlobals;
 import org.helioviewer.jhv.Log;
 import org.helioviewer.jhv.Settings;
 import org.helioviewer.jhv.base.image.MappedImageFactory;
@@ -21,7 +25,17 @@ import com.jogamp.opengl.GL2;
 public class ExportMovie implements Movie.Listener {
 
     private static final ExportMovie instance = new ExportMovie();
-    private static final ExecutorService encodeExecutor = Executors.newSingleThreadExecutor(new JHVThread.NamedThreadFactory("Movie Encode"));
+    // frames wait in a short queue, when full the grabbing thread blocks until the encoder catches up
+    private static final ThreadPoolExecutor encodeExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(8), new JHVThread.NamedThreadFactory("Movie Encode"), (r, executor) -> {
+        if (!executor.isShutdown()) {
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    });
 
     private static MovieExporter exporter;
     private static GLGrab grabber;
@@ -38,6 +52,7 @@ public class ExportMovie implements Movie.Listener {
                 encodeExecutor.execute(new CloseWriter(exporter));
             } else {
                 encodeExecutor.shutdownNow();
+                exporter.abort();
             }
             exporter = null;
         }
@@ -149,7 +164,12 @@ public class ExportMovie implements Movie.Listener {
         @Override
         public void run() {
             try {
-                movieExporter.close();
+                String path = movieExporter.close();
+                String ready = " is ready in " + JHVGlobals.urify(JHVDirectory.EXPORTS.getPath()) + '.';
+                if (path == null)
+                    EventQueue.invokeLater(() -> JHVGlobals.displayNotificationEx("Recording" + ready));
+                else
+                    EventQueue.invokeLater(() -> JHVGlobals.displayNotificationEx("Recording " + JHVGlobals.urify(path) + ready));
             } catch (Exception e) {
                 Log.error(e);
             }
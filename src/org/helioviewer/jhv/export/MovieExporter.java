@@ -1,23 +1,33 @@
 package org.helioviewer.jhv.export;
 
-import java.awt.EventQueue;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.helioviewer.jhv.JHVDirectory;
 import org.helioviewer.jhv.JHVGlobals;
+import org.helioviewer.jhv.Log;
+import org.helioviewer.jhv.Settings;
 import org.helioviewer.jhv.base.image.MappedImageFactory;
 import org.helioviewer.jhv.base.image.NIOImageFactory;
 import org.helioviewer.jhv.io.FileUtils;
 import org.helioviewer.jhv.time.TimeUtils;
 
+// Frames are streamed into the stdin of FFmpeg, started at the first frame, so that encoding overlaps
+// with rendering and needs no disk space; the pipe blocks the caller while FFmpeg is behind.
+// If streaming is disabled or FFmpeg cannot be started, frames are dumped to a temporary file
+// which is encoded at close.
 class MovieExporter {
 
     private static final List<String> ffmpeg = List.of(new File(JHVGlobals.libCacheDir, "ffmpeg").getAbsolutePath());
@@ -28,20 +38,69 @@ class MovieExporter {
     private final int h;
     private final int fps;
 
+    // abort() comes from the EDT while the encode thread runs, the fields below are guarded by this
+    private Process encoder;
+    private WritableByteChannel pipe;
     private File tempFile;
+    private boolean aborted;
 
     MovieExporter(VideoFormat _format, int _w, int _h, int _fps) {
-        prefix = JHVDirectory.EXPORTS.getPath() + "JHV_" + TimeUtils.formatFilename(System.currentTimeMillis());
+        this(_format, _w, _h, _fps, JHVDirectory.EXPORTS.getPath() + "JHV_" + TimeUtils.formatFilename(System.currentTimeMillis()));
+    }
+
+    MovieExporter(VideoFormat _format, int _w, int _h, int _fps, String _prefix) {
+        prefix = _prefix;
         format = _format;
         w = _w;
         h = _h;
         fps = _fps;
     }
 
+    // the process or file is created outside the lock, and dropped if the export was aborted meanwhile
+    private void start() throws Exception {
+        if (!"false".equals(Settings.getProperty("video.stream"))) {
+            try {
+                Process process = startEncoder("pipe:0");
+                synchronized (this) {
+                    if (!aborted) {
+                        encoder = process;
+                        pipe = Channels.newChannel(process.getOutputStream());
+                        return;
+                    }
+                }
+                process.destroy();
+                throw new Exception("Movie export aborted");
+            } catch (IOException e) {
+                Log.warn("Cannot stream to FFmpeg, falling back to temporary file", e);
+            }
+        }
+        File file = File.createTempFile("dump", null, JHVGlobals.exportCacheDir);
+        file.deleteOnExit();
+        synchronized (this) {
+            if (!aborted) {
+                tempFile = file;
+                return;
+            }
+        }
+        file.delete();
+        throw new Exception("Movie export aborted");
+    }
+
     void encode(BufferedImage mainImage, BufferedImage eveImage, int movieLinePosition) throws Exception {
-        if (tempFile == null) {
-            tempFile = File.createTempFile("dump", null, JHVGlobals.exportCacheDir);
-            tempFile.deleteOnExit();
+        WritableByteChannel out;
+        File dump;
+        synchronized (this) {
+            if (aborted)
+                throw new Exception("Movie export aborted");
+            out = pipe;
+            dump = tempFile;
+        }
+        if (out == null && dump == null) {
+            start();
+            synchronized (this) {
+                out = pipe;
+                dump = tempFile;
+            }
         }
 
         int mainH = mainImage.getHeight();
@@ -53,69 +112,122 @@ class MovieExporter {
         }
 
         ByteBuffer mainData = MappedImageFactory.getByteBuffer(mainImage);
-        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.APPEND)) {
-            for (int j = mainH - 1; j >= 0; j--) { // write image flipped
-                int pos = 3 * w * j;
-                mainData.position(pos);
-                mainData.limit(pos + 3 * w);
-                channel.write(mainData);
+        try {
+            if (out != null)
+                write(out, mainData, mainH, eveData);
+            else {
+                try (FileChannel channel = FileChannel.open(dump.toPath(), StandardOpenOption.APPEND)) {
+                    write(channel, mainData, mainH, eveData);
+                } catch (Exception e) {
+                    dump.delete();
+                    synchronized (this) {
+                        tempFile = null;
+                    }
+                    throw e;
+                }
             }
-            if (eveData != null)
-                channel.write(eveData);
-        } catch (Exception e) {
-            tempFile.delete();
-            tempFile = null;
-            throw e;
         } finally {
             NIOImageFactory.free(scaled);
         }
     }
 
-    void close() throws Exception {
-        List<String> input = List.of(
+    private void write(WritableByteChannel channel, ByteBuffer mainData, int mainH, ByteBuffer eveData) throws IOException {
+        for (int j = mainH - 1; j >= 0; j--) { // write image flipped
+            int pos = 3 * w * j;
+            mainData.position(pos);
+            mainData.limit(pos + 3 * w);
+            while (mainData.hasRemaining())
+                channel.write(mainData);
+        }
+        if (eveData != null) {
+            while (eveData.hasRemaining())
+                channel.write(eveData);
+        }
+    }
+
+    private Process startEncoder(String input) throws IOException {
+        List<String> inputArgs = List.of(
                 "-hide_banner",
                 "-f", "rawvideo",
                 "-pix_fmt", "bgr24",
                 "-r", format == VideoFormat.PNG ? "1" : String.valueOf(fps),
                 "-s", w + "x" + h,
-                "-i", tempFile.getPath()
+                "-i", input
         );
-        String outPath = prefix + format.extension;
-        List<String> output = List.of(
+        List<String> outputArgs = List.of(
                 "-pix_fmt", "yuv420p",
                 "-tune", "animation",
                 "-movflags", "+faststart",
-                "-y", outPath
+                "-y", prefix + format.extension
         );
         List<String> command = new ArrayList<>(ffmpeg);
-        command.addAll(input);
+        command.addAll(inputArgs);
         command.addAll(format.settings);
-        command.addAll(output);
+        command.addAll(outputArgs);
 
-        try {
-            ProcessBuilder builder = new ProcessBuilder()
-                    .directory(JHVGlobals.exportCacheDir)
-                    .redirectError(File.createTempFile("fferr", null, JHVGlobals.exportCacheDir))
-                    .redirectOutput(File.createTempFile("ffout", null, JHVGlobals.exportCacheDir))
-                    .command(command);
+        return new ProcessBuilder()
+                .directory(JHVGlobals.exportCacheDir)
+                .redirectError(File.createTempFile("fferr", null, JHVGlobals.exportCacheDir))
+                .redirectOutput(File.createTempFile("ffout", null, JHVGlobals.exportCacheDir))
+                .command(command)
+                .start();
+    }
 
-            int exitCode = builder.start().waitFor();
+    // Returns the path of the movie, null for a PNG series
+    @Nullable
+    String close() throws Exception {
+        Process running;
+        WritableByteChannel out;
+        File dump;
+        synchronized (this) {
+            running = encoder;
+            out = pipe;
+            dump = tempFile;
+            encoder = null;
+            pipe = null;
+            tempFile = null;
+        }
+        try {
+            Process process = running;
+            if (process == null) {
+                if (dump == null)
+                    throw new Exception("No frames to encode");
+                process = startEncoder(dump.getPath());
+            } else
+                out.close(); // end of input
+            int exitCode = process.waitFor();
             if (exitCode != 0)
                 throw new Exception("FFmpeg exit code " + exitCode);
-
-            String ready = " is ready in " + JHVGlobals.urify(JHVDirectory.EXPORTS.getPath()) + '.';
-            if (format == VideoFormat.PNG) // don't know name and how many
-                EventQueue.invokeLater(() -> JHVGlobals.displayNotificationEx("Recording" + ready));
-            else
-                EventQueue.invokeLater(() -> JHVGlobals.displayNotificationEx("Recording " + JHVGlobals.urify(outPath) + ready));
+            return format == VideoFormat.PNG ? null : prefix + format.extension; // don't know name and how many
         } catch (Exception e) {
+            if (running != null)
+                running.destroy();
+            Path dir = Path.of(prefix).getParent();
             DirectoryStream.Filter<Path> filter = p -> p.toString().startsWith(prefix);
-            FileUtils.deleteFromDir(Path.of(JHVDirectory.EXPORTS.getPath()), filter);
+            FileUtils.deleteFromDir(dir, filter);
             throw e;
         } finally {
-            tempFile.delete();
+            if (dump != null)
+                dump.delete();
+        }
+    }
+
+    // Abandons the export, from any thread; a start in progress drops what it created
+    void abort() {
+        Process running;
+        File dump;
+        synchronized (this) {
+            aborted = true;
+            running = encoder;
+            dump = tempFile;
+            encoder = null;
+            pipe = null;
             tempFile = null;
         }
+        if (running != null)
+            running.destroy();
+        if (dump != null)
+            dump.delete();
     }
 
 }
@@ -0,0 +1,403 @@
+package org.helioviewer.jhv.export;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import org.helioviewer.jhv.astronomy.Position;
+import org.helioviewer.jhv.base.Region;
+import org.helioviewer.jhv.imagedata.ImageBuffer;
+import org.helioviewer.jhv.imagedata.ImageData;
+import org.helioviewer.jhv.math.MathUtils;
+import org.helioviewer.jhv.math.Quat;
+import org.helioviewer.jhv.math.Vec2;
+import org.helioviewer.jhv.metadata.MetaData;
+import org.helioviewer.jhv.opengl.GLImage;
+
+// CPU counterpart of the orthographic projection of GLSLSolarShader (solarOrtho.frag with solarCommon.frag),
+// including the GL state set by GLListener: premultiplied alpha blending and a LEQUAL depth test.
+// The camera looks at the Sun from the given viewpoint, without drag rotation or translation.
+// Rows are bottom-up, as read back from a framebuffer.
+class RasterRenderer {
+
+    private static final double CLIP_SCALE_NARROW = 1. / (2. * 32.);
+    private static final double CLIP_SCALE_WIDE = 1. / (2. * 50. * 215.09151684811678);
+    private static final double BOOST = 1. / (0.2 * 2.);
+
+    private static final double[] bc = {.30613, .38774, .30613};
+    private static final double[] bo = {-1.2004377, 0., 1.2004377};
+
+    private final int width;
+    private final int height;
+    private final double halfWidth;
+    private final double halfHeight;
+    private final Position camera;
+    private final boolean showCorona;
+    private final boolean diffRotation;
+
+    private final float[] rgba; // premultiplied, cleared to transparent black
+    private final float[] depth;
+
+    RasterRenderer(int _width, int _height, Position _camera, double cameraWidth, boolean _showCorona, boolean _diffRotation) {
+        width = _width;
+        height = _height;
+        halfWidth = 0.5 * cameraWidth * width / height;
+        halfHeight = 0.5 * cameraWidth;
+        camera = _camera;
+        showCorona = _showCorona;
+        diffRotation = _diffRotation;
+
+        rgba = new float[4 * width * height];
+        depth = new float[width * height];
+        Arrays.fill(depth, 1);
+    }
+
+    // Texture unit with GL_LINEAR filtering and GL_CLAMP_TO_EDGE wrapping, the red channel only
+    private record Texture(ImageBuffer ib) {
+
+        private float texel(int x, int y) {
+            int idx = ib.width * y + x;
+            return switch (ib.format) {
+                case Gray8 -> (((ByteBuffer) ib.buffer).get(idx) & 0xFF) / 255f;
+                case Gray16 -> (((ShortBuffer) ib.buffer).get(idx) & 0xFFFF) / 65535f;
+                case ARGB32 -> ((((ByteBuffer) ib.buffer).getInt(4 * idx) >> 16) & 0xFF) / 255f;
+            };
+        }
+
+        double sample(double u, double v) {
+            double fx = u * ib.width - .5, fy = v * ib.height - .5;
+            int x0 = (int) Math.floor(fx), y0 = (int) Math.floor(fy);
+            double ax = fx - x0, ay = fy - y0;
+            int xa = MathUtils.clip(x0, 0, ib.width - 1), xb = MathUtils.clip(x0 + 1, 0, ib.width - 1);
+            int ya = MathUtils.clip(y0, 0, ib.height - 1), yb = MathUtils.clip(y0 + 1, 0, ib.height - 1);
+
+            double top = texel(xa, ya) * (1 - ax) + texel(xb, ya) * ax;
+            double bottom = texel(xa, yb) * (1 - ax) + texel(xb, yb) * ax;
+            return top * (1 - ay) + bottom * ay;
+        }
+
+    }
+
+    // The uniforms of one layer, as bound by ImageLayer.render and GLImage.applyFilters
+    private static class Uniforms {
+
+        final float[] cameraDifference = new float[8];
+        final float[] crota = new float[8];
+        final double[] crval = new double[4];
+        final double[] rect = new double[8];
+        final double[] deltaT = new double[2];
+        final double[][] planeNormal = new double[2][];
+
+        double brightOffset;
+        double brightScale;
+        boolean enhanced;
+        double[] sharpen;
+        double[] color;
+        int isDiff;
+        double slitLeft, slitRight;
+        boolean calculateDepth;
+        double innerRadius, outerRadius;
+        double sector0, sector1;
+        boolean hasSector;
+        double cutOffX, cutOffY, cutOffValue;
+        int[] lut;
+
+    }
+
+    void render(ImageData data, ImageData diffData, GLImage glImage, int[] lut) {
+        MetaData m = data.getMetaData();
+        MetaData dm = diffData.getMetaData();
+        Position mv = m.getViewpoint(), dmv = dm.getViewpoint();
+
+        Uniforms u = new Uniforms();
+        Quat q = camera.toQuat();
+        Quat.rotateWithConjugate(q, mv.toQuat()).setFloatArray(u.cameraDifference, 0);
+        Quat.rotateWithConjugate(q, dmv.toQuat()).setFloatArray(u.cameraDifference, 4);
+        m.getCROTA().setFloatArray(u.crota, 0);
+        dm.getCROTA().setFloatArray(u.crota, 4);
+        Vec2 crval = m.getCRVAL(), dcrval = dm.getCRVAL();
+        u.crval[0] = crval.x;
+        u.crval[1] = crval.y;
+        u.crval[2] = dcrval.x;
+        u.crval[3] = dcrval.y;
+        setRect(u.rect, 0, data.getRegion());
+        setRect(u.rect, 4, diffData.getRegion());
+        u.deltaT[0] = diffRotation ? (camera.time.milli - mv.time.milli) * 1e-9 : 0;
+        u.deltaT[1] = diffRotation ? (camera.time.milli - dmv.time.milli) * 1e-9 : 0;
+        u.planeNormal[0] = rotateZAxis(u.cameraDifference, 0);
+        u.planeNormal[1] = rotateZAxis(u.cameraDifference, 4);
+
+        u.brightOffset = glImage.getBrightOffset();
+        u.brightScale = glImage.getBrightScale() * m.getResponseFactor();
+        u.enhanced = glImage.getEnhanced();
+        ImageBuffer ib = data.getImageBuffer();
+        u.sharpen = new double[]{1. / ib.width, 1. / ib.height, -2 * glImage.getSharpen()};
+        double opacity = glImage.getOpacity();
+        u.color = new double[]{
+                (glImage.getRed() ? 1 : 0) * opacity,
+                (glImage.getGreen() ? 1 : 0) * opacity,
+                (glImage.getBlue() ? 1 : 0) * opacity,
+                opacity * glImage.getBlend()};
+        u.isDiff = glImage.getDifferenceMode().ordinal();
+        u.slitLeft = glImage.getSlitLeft();
+        u.slitRight = glImage.getSlitRight();
+        u.calculateDepth = m.getCalculateDepth();
+        u.innerRadius = m.getInnerRadius();
+        u.outerRadius = showCorona ? m.getOuterRadius() : 1;
+        u.hasSector = m.getSector0() != m.getSector1();
+        u.sector0 = m.getSector0();
+        u.sector1 = m.getSector1();
+        if (m.getCutOffValue() > 0) {
+            u.cutOffX = m.getCutOffX();
+            u.cutOffY = m.getCutOffY();
+            u.cutOffValue = m.getCutOffValue();
+        } else
+            u.cutOffValue = -1;
+        u.lut = lut;
+
+        Texture image = new Texture(ib);
+        Texture diffImage = new Texture(diffData.getImageBuffer());
+        double[] out = new double[5]; // r, g, b, a, depth
+        double[] scratch = new double[6];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!fragment(u, image, diffImage, x + .5, y + .5, out, scratch))
+                    continue;
+
+                int i = width * y + x;
+                if (out[4] > depth[i]) // GL_LEQUAL
+                    continue;
+                depth[i] = (float) out[4];
+
+                double srcA = MathUtils.clip(out[3], 0, 1);
+                int p = 4 * i;
+                for (int c = 0; c < 4; c++) // GL_ONE, GL_ONE_MINUS_SRC_ALPHA
+                    rgba[p + c] = (float) MathUtils.clip(MathUtils.clip(out[c], 0, 1) + rgba[p + c] * (1 - srcA), 0, 1);
+            }
+        }
+    }
+
+    // GL_BGR, GL_UNSIGNED_BYTE
+    void readPixels(ByteBuffer buffer) {
+        for (int i = 0; i < width * height; i++) {
+            buffer.put(3 * i, (byte) (rgba[4 * i + 2] * 255 + .5f));
+            buffer.put(3 * i + 1, (byte) (rgba[4 * i + 1] * 255 + .5f));
+            buffer.put(3 * i + 2, (byte) (rgba[4 * i] * 255 + .5f));
+        }
+    }
+
+    private static void setRect(double[] rect, int idx, Region r) {
+        rect[idx] = r.llx;
+        rect[idx + 1] = r.lly;
+        rect[idx + 2] = 1. / r.width;
+        rect[idx + 3] = 1. / r.height;
+    }
+
+    // main() of solarOrtho.frag, returns false on discard
+    private boolean fragment(Uniforms u, Texture image, Texture diffImage, double fragX, double fragY, double[] out, double[] s) {
+        double upX = (2. * fragX / width - 1.) * halfWidth;
+        double upY = (2. * fragY / height - 1.) * halfHeight;
+
+        double radius2 = upX * upX + upY * upY;
+        boolean onDisk = radius2 <= 1.;
+
+        double factor, fragDepth;
+        double hx = 0, hy = 0, hz = 0;
+        double rx = 0, ry = 0, rz = 0, cx = 0, cy = 0;
+        double drx = 0, dry = 0, drz = 0, dcx = 0, dcy = 0;
+
+        if (onDisk) {
+            hx = upX;
+            hy = upY;
+            hz = Math.sqrt(1. - radius2);
+
+            rotateInverse(u.cameraDifference, 0, hx, hy, hz, s, 0);
+            differential(u.deltaT[0], s, 0);
+            rx = s[0];
+            ry = s[1];
+            rz = s[2];
+            applyCenter(u, 0, rx, ry, rz, s, 3);
+            cx = s[3];
+            cy = s[4];
+
+            rotateInverse(u.cameraDifference, 4, hx, hy, hz, s, 0);
+            differential(u.deltaT[1], s, 0);
+            drx = s[0];
+            dry = s[1];
+            drz = s[2];
+            applyCenter(u, 1, drx, dry, drz, s, 3);
+            dcx = s[3];
+            dcy = s[4];
+
+            factor = 1.;
+            fragDepth = 0.5 - hz * CLIP_SCALE_NARROW;
+        } else {
+            factor = Math.sqrt(radius2);
+            fragDepth = 1.;
+        }
+
+        if (rz <= 0.) { // off-limb or back
+            double[] n = u.planeNormal[0];
+            if (onDisk && n[2] <= 0.)
+                return false;
+            hx = upX;
+            hy = upY;
+            hz = -(n[0] * upX + n[1] * upY) / n[2];
+            if (onDisk && hz < 0.) // differential: off-limb behind sphere
+                return false;
+
+            rotateInverse(u.cameraDifference, 0, hx, hy, hz, s, 0);
+            rx = s[0];
+            ry = s[1];
+            rz = s[2];
+            if (Math.sqrt(rx * rx + ry * ry + rz * rz) <= 1.) // differential: central disk
+                return false;
+
+            applyCenter(u, 0, rx, ry, rz, s, 3);
+            cx = s[3];
+            cy = s[4];
+
+            if (u.calculateDepth) // intersecting Euhforia planes
+                fragDepth = 0.5 - hz * CLIP_SCALE_WIDE;
+        }
+
+        if (u.hasSector) {
+            double theta = Math.atan2(cy, cx);
+            if (theta < u.sector0 || theta > u.sector1)
+                return false;
+        }
+
+        double tx = u.rect[2] * (cx - u.rect[0]);
+        double ty = u.rect[3] * (-cy - u.rect[1]);
+        if (!inSlit(u, tx, ty))
+            return false;
+
+        double flatDist = Math.abs(rx * u.cutOffX + ry * u.cutOffY);
+        double flatDistAlt = Math.abs(rx * -u.cutOffY + ry * u.cutOffX);
+        double rad = Math.sqrt(rx * rx + ry * ry);
+        if (rad > u.outerRadius || rad < u.innerRadius ||
+                (u.cutOffValue >= 0. && (flatDist > u.cutOffValue || flatDistAlt > u.cutOffValue)))
+            return false;
+
+        double dtx = 0, dty = 0;
+        if (u.isDiff != 0) {
+            if (drz <= 0.) {
+                double[] n = u.planeNormal[1];
+                if (onDisk && n[2] <= 0.)
+                    return false;
+                hx = upX;
+                hy = upY;
+                hz = -(n[0] * upX + n[1] * upY) / n[2];
+                rotateInverse(u.cameraDifference, 4, hx, hy, hz, s, 0);
+                drx = s[0];
+                dry = s[1];
+                drz = s[2];
+                applyCenter(u, 1, drx, dry, drz, s, 3);
+                dcx = s[3];
+                dcy = s[4];
+            }
+
+            dtx = u.rect[6] * (dcx - u.rect[4]);
+            dty = u.rect[7] * (-dcy - u.rect[5]);
+            if (!inSlit(u, dtx, dty))
+                return false;
+
+            double diffRad = Math.sqrt(drx * drx + dry * dry);
+            if (diffRad > u.outerRadius || diffRad < u.innerRadius)
+                return false;
+        }
+
+        getColor(u, image, diffImage, tx, ty, dtx, dty, factor, out);
+        out[4] = fragDepth;
+        return true;
+    }
+
+    // getColor() of solarCommon.frag
+    private static void getColor(Uniforms u, Texture image, Texture diffImage, double tx, double ty, double dtx, double dty, double factor, double[] out) {
+        double scale = u.brightScale;
+        if (u.enhanced)
+            scale *= factor * factor * factor;
+        double offset = u.brightOffset;
+
+        double v;
+        double conv = 0;
+        boolean sharpen = u.sharpen[2] != 0;
+        if (u.isDiff == 0) {
+            v = image.sample(tx, ty) * scale + offset;
+            if (sharpen) {
+                for (int j = 0; j < 3; j++) {
+                    for (int i = 0; i < 3; i++) {
+                        double ox = bo[i] * u.sharpen[0], oy = bo[j] * u.sharpen[1];
+                        conv += (image.sample(tx + ox, ty + oy) * scale + offset) * bc[j] * bc[i];
+                    }
+                }
+            }
+        } else {
+            v = (image.sample(tx, ty) * scale + offset) - (diffImage.sample(dtx, dty) * scale + offset);
+            v = v * BOOST + 0.5;
+            if (sharpen) {
+                for (int j = 0; j < 3; j++) {
+                    for (int i = 0; i < 3; i++) {
+                        double ox = bo[i] * u.sharpen[0], oy = bo[j] * u.sharpen[1];
+                        conv += ((image.sample(tx + ox, ty + oy) * scale + offset) - (diffImage.sample(dtx + ox, dty + oy) * scale + offset)) * bc[j] * bc[i];
+                    }
+                }
+                conv = conv * BOOST + 0.5;
+            }
+        }
+        if (sharpen)
+            v = v * (1 - u.sharpen[2]) + conv * u.sharpen[2];
+
+        // 1D LUT texture with GL_NEAREST filtering and GL_CLAMP_TO_EDGE wrapping
+        int[] lut = u.lut;
+        int c = lut[MathUtils.clip((int) Math.floor(v * lut.length), 0, lut.length - 1)];
+        out[0] = ((c >> 16) & 0xFF) / 255. * u.color[0];
+        out[1] = ((c >> 8) & 0xFF) / 255. * u.color[1];
+        out[2] = (c & 0xFF) / 255. * u.color[2];
+        out[3] = ((c >>> 24) & 0xFF) / 255. * u.color[3];
+    }
+
+    private static boolean inSlit(Uniforms u, double x, double y) {
+        return !(x < u.slitLeft || y < 0. || x > u.slitRight || y > 1.);
+    }
+
+    // rotate_vector_inverse(quat, vec)
+    private static void rotateInverse(float[] q, int o, double vx, double vy, double vz, double[] out, int oo) {
+        double qx = q[o], qy = q[o + 1], qz = q[o + 2], qw = q[o + 3];
+        double tx = vy * qz - vz * qy + qw * vx;
+        double ty = vz * qx - vx * qz + qw * vy;
+        double tz = vx * qy - vy * qx + qw * vz;
+        out[oo] = vx + 2. * (ty * qz - tz * qy);
+        out[oo + 1] = vy + 2. * (tz * qx - tx * qz);
+        out[oo + 2] = vz + 2. * (tx * qy - ty * qx);
+    }
+
+    // rotate_vector(quat, zAxis)
+    private static double[] rotateZAxis(float[] q, int o) {
+        double qx = q[o], qy = q[o + 1], qz = q[o + 2], qw = q[o + 3];
+        return new double[]{
+                2. * (qy * qw + qz * qx),
+                2. * (qz * qy - qx * qw),
+                1. + 2. * (-qx * qx - qy * qy)};
+    }
+
+    // apply_center(v, crval, crota)
+    private static void applyCenter(Uniforms u, int idx, double vx, double vy, double vz, double[] out, int oo) {
+        rotateInverse(u.crota, 4 * idx, vx - u.crval[2 * idx], vy - u.crval[2 * idx + 1], vz, out, oo);
+    }
+
+    // differential(dt, v), in place
+    private static void differential(double dt, double[] v, int o) {
+        if (dt == 0.)
+            return;
+
+        double phi = Math.atan2(v[o], v[o + 2]);
+        double theta = Math.asin(v[o + 1]);
+        double sin2l = Math.sin(theta);
+        sin2l *= sin2l;
+        phi -= dt * (0.01367 - 0.339 * sin2l - 0.485 * sin2l * sin2l);
+        v[o] = Math.cos(theta) * Math.sin(phi);
+        v[o + 2] = Math.cos(theta) * Math.cos(phi);
+    }
+
+}
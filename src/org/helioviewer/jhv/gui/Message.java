@@ -2,6 +2,7 @@ package org.helioviewer.jhv.gui;
 
 import java.awt.Dimension;
 import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
 
 import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
@@ -40,7 +41,8 @@ public class Message {
     }
 
     public static void fatalErr(String msg) {
-        JOptionPane.showMessageDialog(null, msg, "Fatal Error", JOptionPane.ERROR_MESSAGE);
+        if (!GraphicsEnvironment.isHeadless()) // batch export
+            JOptionPane.showMessageDialog(null, msg, "Fatal Error", JOptionPane.ERROR_MESSAGE);
         System.exit(-1);
     }
 
@@ -40,6 +40,8 @@ import org.helioviewer.jhv.export.VideoFormat;
 import org.helioviewer.jhv.gui.JHVFrame;
 import org.helioviewer.jhv.gui.actions.LoadStateDialog;
 import org.helioviewer.jhv.gui.interfaces.ShowableDialog;
+import org.helioviewer.jhv.imagedata.ImageBufferCache;
+import org.helioviewer.jhv.imagedata.ImageBufferPool;
 import org.helioviewer.jhv.io.DataSources;
 import org.helioviewer.jhv.plugins.Plugin;
 import org.helioviewer.jhv.plugins.PluginManager;
@@ -56,6 +58,7 @@ public class PreferencesDialog extends StandardDialog implements ShowableDialog
 
     private void setLabelCache() {
         labelCache.setText(String.format("The image cache currently uses %.1fGB on disk.", JPIPCacheManager.getSize() / (1024 * 1024 * 1024.)));
+        labelCache.setToolTipText("<html>" + ImageBufferCache.getStats() + "<br>" + ImageBufferPool.getStats());
     }
 
     private DefaultsSelectionPanel defaultsPanel;
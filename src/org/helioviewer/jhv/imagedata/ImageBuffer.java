@@ -1,9 +1,12 @@
 package org.helioviewer.jhv.imagedata;
 
+import java.lang.ref.Cleaner;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ShortBuffer;
 
+import javax.annotation.Nullable;
+
 public class ImageBuffer {
 
     public static final int BAD_PIXEL = Integer.MIN_VALUE;
@@ -23,6 +26,8 @@ public class ImageBuffer {
     public final Format format;
     public final Buffer buffer;
     private final float[] lut;
+    private final Object lutOwner; // shared by the ImageBuffers of a pooled LUT
+    private final Cleaner.Cleanable recycler;
 
     public ImageBuffer(int _width, int _height, Format _format, Buffer _buffer) {
         this(_width, _height, _format, _buffer, null);
@@ -34,12 +39,64 @@ public class ImageBuffer {
         format = _format;
         buffer = _buffer;
         lut = _lut;
+        lutOwner = null;
+        recycler = null;
+    }
+
+    private static final Cleaner cleaner = Cleaner.create();
+
+    // must not capture the ImageBuffer
+    private record Recycler(ByteBuffer storage) implements Runnable {
+        @Override
+        public void run() {
+            ImageBufferPool.release(storage);
+        }
+    }
+
+    // must not capture the owner
+    private record LutRecycler(float[] lut) implements Runnable {
+        @Override
+        public void run() {
+            ImageBufferPool.releaseLut(lut);
+        }
+    }
+
+    private ImageBuffer(int _width, int _height, Format _format, @Nullable float[] _lut, @Nullable Object _lutOwner, ByteBuffer storage) {
+        width = _width;
+        height = _height;
+        format = _format;
+        buffer = format == Format.Gray16 ? storage.asShortBuffer() : storage;
+        lut = _lut;
+        lutOwner = _lutOwner;
+        recycler = cleaner.register(this, new Recycler(storage));
+    }
+
+    // Borrows off-heap storage from the pool; it returns there once this ImageBuffer is collected or released.
+    // Holders of the buffer alone must also keep a reference to the ImageBuffer.
+    public static ImageBuffer allocate(int width, int height, Format format, @Nullable float[] lut) {
+        return new ImageBuffer(width, height, format, lut, null, ImageBufferPool.acquire(width * height * format.bytes));
+    }
+
+    // As allocate, with a LUT from ImageBufferPool.acquireLut; it returns there once no ImageBuffer shares it
+    public static ImageBuffer allocatePooledLut(int width, int height, Format format, float[] lut) {
+        Object lutOwner = new Object();
+        cleaner.register(lutOwner, new LutRecycler(lut));
+        return new ImageBuffer(width, height, format, lut, lutOwner, ImageBufferPool.acquire(width * height * format.bytes));
+    }
+
+    // Returns pooled storage early, the ImageBuffer must not be used afterwards
+    void release() {
+        if (recycler != null)
+            recycler.clean();
     }
 
     public static ImageBuffer mgnFilter(ImageBuffer ib, boolean mgn) throws Exception {
         if (!mgn || ib.format == Format.ARGB32)
             return ib;
-        return new ImageBuffer(ib.width, ib.height, ib.format, ImageFilter.mgn(ib.buffer, ib.width, ib.height), ib.lut);
+        ImageBuffer out = new ImageBuffer(ib.width, ib.height, ib.format, ib.lut, ib.lutOwner, ImageBufferPool.acquire(ib.width * ib.height * ib.format.bytes));
+        ImageFilter.mgn(ib.buffer, out.buffer, ib.width, ib.height);
+        ib.release();
+        return out;
     }
 
     private int getPixelInternal(int x, int y) {
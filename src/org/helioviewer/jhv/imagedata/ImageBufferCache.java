@@ -0,0 +1,58 @@
+package org.helioviewer.jhv.imagedata;
+
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+// Decoded images of all views, bounded by the byte size of the pixel data instead of GC pressure.
+// Eviction is Caffeine's W-TinyLFU, which keeps the frames of a looping movie better than LRU.
+public class ImageBufferCache {
+
+    private static final long budget = Runtime.getRuntime().maxMemory() / 4;
+
+    private static final Cache<Object, ImageBuffer> cache = Caffeine.newBuilder()
+            .maximumWeight(budget)
+            .weigher((Object key, ImageBuffer value) -> getBytes(value))
+            .recordStats()
+            .build();
+
+    public static int getBytes(ImageBuffer ib) {
+        return ib.width * ib.height * ib.format.bytes;
+    }
+
+    @Nullable
+    public static ImageBuffer get(Object key) {
+        return cache.getIfPresent(key);
+    }
+
+    public static void put(Object key, ImageBuffer value) {
+        cache.put(key, value);
+    }
+
+    public static void invalidate(Object key) {
+        cache.invalidate(key);
+    }
+
+    public static void invalidateIf(Predicate<Object> predicate) {
+        cache.asMap().keySet().removeIf(predicate);
+    }
+
+    public static long getBudget() {
+        return budget;
+    }
+
+    public static long getWeight() {
+        return cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    public static String getStats() {
+        CacheStats stats = cache.stats();
+        return String.format("Decoded images: %.1f of %.1fMB, %d hits, %d misses, %d evictions",
+                getWeight() / (1024 * 1024.), budget / (1024 * 1024.), stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.helioviewer.jhv.imagedata;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Off-heap backing storage of ImageBuffer, pooled in size classes of the byte size of the pixels,
+// i.e., of format and dimensions. The frames of a movie share one class. Idle storage is bounded,
+// what does not fit is left to the GC. The value LUTs of 16-bit images are pooled likewise.
+public class ImageBufferPool {
+
+    private static final long MAX_IDLE = Math.min(512L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+
+    private static final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<ByteBuffer>> idle = new ConcurrentHashMap<>();
+    private static final AtomicLong idleBytes = new AtomicLong();
+
+    public static final int LUT_SIZE = 65536;
+    private static final int MAX_IDLE_LUTS = 64;
+    private static final ConcurrentLinkedQueue<float[]> idleLuts = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger idleLutCount = new AtomicInteger();
+
+    private static final long startTime = System.nanoTime();
+    private static final LongAdder requests = new LongAdder();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder allocatedBytes = new LongAdder();
+
+    static ByteBuffer acquire(int bytes) {
+        requests.increment();
+        ConcurrentLinkedQueue<ByteBuffer> queue = idle.get(bytes);
+        ByteBuffer buffer = queue == null ? null : queue.poll();
+        if (buffer != null) {
+            idleBytes.addAndGet(-bytes);
+            hits.increment();
+            return buffer.clear();
+        }
+        allocatedBytes.add(bytes);
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    static void release(ByteBuffer buffer) {
+        int bytes = buffer.capacity();
+        if (idleBytes.addAndGet(bytes) > MAX_IDLE) {
+            idleBytes.addAndGet(-bytes);
+            return;
+        }
+        idle.computeIfAbsent(bytes, k -> new ConcurrentLinkedQueue<>()).add(buffer);
+    }
+
+    // Entries are left from the previous image, but for the first which bad pixels read:
+    // the entry of each stored value must be set
+    public static float[] acquireLut() {
+        float[] lut = idleLuts.poll();
+        if (lut == null)
+            return new float[LUT_SIZE];
+        idleLutCount.decrementAndGet();
+        lut[0] = 0; // read for bad pixels
+        return lut;
+    }
+
+    static void releaseLut(float[] lut) {
+        if (idleLutCount.incrementAndGet() > MAX_IDLE_LUTS) {
+            idleLutCount.decrementAndGet();
+            return;
+        }
+        idleLuts.add(lut);
+    }
+
+    public static String getStats() {
+        long req = requests.sum();
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return String.format("Image buffer pool: %.1f%% hits of %d requests, %.1fMB idle, %.2fMB/s allocated",
+                req == 0 ? 0 : 100. * hits.sum() / req, req, idleBytes.get() / (1024 * 1024.), allocatedBytes.sum() / (1024 * 1024.) / seconds);
+    }
+
+}
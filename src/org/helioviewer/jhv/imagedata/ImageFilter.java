@@ -4,6 +4,7 @@ import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ShortBuffer;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.ArrayList;
 
@@ -34,9 +35,7 @@ class ImageFilter {
         // Number of boxes
         private final int K;
 
-        private final float[] buffer;
-
-        GaussFilter(double sigma, int _K, int N) {
+        GaussFilter(double sigma, int _K) {
             K = _K;
 
             int i = K - SII_MIN_K;
@@ -49,9 +48,6 @@ class ImageFilter {
 
             for (int k = 0; k < K; ++k)
                 weights[k] = (float) (weights0[i][k] / sum);
-
-            int pad = radii[0] + 1;
-            buffer = new float[N + 2 * pad];
         }
 
         private static int extension(int N, int n) {
@@ -66,21 +62,21 @@ class ImageFilter {
             return n;
         }
 
-        private void gaussianConv(float[] dst, float[] src, int N, int stride, int offset) {
+        private void gaussianConvRow(float[] dst, float[] src, int N, int offset, float[] buffer) {
             int pad = radii[0] + 1;
             float accum = 0;
 
             // Compute cumulative sum of src over n = -pad,..., N + pad - 1
             for (int n = -pad; n < 0; ++n) {
-                accum += src[offset + stride * extension(N, n)];
+                accum += src[offset + extension(N, n)];
                 buffer[pad + n] = accum;
             }
             for (int n = 0; n < N; ++n) {
-                accum += src[offset + stride * n];
+                accum += src[offset + n];
                 buffer[pad + n] = accum;
             }
             for (int n = N; n < N + pad; ++n) {
-                accum += src[offset + stride * extension(N, n)];
+                accum += src[offset + extension(N, n)];
                 buffer[pad + n] = accum;
             }
 
@@ -89,21 +85,91 @@ class ImageFilter {
                 accum = weights[0] * (buffer[pad + n + radii[0]] - buffer[pad + n - radii[0] - 1]);
                 for (int k = 1; k < K; ++k)
                     accum += weights[k] * (buffer[pad + n + radii[k]] - buffer[pad + n - radii[k] - 1]);
-                dst[offset + stride * n] = accum;
+                dst[offset + n] = accum;
+            }
+        }
+
+        // Same arithmetic as gaussianConvRow for each column of [x0, x1), but the columns are interleaved
+        // in the buffer so that the inner loops run over contiguous memory and can be vectorised
+        private void gaussianConvColumns(float[] img, int width, int height, int x0, int x1, float[] buffer) {
+            int pad = radii[0] + 1;
+            int bw = x1 - x0;
+
+            for (int j = 0; j < bw; ++j)
+                buffer[j] = 0 + img[width * extension(height, -pad) + x0 + j];
+            for (int n = -pad + 1; n < height + pad; ++n) {
+                int src = width * extension(height, n) + x0;
+                int cur = (pad + n) * bw, prev = cur - bw;
+                for (int j = 0; j < bw; ++j)
+                    buffer[cur + j] = buffer[prev + j] + img[src + j];
+            }
+
+            for (int n = 0; n < height; ++n) {
+                int dst = width * n + x0;
+                int hi = (pad + n + radii[0]) * bw, lo = (pad + n - radii[0] - 1) * bw;
+                float w = weights[0];
+                for (int j = 0; j < bw; ++j)
+                    img[dst + j] = w * (buffer[hi + j] - buffer[lo + j]);
+                for (int k = 1; k < K; ++k) {
+                    int hik = (pad + n + radii[k]) * bw, lok = (pad + n - radii[k] - 1) * bw;
+                    float wk = weights[k];
+                    for (int j = 0; j < bw; ++j)
+                        img[dst + j] += wk * (buffer[hik + j] - buffer[lok + j]);
+                }
             }
         }
 
         void gaussianConvImage(float[] dst, float[] src, int width, int height) {
+            int pad = radii[0] + 1;
             // Filter each row
-            for (int y = 0; y < height; ++y)
-                gaussianConv(dst, src, width, 1, width * y);
-            // Filter each column
-            for (int x = 0; x < width; ++x)
-                gaussianConv(dst, dst, height, width, x);
+            forRanges(height, grain(height, 1), width + 2 * pad,
+                    (from, to, buffer) -> {
+                        for (int y = from; y < to; ++y)
+                            gaussianConvRow(dst, src, width, width * y, buffer);
+                    });
+            // Filter each column, in blocks of adjacent columns
+            forRanges(width, grain(width, BLOCK), (height + 2 * pad) * BLOCK,
+                    (from, to, buffer) -> {
+                        for (int x = from; x < to; x += BLOCK)
+                            gaussianConvColumns(dst, width, height, x, Math.min(to, x + BLOCK), buffer);
+                    });
         }
 
     }
 
+    private static final int BLOCK = 64; // columns filtered together
+    private static final ThreadLocal<float[]> scratch = ThreadLocal.withInitial(() -> new float[0]);
+
+    // Per-worker buffer, only reallocated if it is too small
+    private static float[] scratch(int size) {
+        float[] buffer = scratch.get();
+        if (buffer.length < size) {
+            buffer = new float[size];
+            scratch.set(buffer);
+        }
+        return buffer;
+    }
+
+    private interface RangeAction {
+        void run(int from, int to, float[] buffer);
+    }
+
+    // Lines per task, a multiple of unit, such that each pool worker gets a few tasks
+    private static int grain(int n, int unit) {
+        int tasks = 4 * ForkJoinPool.getCommonPoolParallelism();
+        int units = (n + unit - 1) / unit;
+        return unit * Math.max(1, (units + tasks - 1) / tasks);
+    }
+
+    private static void forRanges(int n, int grain, int scratchSize, RangeAction action) {
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>((n + grain - 1) / grain);
+        for (int from = 0; from < n; from += grain) {
+            int f = from, t = Math.min(n, from + grain);
+            tasks.add(ForkJoinTask.adapt(() -> action.run(f, t, scratch(scratchSize))));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
     private static final int K = 3;
     private static final float H = 0.7f;
     private static final double[] sigmas = {1, 4, 16, 64};
@@ -113,7 +179,7 @@ class ImageFilter {
             implements Callable<float[]> {
         @Override
         public float[] call() {
-            GaussFilter filter = new GaussFilter(sigma, K, Math.max(width, height));
+            GaussFilter filter = new GaussFilter(sigma, K);
 
             int size = width * height;
             float[] conv = new float[size];
@@ -165,43 +231,37 @@ class ImageFilter {
         return image;
     }
 
-    private static ByteBuffer mgn(ByteBuffer buf, int width, int height) {
+    private static void mgn(ByteBuffer buf, ByteBuffer out, int width, int height) {
         int size = width * height;
         float[] data = new float[size];
 
-        byte[] array = buf.array(); // always backed by array
-        for (int i = 0; i < size; ++i)
-            data[i] = ((array[i] + 256) & 0xFF) / 255f;
+        for (int i = 0; i < size; ++i) // may be off-heap
+            data[i] = ((buf.get(i) + 256) & 0xFF) / 255f;
 
         float[] image = multiScale(data, width, height);
 
-        byte[] out = new byte[size];
         for (int i = 0; i < size; ++i)
-            out[i] = (byte) MathUtils.clip(image[i] * 255 + .5f, 0, 255);
-        return ByteBuffer.wrap(out);
+            out.put(i, (byte) MathUtils.clip(image[i] * 255 + .5f, 0, 255));
     }
 
-    private static ShortBuffer mgn(ShortBuffer buf, int width, int height) {
+    private static void mgn(ShortBuffer buf, ShortBuffer out, int width, int height) {
         int size = width * height;
         float[] data = new float[size];
 
-        short[] array = buf.array(); // always backed by array
-        for (int i = 0; i < size; ++i)
-            data[i] = ((array[i] + 65536) & 0xFFFF) / 65535f;
+        for (int i = 0; i < size; ++i) // may be off-heap
+            data[i] = ((buf.get(i) + 65536) & 0xFFFF) / 65535f;
 
         float[] image = multiScale(data, width, height);
 
-        short[] out = new short[size];
         for (int i = 0; i < size; ++i)
-            out[i] = (short) MathUtils.clip(image[i] * 65535 + .5f, 0, 65535);
-        return ShortBuffer.wrap(out);
+            out.put(i, (short) MathUtils.clip(image[i] * 65535 + .5f, 0, 65535));
     }
 
-    static Buffer mgn(Buffer buf, int width, int height) throws Exception {
-        if (buf instanceof ByteBuffer)
-            return mgn((ByteBuffer) buf, width, height);
-        else if (buf instanceof ShortBuffer)
-            return mgn((ShortBuffer) buf, width, height);
+    static void mgn(Buffer buf, Buffer out, int width, int height) throws Exception {
+        if (buf instanceof ByteBuffer b && out instanceof ByteBuffer o)
+            mgn(b, o, width, height);
+        else if (buf instanceof ShortBuffer b && out instanceof ShortBuffer o)
+            mgn(b, o, width, height);
         else
             throw new Exception("Unimplemented MGN filter");
     }
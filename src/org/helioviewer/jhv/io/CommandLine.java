@@ -22,7 +22,11 @@ public class CommandLine {
                    Load a request file and issue a request at program start. The option can be used multiple times.
 
             -state   state file
-                   Load state file.""";
+                   Load state file.
+
+            --batch  job files
+                   Export the movies described by the job files without a display, then exit.
+                   Must be the first option.""";
 
     private static String[] arguments;
 
@@ -89,7 +89,7 @@ public class LoadLayer {
 
     }
 
-    private static View loadView(DecodeExecutor executor, APIRequest req, URI uri, boolean forceFITS) throws Exception {
+    public static View loadView(DecodeExecutor executor, APIRequest req, URI uri, boolean forceFITS) throws Exception {
         String loc = uri.toString().toLowerCase(Locale.ENGLISH);
         if (forceFITS || loc.endsWith(".fits") || loc.endsWith(".fts") || loc.endsWith(".fits.gz")) {
             return new URIView(executor, req, uri, URIView.URIType.FITS);
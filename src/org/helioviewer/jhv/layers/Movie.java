@@ -3,6 +3,7 @@ package org.helioviewer.jhv.layers;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -290,6 +291,37 @@ public class Movie {
         advanceMode = mode;
     }
 
+    // Predicts up to count frames of a view of maxFrame + 1 frames that playback shows after frame,
+    // following the advance mode and its current direction; it assumes one frame per step
+    public static int[] upcomingFrames(int frame, int maxFrame, int count) {
+        int[] frames = new int[count];
+        int n = 0;
+        if (maxFrame > 0) {
+            AdvanceMode mode = advanceMode;
+            while (n < count) {
+                int next = mode == AdvanceMode.SwingDown ? frame - 1 : frame + 1;
+                if (next > maxFrame) {
+                    if (mode == AdvanceMode.Stop)
+                        break;
+                    if (mode == AdvanceMode.Swing) {
+                        mode = AdvanceMode.SwingDown;
+                        next = maxFrame - 1;
+                    } else // Loop
+                        next = 0;
+                } else if (next < 0) { // SwingDown
+                    mode = AdvanceMode.Swing;
+                    next = 1;
+                }
+                frames[n++] = frame = next;
+            }
+        }
+        return n == count ? frames : Arrays.copyOf(frames, n);
+    }
+
+    public static int getFrameDelay() {
+        return movieTimer.getDelay();
+    }
+
     private static boolean recording;
     private static boolean notDone;
 
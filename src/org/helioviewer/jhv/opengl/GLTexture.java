@@ -6,6 +6,7 @@ import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
 import java.awt.image.DataBufferShort;
 import java.awt.image.DataBufferUShort;
+import java.lang.ref.Reference;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
@@ -83,7 +84,11 @@ public class GLTexture {
 
         gl.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, format.bytes);
         gl.glPixelStorei(GL2.GL_UNPACK_ROW_LENGTH, w);
-        gl.glTexSubImage2D(GL2.GL_TEXTURE_2D, 0, 0, 0, w, h, inputGLFormat, bppGLType, imageBuffer.buffer);
+        try {
+            gl.glTexSubImage2D(GL2.GL_TEXTURE_2D, 0, 0, 0, w, h, inputGLFormat, bppGLType, imageBuffer.buffer);
+        } finally { // the pooled storage is recycled once the ImageBuffer is unreachable
+            Reference.reachabilityFence(imageBuffer);
+        }
     }
 
     public static void copyBufferedImage(GL2 gl, BufferedImage source) {
@@ -12,7 +12,12 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 public class PfssCache {
 
     private final TreeMap<Long, URI> map = new TreeMap<>();
-    private final Cache<URI, PfssData> cache = Caffeine.newBuilder().softValues().build();
+    // bounded by the size of the field lines, not by GC pressure
+    private static final long BUDGET = 256 * 1024 * 1024;
+    private final Cache<URI, PfssData> cache = Caffeine.newBuilder()
+            .maximumWeight(BUDGET)
+            .weigher((URI uri, PfssData data) -> data.getBytes())
+            .build();
 
     void put(Map<Long, URI> uris) {
         map.putAll(uris);
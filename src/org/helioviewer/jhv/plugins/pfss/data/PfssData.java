@@ -12,6 +12,10 @@ public class PfssData {
     public final float[][] linez;
     public final float[][] lines;
 
+    int getBytes() {
+        return linex.length == 0 ? 0 : 4 * linex.length * linex[0].length * Float.BYTES;
+    }
+
     private static double decode(short v) {
         return (v + 32768.) * (2. / 65535.) - 1.;
     }
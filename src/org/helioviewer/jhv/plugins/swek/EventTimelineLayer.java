@@ -6,6 +6,7 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -31,6 +32,10 @@ public class EventTimelineLayer extends AbstractTimelineLayer implements JHVEven
     private final YAxis yAxis = new YAxis(0, 0, new YAxisIdentityScale("Events"));
     private static EventPlotConfiguration eventUnderMouse;
 
+    // reused by draw
+    private final ArrayList<JHVRelatedEvents> events = new ArrayList<>();
+    private long[] endDates = new long[16];
+
     public EventTimelineLayer(JSONObject jo) { // arg for state
         cacheUpdated();
     }
@@ -63,11 +68,10 @@ public class EventTimelineLayer extends AbstractTimelineLayer implements JHVEven
         if (!enabled)
             return;
 
-        List<JHVRelatedEvents> events = JHVEventCache.getEvents(xAxis.start(), xAxis.end());
+        JHVEventCache.getEvents(xAxis.start(), xAxis.end(), events);
         if (events.isEmpty())
             return;
 
-        ArrayList<Long> endDates = new ArrayList<>();
         int nrLines = 0;
         eventUnderMouse = null;
 
@@ -75,16 +79,16 @@ public class EventTimelineLayer extends AbstractTimelineLayer implements JHVEven
             long eventStart = event.getStart();
             long eventEnd = event.getEnd();
             int i = 0;
-            while (i < nrLines && endDates.get(i) >= eventStart) {
+            while (i < nrLines && endDates[i] >= eventStart) {
                 i++;
             }
             if (i == nrLines) {
-                endDates.add(eventEnd);
-            } else {
-                endDates.set(i, eventEnd);
+                if (nrLines == endDates.length)
+                    endDates = Arrays.copyOf(endDates, 2 * nrLines);
+                nrLines++;
             }
+            endDates[i] = eventEnd;
             int eventPosition = i;
-            nrLines = Math.max(nrLines, endDates.size());
 
             int x0 = xAxis.value2pixel(graphArea.x, graphArea.width, eventStart);
             int x1 = xAxis.value2pixel(graphArea.x, graphArea.width, eventEnd);
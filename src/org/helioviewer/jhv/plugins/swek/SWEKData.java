@@ -1,29 +1,17 @@
 package org.helioviewer.jhv.plugins.swek;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import org.helioviewer.jhv.events.JHVEvent;
 import org.helioviewer.jhv.events.JHVEventCache;
 import org.helioviewer.jhv.events.JHVEventParameter;
 import org.helioviewer.jhv.events.JHVRelatedEvents;
-import org.helioviewer.jhv.layers.Movie;
 
 class SWEKData {
 
-    static List<JHVRelatedEvents> getActiveEvents(long timestamp) {
-        List<JHVRelatedEvents> events = JHVEventCache.getEvents(Movie.getStartTime(), Movie.getEndTime());
-        if (events.isEmpty())
-            return Collections.emptyList();
-
-        List<JHVRelatedEvents> activeEvents = new ArrayList<>();
-        for (JHVRelatedEvents evr : events) {
-            if (evr.getStart() <= timestamp && timestamp <= evr.getEnd()) {
-                activeEvents.add(evr);
-            }
-        }
-        return activeEvents;
+    // Fills activeEvents, reused by the caller, with the events at timestamp
+    static void getActiveEvents(long timestamp, List<JHVRelatedEvents> activeEvents) {
+        JHVEventCache.getEvents(timestamp, timestamp, activeEvents);
     }
 
     static double readCMESpeed(JHVEvent evt) {
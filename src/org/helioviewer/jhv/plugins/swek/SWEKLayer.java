@@ -53,6 +53,7 @@ public class SWEKLayer extends AbstractLayer implements JHVEventListener.Handle,
 
     private final SWEKPopupController controller = new SWEKPopupController(JHVFrame.getGLCanvas());
     private final JPanel optionsPanel;
+    private final ArrayList<JHVRelatedEvents> activeEvents = new ArrayList<>();
 
     private static final int DIVPOINTS = 10;
     private static final double LINEWIDTH = GLSLLine.LINEWIDTH_BASIC;
@@ -370,7 +371,8 @@ public class SWEKLayer extends AbstractLayer implements JHVEventListener.Handle,
     public void render(Camera camera, Viewport vp, GL2 gl) {
         if (!isVisible[vp.idx])
             return;
-        List<JHVRelatedEvents> evs = SWEKData.getActiveEvents(controller.currentTime);
+        List<JHVRelatedEvents> evs = activeEvents;
+        SWEKData.getActiveEvents(controller.currentTime, evs);
         if (evs.isEmpty())
             return;
 
@@ -396,7 +398,8 @@ public class SWEKLayer extends AbstractLayer implements JHVEventListener.Handle,
     public void renderScale(Camera camera, Viewport vp, GL2 gl) {
         if (!isVisible[vp.idx])
             return;
-        List<JHVRelatedEvents> evs = SWEKData.getActiveEvents(controller.currentTime);
+        List<JHVRelatedEvents> evs = activeEvents;
+        SWEKData.getActiveEvents(controller.currentTime, evs);
         if (evs.isEmpty())
             return;
 
@@ -5,7 +5,7 @@ import java.awt.Cursor;
 import java.awt.Point;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.List;
+import java.util.ArrayList;
 
 import javax.annotation.Nullable;
 
@@ -35,6 +35,7 @@ class SWEKPopupController extends MouseAdapter implements TimeListener.Change {
     private final Camera camera;
 
     private Cursor lastCursor;
+    private final ArrayList<JHVRelatedEvents> activeEvents = new ArrayList<>();
 
     static JHVRelatedEvents mouseOverJHVEvent = null;
     static int mouseOverX;
@@ -113,7 +114,7 @@ class SWEKPopupController extends MouseAdapter implements TimeListener.Change {
 
     @Override
     public void mouseMoved(MouseEvent e) {
-        List<JHVRelatedEvents> activeEvents = SWEKData.getActiveEvents(currentTime);
+        SWEKData.getActiveEvents(currentTime, activeEvents);
         if (activeEvents.isEmpty())
             return;
 
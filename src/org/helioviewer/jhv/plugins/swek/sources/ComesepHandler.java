@@ -27,42 +27,39 @@ public class ComesepHandler extends SWEKHandler {
     private static final String BASE_URL = "http://swhv.oma.be/comesep/comeseprequestapi/getComesep.php?";
 
     @Override
-    protected boolean parseRemote(JSONObject eventJSON, SWEKSupplier supplier) {
-        try {
-            JSONArray results = eventJSON.getJSONArray("results");
-            int len = results.length();
-            List<EventDatabase.Event2Db> event2dbList = new ArrayList<>(len);
-            for (int i = 0; i < len; i++) {
-                JSONObject result = results.getJSONObject(i);
-
-                long start = result.getLong("atearliest") * 1000;
-                long end = result.getLong("atlatest") * 1000;
-                if (end < start) {
-                    Log.warn("Event end before start: " + result);
-                    continue;
-                }
+    protected List<EventDatabase.Event2Db> parseRemote(JSONObject eventJSON, SWEKSupplier supplier) throws Exception {
+        JSONArray results = eventJSON.getJSONArray("results");
+        int len = results.length();
+        List<EventDatabase.Event2Db> event2dbList = new ArrayList<>(len);
+        for (int i = 0; i < len; i++) {
+            JSONObject result = results.getJSONObject(i);
 
-                if (result.has("liftoffduration_value")) {
-                    long cactusLiftOff = result.getLong("liftoffduration_value");
-                    end += cactusLiftOff * 60000;
-                }
+            long start = result.getLong("atearliest") * 1000;
+            long end = result.getLong("atlatest") * 1000;
+            if (end < start) {
+                Log.warn("Event end before start: " + result);
+                continue;
+            }
 
-                long archiv = start;
-                String uid = result.getString("alertid");
-                try (ByteArrayOutputStream baos = JSONUtils.compressJSON(result)) {
-                    event2dbList.add(new EventDatabase.Event2Db(baos.toByteArray(), start, end, archiv, uid, new ArrayList<>()));
-                }
+            if (result.has("liftoffduration_value")) {
+                long cactusLiftOff = result.getLong("liftoffduration_value");
+                end += cactusLiftOff * 60000;
+            }
+
+            long archiv = start;
+            String uid = result.getString("alertid");
+            byte[] summary = summarize(result, supplier, start, end);
+            if (summary == null)
+                continue;
+            try (ByteArrayOutputStream baos = JSONUtils.compressJSON(result)) {
+                event2dbList.add(new EventDatabase.Event2Db(baos.toByteArray(), summary, start, end, archiv, uid, new ArrayList<>()));
             }
-            EventDatabase.dump_event2db(event2dbList, supplier);
-        } catch (Exception e) {
-            Log.error(e);
-            return false;
         }
-        return true;
+        return event2dbList;
     }
 
     @Override
-    protected boolean parseAssociations(JSONObject eventJSON) {
+    protected Pair<String, String>[] parseAssociations(JSONObject eventJSON) {
         JSONArray associations = eventJSON.getJSONArray("associations");
         int len = associations.length();
         Pair<?, ?>[] assocs = new Pair<?, ?>[len];
@@ -70,7 +67,7 @@ public class ComesepHandler extends SWEKHandler {
             JSONObject asobj = associations.getJSONObject(i);
             assocs[i] = new Pair<>(asobj.getString("parent"), asobj.getString("child"));
         }
-        return EventDatabase.dump_association2db((Pair<String, String>[]) assocs) != -1;
+        return (Pair<String, String>[]) assocs;
     }
 
     @Override
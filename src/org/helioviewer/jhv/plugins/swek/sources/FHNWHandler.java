@@ -9,6 +9,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.helioviewer.jhv.Log;
+import org.helioviewer.jhv.base.Pair;
 import org.helioviewer.jhv.events.JHVEvent;
 import org.helioviewer.jhv.events.SWEK;
 import org.helioviewer.jhv.events.SWEKGroup;
@@ -26,46 +27,42 @@ public class FHNWHandler extends SWEKHandler {
     private static final String QUERY_URL = "https://tap.cs.technik.fhnw.ch/__system__/tap/run/tap";
 
     @Override
-    protected boolean parseRemote(JSONObject eventJSON, SWEKSupplier supplier) {
-        try {
-            JSONArray params = eventJSON.getJSONArray("columns");
-            int plen = params.length();
-            JSONArray events = eventJSON.getJSONArray("data");
-            int len = events.length();
+    protected List<EventDatabase.Event2Db> parseRemote(JSONObject eventJSON, SWEKSupplier supplier) throws Exception {
+        JSONArray params = eventJSON.getJSONArray("columns");
+        int plen = params.length();
+        JSONArray events = eventJSON.getJSONArray("data");
+        int len = events.length();
 
-            List<EventDatabase.Event2Db> event2dbList = new ArrayList<>(len);
-            for (int j = 0; j < len; j++) {
-                JSONArray event = events.getJSONArray(j);
-                int elen = event.length();
-                if (elen == plen) {
-                    JSONObject result = new JSONObject();
-                    for (int i = 0; i < elen; i++) {
-                        if (!event.isNull(i))
-                            result.put(params.getJSONObject(i).getString("name"), event.get(i));
-                    }
-
-                    long start = TimeUtils.parse(result.getString("start_time"));
-                    long end = TimeUtils.parse(result.getString("end_time"));
-                    if (start > end) {
-                        Log.warn("Event end before start: " + result);
-                        continue;
-                    }
+        List<EventDatabase.Event2Db> event2dbList = new ArrayList<>(len);
+        for (int j = 0; j < len; j++) {
+            JSONArray event = events.getJSONArray(j);
+            int elen = event.length();
+            if (elen == plen) {
+                JSONObject result = new JSONObject();
+                for (int i = 0; i < elen; i++) {
+                    if (!event.isNull(i))
+                        result.put(params.getJSONObject(i).getString("name"), event.get(i));
+                }
 
-                    long archiv = start;
-                    String uid = result.getString("granule_uid");
-                    try (ByteArrayOutputStream baos = JSONUtils.compressJSON(result)) {
-                        event2dbList.add(new EventDatabase.Event2Db(baos.toByteArray(), start, end, archiv, uid, new ArrayList<>()));
-                    }
-                } else
-                    Log.warn("Inconsistent event parameter list length");
-            }
+                long start = TimeUtils.parse(result.getString("start_time"));
+                long end = TimeUtils.parse(result.getString("end_time"));
+                if (start > end) {
+                    Log.warn("Event end before start: " + result);
+                    continue;
+                }
 
-            EventDatabase.dump_event2db(event2dbList, supplier);
-        } catch (Exception e) {
-            Log.error(e);
-            return false;
+                long archiv = start;
+                String uid = result.getString("granule_uid");
+                byte[] summary = summarize(result, supplier, start, end);
+                if (summary == null)
+                    continue;
+                try (ByteArrayOutputStream baos = JSONUtils.compressJSON(result)) {
+                    event2dbList.add(new EventDatabase.Event2Db(baos.toByteArray(), summary, start, end, archiv, uid, new ArrayList<>()));
+                }
+            } else
+                Log.warn("Inconsistent event parameter list length");
         }
-        return true;
+        return event2dbList;
     }
 
     @Override
@@ -98,9 +95,10 @@ public class FHNWHandler extends SWEKHandler {
         return new URI(QUERY_URL + "/sync?REQUEST=doQuery&LANG=ADQL&FORMAT=json&QUERY=" + URLEncoder.encode(adql, StandardCharsets.UTF_8));
     }
 
+    @SuppressWarnings("unchecked")
     @Override
-    protected boolean parseAssociations(JSONObject eventJSON) {
-        return true;
+    protected Pair<String, String>[] parseAssociations(JSONObject eventJSON) {
+        return (Pair<String, String>[]) new Pair<?, ?>[0];
     }
 
 }
@@ -66,56 +66,53 @@ public class HEKHandler extends SWEKHandler {
     }
 
     @Override
-    protected boolean parseRemote(JSONObject eventJSON, SWEKSupplier supplier) {
-        try {
-            JSONArray results = eventJSON.getJSONArray("result");
-            int len = results.length();
-            List<EventDatabase.Event2Db> event2dbList = new ArrayList<>(len);
-            for (int i = 0; i < len; i++) {
-                JSONObject result = results.getJSONObject(i);
-                if (result.has("fl_goescls"))
-                    result.put("fl_val", GOESLevel.getFloatValue(result.getString("fl_goescls")));
-
-                long start = TimeUtils.parse(result.getString("event_starttime"));
-                long end = TimeUtils.parse(result.getString("event_endtime"));
-                if (end < start) {
-                    Log.warn("Event end before start: " + result);
-                    continue;
-                }
+    protected List<EventDatabase.Event2Db> parseRemote(JSONObject eventJSON, SWEKSupplier supplier) throws Exception {
+        JSONArray results = eventJSON.getJSONArray("result");
+        int len = results.length();
+        List<EventDatabase.Event2Db> event2dbList = new ArrayList<>(len);
+        for (int i = 0; i < len; i++) {
+            JSONObject result = results.getJSONObject(i);
+            if (result.has("fl_goescls"))
+                result.put("fl_val", GOESLevel.getFloatValue(result.getString("fl_goescls")));
+
+            long start = TimeUtils.parse(result.getString("event_starttime"));
+            long end = TimeUtils.parse(result.getString("event_endtime"));
+            if (end < start) {
+                Log.warn("Event end before start: " + result);
+                continue;
+            }
 
-                long archiv = TimeUtils.parse(result.getString("kb_archivdate"));
-                String uid = result.getString("kb_archivid");
-
-                ArrayList<JHVDatabaseParam> paramList = new ArrayList<>();
-                for (Map.Entry<String, String> fieldEntry : supplier.getGroup().getAllDatabaseFields().entrySet()) {
-                    String dbType = fieldEntry.getValue();
-                    String fieldName = fieldEntry.getKey();
-                    String lfieldName = fieldName.toLowerCase(Locale.ENGLISH);
-                    if (!result.isNull(lfieldName)) {
-                        switch (dbType) {
-                            case JHVDatabaseParam.DBINTTYPE ->
-                                    paramList.add(new JHVDatabaseParam(result.getInt(lfieldName), fieldName));
-                            case JHVDatabaseParam.DBSTRINGTYPE ->
-                                    paramList.add(new JHVDatabaseParam(result.getString(lfieldName), fieldName));
-                            case JHVDatabaseParam.DBDOUBLETYPE ->
-                                    paramList.add(new JHVDatabaseParam(result.getDouble(lfieldName), fieldName));
-                        }
+            long archiv = TimeUtils.parse(result.getString("kb_archivdate"));
+            String uid = result.getString("kb_archivid");
+
+            ArrayList<JHVDatabaseParam> paramList = new ArrayList<>();
+            for (Map.Entry<String, String> fieldEntry : supplier.getGroup().getAllDatabaseFields().entrySet()) {
+                String dbType = fieldEntry.getValue();
+                String fieldName = fieldEntry.getKey();
+                String lfieldName = fieldName.toLowerCase(Locale.ENGLISH);
+                if (!result.isNull(lfieldName)) {
+                    switch (dbType) {
+                        case JHVDatabaseParam.DBINTTYPE ->
+                                paramList.add(new JHVDatabaseParam(result.getInt(lfieldName), fieldName));
+                        case JHVDatabaseParam.DBSTRINGTYPE ->
+                                paramList.add(new JHVDatabaseParam(result.getString(lfieldName), fieldName));
+                        case JHVDatabaseParam.DBDOUBLETYPE ->
+                                paramList.add(new JHVDatabaseParam(result.getDouble(lfieldName), fieldName));
                     }
                 }
-                try (ByteArrayOutputStream baos = JSONUtils.compressJSON(result)) {
-                    event2dbList.add(new EventDatabase.Event2Db(baos.toByteArray(), start, end, archiv, uid, paramList));
-                }
             }
-            EventDatabase.dump_event2db(event2dbList, supplier);
-        } catch (Exception e) {
-            Log.error(e);
-            return false;
+            byte[] summary = summarize(result, supplier, start, end);
+            if (summary == null)
+                continue;
+            try (ByteArrayOutputStream baos = JSONUtils.compressJSON(result)) {
+                event2dbList.add(new EventDatabase.Event2Db(baos.toByteArray(), summary, start, end, archiv, uid, paramList));
+            }
         }
-        return true;
+        return event2dbList;
     }
 
     @Override
-    protected boolean parseAssociations(JSONObject eventJSON) {
+    protected Pair<String, String>[] parseAssociations(JSONObject eventJSON) {
         JSONArray associations = eventJSON.getJSONArray("association");
         int len = associations.length();
         Pair<?, ?>[] assocs = new Pair<?, ?>[len];
@@ -123,7 +120,7 @@ public class HEKHandler extends SWEKHandler {
             JSONObject asobj = associations.getJSONObject(i);
             assocs[i] = new Pair<>(asobj.getString("first_ivorn"), asobj.getString("second_ivorn"));
         }
-        return EventDatabase.dump_association2db((Pair<String, String>[]) assocs) != -1;
+        return (Pair<String, String>[]) assocs;
     }
 
     @Override
@@ -4,6 +4,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SingleExecutor {
 
@@ -17,6 +18,10 @@ public class SingleExecutor {
         return executor.submit(callable).get();
     }
 
+    public <T> Future<T> submit(Callable<T> callable) {
+        return executor.submit(callable);
+    }
+
     public void invokeLater(Runnable runnable) {
         executor.submit(runnable);
     }
@@ -24,6 +24,11 @@ public abstract class AbstractTimelineLayer implements TimelineLayer {
     public void yaxisChanged() {
     }
 
+    @Override
+    public long getDrawStamp() {
+        return -1;
+    }
+
     @Override
     public boolean highLightChanged(Point p) {
         return false;
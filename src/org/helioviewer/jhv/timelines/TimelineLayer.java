@@ -39,6 +39,9 @@ public interface TimelineLayer {
 
     void draw(Graphics2D g, Rectangle graphArea, TimeAxis timeAxis, Point mousePosition);
 
+    // Changes whenever the drawing changes, negative if the drawing cannot be cached
+    long getDrawStamp();
+
     YAxis getYAxis();
 
     void fetchData(TimeAxis selectedAxis);
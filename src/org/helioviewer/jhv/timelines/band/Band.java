@@ -34,7 +34,7 @@ public class Band extends AbstractTimelineLayer {
     }
 
     private static final int SUPER_SAMPLE = 1; // 8 for dots
-    private static final int DOWNLOADER_MAX_DAYS_PER_BLOCK = 21;
+    static final int DOWNLOADER_MAX_DAYS_PER_BLOCK = 21;
 
     private final BandType bandType;
     private final BandCache bandCache;
@@ -45,6 +45,17 @@ public class Band extends AbstractTimelineLayer {
     private final int[] warnLevels;
     private final List<GraphPolyline> graphPolylines = new ArrayList<>();
 
+    // polylines are built over three times the visible span, panning within that only shifts them
+    private record GraphKey(Rectangle graphArea, long span, double yStart, double yEnd, double pixelScale) {
+    }
+
+    private GraphKey graphKey;
+    private long graphStart; // observation time
+    private long graphEnd;
+    private long graphAxisStart;
+    private int graphShift;
+    private long drawStamp;
+
     private Color graphColor = BandColors.getNextColor();
     private PropagationModel propagationModel = new PropagationModelDelay(0);
 
@@ -69,9 +80,7 @@ public class Band extends AbstractTimelineLayer {
 
     JSONObject toJson() {
         TimeAxis timeAxis = DrawController.selectedAxis;
-        long start = propagationModel.getObservationTime(timeAxis.start());
-        long end = propagationModel.getObservationTime(timeAxis.end());
-        float[] bounds = bandCache.getBounds(start, end);
+        float[] bounds = getBounds(timeAxis.start(), timeAxis.end());
 
         double multiplier = 1;
         if (bounds[0] != 0 && Float.isFinite(bounds[0]) && Float.isFinite(bounds[1])) {
@@ -95,16 +104,13 @@ public class Band extends AbstractTimelineLayer {
     @Override
     public void resetAxis() {
         yAxis.reset(bandType.getMin(), bandType.getMax());
-        updateGraph();
+        invalidateGraph();
     }
 
     @Override
     public void zoomToFitAxis() {
         TimeAxis timeAxis = DrawController.selectedAxis;
-        long start = propagationModel.getObservationTime(timeAxis.start());
-        long end = propagationModel.getObservationTime(timeAxis.end());
-
-        float[] bounds = bandCache.getBounds(start, end);
+        float[] bounds = getBounds(timeAxis.start(), timeAxis.end());
         if (bounds[0] == bounds[1]) {
             resetAxis();
             return;
@@ -112,10 +118,20 @@ public class Band extends AbstractTimelineLayer {
 
         if (Float.isFinite(bounds[0]) && Float.isFinite(bounds[1])) {
             yAxis.reset(bounds[0], bounds[1]);
-            updateGraph();
+            invalidateGraph();
         }
     }
 
+    // {min, max} of the values between the times of the time axis start and end, inclusive
+    private float[] getBounds(long start, long end) {
+        return bandCache.getBounds(propagationModel.getObservationTime(start), propagationModel.getObservationTime(end));
+    }
+
+    // Statistics of the values between the times of the time axis start and end, inclusive
+    public BandStats getStats(long start, long end) {
+        return bandCache.getStats(propagationModel.getObservationTime(start), propagationModel.getObservationTime(end));
+    }
+
     public BandType getBandType() {
         return bandType;
     }
@@ -138,6 +154,7 @@ public class Band extends AbstractTimelineLayer {
 
     public void setDataColor(Color c) {
         graphColor = c;
+        drawStamp++;
         DrawController.drawRequest();
     }
 
@@ -166,13 +183,27 @@ public class Band extends AbstractTimelineLayer {
         return enabled;
     }
 
+    @Override
+    public void setEnabled(boolean _enabled) {
+        super.setEnabled(_enabled);
+        drawStamp++; // updateGraph does nothing while disabled
+        invalidateGraph();
+    }
+
+    @Override
+    public long getDrawStamp() {
+        return drawStamp;
+    }
+
     @Override
     public void draw(Graphics2D g, Rectangle graphArea, TimeAxis timeAxis, Point mousePosition) {
         if (!enabled)
             return;
 
         g.setColor(graphColor);
+        g.translate(graphShift, 0);
         graphPolylines.forEach(line -> g.drawPolyline(line.xPoints(), line.yPoints(), line.length())); // polylines
+        g.translate(-graphShift, 0);
 
 //      for (GraphPolyline line : graphPolylines) { // dots
 //          int length = line.length();
@@ -189,34 +220,87 @@ public class Band extends AbstractTimelineLayer {
         }
     }
 
+    private void invalidateGraph() {
+        graphKey = null;
+        updateGraph();
+    }
+
     private void updateGraph() {
         if (enabled) {
             Rectangle graphArea = DrawController.getGraphArea();
-
-            double[] unconvertedWarnLevels = bandType.getWarnLevels();
-            for (int i = 0; i < warnLevels.length; i++) {
-                warnLevels[i] = yAxis.value2pixel(graphArea.y, graphArea.height, unconvertedWarnLevels[i]);
-            }
-
-            graphPolylines.clear();
-
             TimeAxis timeAxis = DrawController.selectedAxis;
+            long span = timeAxis.end() - timeAxis.start();
             long start = propagationModel.getObservationTime(timeAxis.start());
             long end = propagationModel.getObservationTime(timeAxis.end());
-            for (List<DateValue> list : bandCache.getValues(SUPER_SAMPLE * GLInfo.pixelScale[0] * graphArea.width, start, end)) {
-                if (!list.isEmpty()) {
-                    IntArray dates = new IntArray(list.size());
-                    IntArray values = new IntArray(list.size());
-                    for (DateValue dv : list) {
-                        dates.put(timeAxis.value2pixel(graphArea.x, graphArea.width, propagationModel.getViewpointTime(dv.milli)));
-                        values.put(yAxis.value2pixel(graphArea.y, graphArea.height, dv.value));
-                    }
-                    graphPolylines.add(new GraphPolyline(dates, values));
+
+            GraphKey key = new GraphKey(new Rectangle(graphArea), span, yAxis.start(), yAxis.end(), GLInfo.pixelScale[0]);
+            if (key.equals(graphKey) && graphStart <= start && end <= graphEnd) {
+                int shift = (int) Math.round((double) graphArea.width / span * (graphAxisStart - timeAxis.start()));
+                if (shift != graphShift) {
+                    graphShift = shift;
+                    drawStamp++;
                 }
+                return;
             }
+            graphKey = key;
+            buildGraph(graphArea, timeAxis);
         }
     }
 
+    // Builds the polylines over three times the span of the time axis, also used by the benchmarks
+    void buildGraph(Rectangle graphArea, TimeAxis timeAxis) {
+        long span = timeAxis.end() - timeAxis.start();
+        graphStart = propagationModel.getObservationTime(timeAxis.start()) - span;
+        graphEnd = propagationModel.getObservationTime(timeAxis.end()) + span;
+        graphAxisStart = timeAxis.start();
+        graphShift = 0;
+        drawStamp++;
+
+        double[] unconvertedWarnLevels = bandType.getWarnLevels();
+        for (int i = 0; i < warnLevels.length; i++) {
+            warnLevels[i] = yAxis.value2pixel(graphArea.y, graphArea.height, unconvertedWarnLevels[i]);
+        }
+
+        graphPolylines.clear();
+
+        PolylineSink sink = new PolylineSink(graphArea, timeAxis);
+        bandCache.getValues(3 * SUPER_SAMPLE * GLInfo.pixelScale[0] * graphArea.width, graphStart, graphEnd, sink);
+        sink.flush();
+    }
+
+    // Converts the runs of values into polylines in pixel coordinates
+    private class PolylineSink implements BandCache.ValueSink {
+
+        private final Rectangle graphArea;
+        private final TimeAxis timeAxis;
+        private IntArray dates = new IntArray();
+        private IntArray values = new IntArray();
+
+        PolylineSink(Rectangle _graphArea, TimeAxis _timeAxis) {
+            graphArea = _graphArea;
+            timeAxis = _timeAxis;
+        }
+
+        @Override
+        public void put(long milli, float value) {
+            if (value == YAxis.BLANK) {
+                flush();
+            } else {
+                dates.put(timeAxis.value2pixel(graphArea.x, graphArea.width, propagationModel.getViewpointTime(milli)));
+                values.put(yAxis.value2pixel(graphArea.y, graphArea.height, value));
+            }
+        }
+
+        void flush() {
+            if (dates.length() > 0) {
+                graphPolylines.add(new GraphPolyline(dates, values));
+                dates = new IntArray();
+                values = new IntArray();
+            }
+        }
+
+    }
+
     @Override
     public String getStringValue(long ts) {
         float val = bandCache.getValue(propagationModel.getObservationTime(ts));
@@ -235,18 +319,22 @@ public class Band extends AbstractTimelineLayer {
     }
 
     private void updateData(long start, long end) {
+        BandDataProvider.setVisible(this, start, end);
         List<Interval> missingIntervals = requestCache.getMissingIntervals(start, end);
         if (!missingIntervals.isEmpty()) {
-            // extend
-            start -= 7 * TimeUtils.DAY_IN_MILLIS;
-            end += 7 * TimeUtils.DAY_IN_MILLIS;
-
             List<Interval> intervals = new ArrayList<>();
-            requestCache.adaptRequestCache(start, end).forEach(interval -> intervals.addAll(Interval.splitInterval(interval, DOWNLOADER_MAX_DAYS_PER_BLOCK)));
-            BandDataProvider.addDownloads(this, intervals);
+            // extend
+            requestCache.adaptRequestCache(start - 7 * TimeUtils.DAY_IN_MILLIS, end + 7 * TimeUtils.DAY_IN_MILLIS)
+                    .forEach(interval -> intervals.addAll(Interval.splitInterval(interval, DOWNLOADER_MAX_DAYS_PER_BLOCK)));
+            BandDataProvider.addDownloads(this, intervals, start, end);
         }
     }
 
+    // A scheduled download was dropped before it started
+    void cancelRequest(long start, long end) {
+        requestCache.removeRequestedInterval(start, end);
+    }
+
     @Override
     public void fetchData(TimeAxis timeAxis) {
         long start = propagationModel.getObservationTime(timeAxis.start());
@@ -257,12 +345,12 @@ public class Band extends AbstractTimelineLayer {
 
     @Override
     public void yaxisChanged() {
-        updateGraph();
+        invalidateGraph();
     }
 
     void addToCache(float[] values, long[] dates) {
         bandCache.addToCache(yAxis, values, dates);
-        updateGraph();
+        invalidateGraph();
         DrawController.drawRequest();
     }
 
@@ -295,6 +383,7 @@ public class Band extends AbstractTimelineLayer {
 
     void setPropagationModel(PropagationModel _propagationModel) {
         propagationModel = _propagationModel;
+        graphKey = null;
         DrawController.graphAreaChanged();
     }
 
@@ -1,19 +1,25 @@
 package org.helioviewer.jhv.timelines.band;
 
-import java.util.List;
-
 import org.helioviewer.jhv.timelines.draw.YAxis;
 import org.json.JSONObject;
 
 interface BandCache {
 
+    // Receives values in time order, a YAxis.BLANK value separates runs of connected values
+    interface ValueSink {
+        void put(long milli, float value);
+    }
+
     boolean hasData();
 
     void addToCache(YAxis yAxis, float[] values, long[] dates);
 
+    // {min, max} of the values, {+Infinity, -Infinity} without values
     float[] getBounds(long start, long end);
 
-    List<List<DateValue>> getValues(double graphWidth, long start, long end);
+    BandStats getStats(long start, long end);
+
+    void getValues(double graphWidth, long start, long end, ValueSink sink);
 
     float getValue(long ts);
 
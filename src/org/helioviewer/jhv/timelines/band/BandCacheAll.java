@@ -1,21 +1,40 @@
 package org.helioviewer.jhv.timelines.band;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Comparator;
 
 import org.helioviewer.jhv.timelines.draw.YAxis;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+// Irregular samples, kept sorted by time in segments of parallel primitive arrays. New batches are
+// merged into the segments they overlap, a later sample replaces an earlier one with the same time.
+// Range queries locate their window by binary search, each segment has a summary for statistics.
 class BandCacheAll implements BandCache {
 
-    private static final int MAX_SIZE = 86400;
+    private static final int SEGMENT_SIZE = 1 << 16;
 
-    private final List<DateValue> dateVals = new ArrayList<>();
+    private final ArrayList<Segment> segments = new ArrayList<>();
     private boolean hasData;
-    private DateValue first;
-    private DateValue last;
+
+    private record Segment(long[] dates, float[] values, int length, BandSummary summary) {
+
+        long first() {
+            return dates[0];
+        }
+
+        long last() {
+            return dates[length - 1];
+        }
+
+        // index of the first sample at or after date
+        int lowerBound(long date) {
+            int idx = Arrays.binarySearch(dates, 0, length, date);
+            return idx >= 0 ? idx : -idx - 1;
+        }
+
+    }
 
     @Override
     public boolean hasData() {
@@ -25,74 +44,257 @@ class BandCacheAll implements BandCache {
     @Override
     public void addToCache(YAxis yAxis, float[] values, long[] dates) {
         int len = values.length;
-        if (len > 0) {
-            hasData = true;
-        }
-        if (dateVals.size() >= MAX_SIZE) {
+        if (len == 0)
             return;
-        }
+        hasData = true;
 
+        long[] bDates = new long[len];
+        float[] bValues = new float[len];
+        boolean sorted = true;
         for (int i = 0; i < len; i++) {
-            if (dateVals.size() >= MAX_SIZE)
+            bDates[i] = dates[i];
+            bValues[i] = yAxis.clip(values[i]);
+            if (i > 0 && dates[i] < dates[i - 1])
+                sorted = false;
+        }
+        if (!sorted) { // stable, equal dates keep their order
+            Integer[] order = new Integer[len];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.comparingLong(i -> dates[i]));
+            for (int i = 0; i < len; i++) {
+                bDates[i] = dates[order[i]];
+                bValues[i] = yAxis.clip(values[order[i]]);
+            }
+        }
+        merge(bDates, bValues, len);
+    }
+
+    // Merges a sorted batch with the segments it overlaps, or with a neighbour which has room
+    private void merge(long[] bDates, float[] bValues, int bLen) {
+        long bFirst = bDates[0], bLast = bDates[bLen - 1];
+        int size = segments.size();
+        int lo = 0;
+        while (lo < size && segments.get(lo).last() < bFirst)
+            lo++;
+        int hi = lo - 1;
+        while (hi + 1 < size && segments.get(hi + 1).first() <= bLast)
+            hi++;
+        if (hi < lo) {
+            if (lo > 0 && segments.get(lo - 1).length() + bLen <= SEGMENT_SIZE)
+                lo--;
+            else if (lo < size && segments.get(lo).length() + bLen <= SEGMENT_SIZE)
+                hi = lo;
+        }
+
+        int total = bLen;
+        for (int s = lo; s <= hi; s++)
+            total += segments.get(s).length();
+        long[] mDates = new long[total];
+        float[] mValues = new float[total];
+
+        int n = 0, j = 0;
+        for (int s = lo; s <= hi; s++) {
+            Segment seg = segments.get(s);
+            for (int i = 0; i < seg.length(); i++) {
+                long date = seg.dates()[i];
+                while (j < bLen && bDates[j] <= date)
+                    n = append(mDates, mValues, n, bDates[j], bValues[j++]);
+                if (n == 0 || mDates[n - 1] != date) // batch wins on equal dates
+                    n = append(mDates, mValues, n, date, seg.values()[i]);
+            }
+        }
+        while (j < bLen)
+            n = append(mDates, mValues, n, bDates[j], bValues[j++]);
+
+        ArrayList<Segment> merged = new ArrayList<>();
+        for (int from = 0; from < n; from += SEGMENT_SIZE) {
+            int to = Math.min(from + SEGMENT_SIZE, n);
+            float[] sValues = Arrays.copyOfRange(mValues, from, to);
+            merged.add(new Segment(Arrays.copyOfRange(mDates, from, to), sValues, to - from, new BandSummary(sValues, to - from)));
+        }
+        segments.subList(lo, hi + 1).clear();
+        segments.addAll(lo, merged);
+    }
+
+    // a later sample with the same date replaces the previous
+    private static int append(long[] dates, float[] values, int n, long date, float value) {
+        if (n > 0 && dates[n - 1] == date) {
+            values[n - 1] = value;
+            return n;
+        }
+        dates[n] = date;
+        values[n] = value;
+        return n + 1;
+    }
+
+    // Visits the samples with start <= date <= end
+    private void forRange(long start, long end, ValueSink sink) {
+        for (Segment seg : segments) {
+            if (seg.last() < start)
+                continue;
+            if (seg.first() > end)
                 break;
-            dateVals.add(new DateValue(dates[i], yAxis.clip(values[i])));
+            int from = seg.first() >= start ? 0 : seg.lowerBound(start);
+            int to = seg.last() <= end ? seg.length() : seg.lowerBound(end + 1);
+            long[] dates = seg.dates();
+            float[] values = seg.values();
+            for (int i = from; i < to; i++)
+                sink.put(dates[i], values[i]);
         }
-        Collections.sort(dateVals);
+    }
 
-        first = dateVals.get(0);
-        last = dateVals.get(dateVals.size() - 1);
+    private int count(long start, long end) {
+        int n = 0;
+        for (Segment seg : segments) {
+            if (seg.last() < start)
+                continue;
+            if (seg.first() > end)
+                break;
+            n += (seg.last() <= end ? seg.length() : seg.lowerBound(end + 1)) - (seg.first() >= start ? 0 : seg.lowerBound(start));
+        }
+        return n;
+    }
+
+    // date of the last sample before date, or date
+    private long before(long date) {
+        for (int s = segments.size() - 1; s >= 0; s--) {
+            Segment seg = segments.get(s);
+            if (seg.first() < date)
+                return seg.dates()[seg.lowerBound(date) - 1];
+        }
+        return date;
+    }
+
+    // date of the first sample after date, or date
+    private long after(long date) {
+        for (Segment seg : segments) {
+            if (seg.last() > date)
+                return seg.dates()[seg.lowerBound(date + 1)];
+        }
+        return date;
     }
 
     @Override
     public float[] getBounds(long start, long end) {
-        float min = Float.POSITIVE_INFINITY;
-        float max = Float.NEGATIVE_INFINITY;
+        float[] bounds = {Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (Segment seg : segments) {
+            if (seg.last() < start)
+                continue;
+            if (seg.first() > end)
+                break;
+            int from = seg.first() >= start ? 0 : seg.lowerBound(start);
+            int to = seg.last() <= end ? seg.length() : seg.lowerBound(end + 1);
+            seg.summary().bounds(from, to, bounds);
+        }
+        return bounds;
+    }
 
-        for (DateValue dv : dateVals) {
-            if (dv.value != YAxis.BLANK && start <= dv.milli && dv.milli <= end) {
-                min = Math.min(dv.value, min);
-                max = Math.max(dv.value, max);
-            }
+    @Override
+    public BandStats getStats(long start, long end) {
+        BandStats.Accumulator acc = new BandStats.Accumulator();
+        for (Segment seg : segments) {
+            if (seg.last() < start)
+                continue;
+            if (seg.first() > end)
+                break;
+            int from = seg.first() >= start ? 0 : seg.lowerBound(start);
+            int to = seg.last() <= end ? seg.length() : seg.lowerBound(end + 1);
+            seg.summary().accumulate(from, to, acc);
         }
-        return new float[]{min, max};
+        return acc.build();
     }
 
     @Override
-    public List<List<DateValue>> getValues(double graphWidth, long start, long end) {
-        List<List<DateValue>> ret = new ArrayList<>();
-        List<DateValue> list = new ArrayList<>();
-        for (DateValue dv : dateVals) {
-            if (dv.value == YAxis.BLANK) {
-                ret.add(list);
-                list = new ArrayList<>();
-            } else if (start <= dv.milli && dv.milli <= end) {
-                list.add(dv);
+    public void getValues(double graphWidth, long start, long end, ValueSink sink) {
+        // one more sample at each side, so that the line reaches the edges
+        long from = before(start);
+        long to = after(end);
+        if (count(from, to) > 2 * graphWidth) {
+            MinMaxSink decimator = new MinMaxSink(sink, from, (to - from) / graphWidth);
+            forRange(from, to, decimator);
+            decimator.flush();
+        } else
+            forRange(from, to, sink);
+    }
+
+    // Reduces the samples in each bucket of time to their minimum and maximum
+    private static class MinMaxSink implements ValueSink {
+
+        private final ValueSink sink;
+        private final long start;
+        private final double width;
+
+        private long bucket = Long.MIN_VALUE;
+        private long minDate;
+        private long maxDate;
+        private float min = Float.POSITIVE_INFINITY;
+        private float max = Float.NEGATIVE_INFINITY;
+
+        MinMaxSink(ValueSink _sink, long _start, double _width) {
+            sink = _sink;
+            start = _start;
+            width = _width;
+        }
+
+        @Override
+        public void put(long milli, float value) {
+            long b = (long) ((milli - start) / width);
+            if (b != bucket) {
+                flush();
+                bucket = b;
+            }
+            if (value == YAxis.BLANK) {
+                flush();
+                sink.put(milli, value);
+                return;
+            }
+            if (value < min) {
+                min = value;
+                minDate = milli;
+            }
+            if (value > max) {
+                max = value;
+                maxDate = milli;
             }
         }
-        ret.add(list);
-        return ret;
+
+        void flush() {
+            if (min > max) // empty
+                return;
+            if (minDate == maxDate)
+                sink.put(minDate, min);
+            else if (minDate < maxDate) {
+                sink.put(minDate, min);
+                sink.put(maxDate, max);
+            } else {
+                sink.put(maxDate, max);
+                sink.put(minDate, min);
+            }
+            min = Float.POSITIVE_INFINITY;
+            max = Float.NEGATIVE_INFINITY;
+        }
+
     }
 
     @Override
     public float getValue(long ts) {
-        if (ts < first.milli || ts > last.milli)
+        if (segments.isEmpty())
             return YAxis.BLANK;
-        int low = 0, high = dateVals.size();
-        while (low != high) {
-            int mid = (low + high) / 2;
-            if (dateVals.get(mid).milli <= ts) {
-                low = mid + 1;
-            } else {
-                high = mid;
-            }
+        Segment first = segments.get(0);
+        Segment last = segments.get(segments.size() - 1);
+        if (ts < first.first() || ts > last.last())
+            return YAxis.BLANK;
+        for (Segment seg : segments) {
+            if (seg.last() >= ts)
+                return seg.values()[seg.lowerBound(ts)];
         }
-        return dateVals.get(high).value;
+        return YAxis.BLANK;
     }
 
     @Override
     public void serialize(JSONObject jo, double f) {
         JSONArray ja = new JSONArray();
-        dateVals.forEach(dv -> dv.serialize(ja, f));
+        forRange(Long.MIN_VALUE, Long.MAX_VALUE - 1, (milli, value) -> ja.put(new JSONArray().put(milli / 1000L).put(value * f)));
         jo.put("data", ja);
     }
 
@@ -1,23 +1,24 @@
 package org.helioviewer.jhv.timelines.band;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 
 import org.helioviewer.jhv.time.TimeUtils;
 import org.helioviewer.jhv.timelines.draw.YAxis;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+// Values on a grid of one minute, in chunks of 8 days. Timestamps are implied by the index.
+// The coarser levels keep the minimum and maximum of their buckets, so that spikes remain visible
+// when zoomed out; they are built on demand and dropped when new data arrives for the chunk. The summary
+// for statistics is built on demand and told about each changed value.
 class BandCacheMinute implements BandCache {
 
     private static final long DAYS_PER_CHUNK = 8;
     private static final long MILLIS_PER_TICK = 60000;
-    private static final long CHUNKED_SIZE = TimeUtils.DAY_IN_MILLIS / MILLIS_PER_TICK * DAYS_PER_CHUNK;
+    private static final int CHUNKED_SIZE = (int) (TimeUtils.DAY_IN_MILLIS / MILLIS_PER_TICK * DAYS_PER_CHUNK);
     private static final long MILLIS_PER_CHUNK = TimeUtils.DAY_IN_MILLIS * DAYS_PER_CHUNK;
     private static final int MAX_LEVEL = 12;
-    private static final int FACTOR_STEP = 2;
 
     private boolean hasData;
 
@@ -40,18 +41,18 @@ class BandCacheMinute implements BandCache {
         }
 
         boolean max = yAxis.preferMax();
+        DataChunk cache = null;
         for (int i = 0; i < len; i++) {
             long key = date2key(dates[i]);
-            DataChunk cache = cacheMap.computeIfAbsent(key, DataChunk::new);
+            if (cache == null || cache.key != key)
+                cache = cacheMap.computeIfAbsent(key, DataChunk::new);
             cache.setValue(max, (int) ((dates[i] % MILLIS_PER_CHUNK) / MILLIS_PER_TICK), yAxis.clip(values[i]));
         }
     }
 
     @Override
     public float[] getBounds(long start, long end) {
-        float min = Float.POSITIVE_INFINITY;
-        float max = Float.NEGATIVE_INFINITY;
-
+        float[] bounds = {Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
         long key = date2key(start);
         long keyEnd = date2key(end);
         while (key <= keyEnd) {
@@ -60,37 +61,35 @@ class BandCacheMinute implements BandCache {
             if (cache == null) {
                 continue;
             }
-            float[] values = cache.getValues(0);
-            long[] dates = cache.getDates(0);
-
-            for (int i = 0; i < values.length; i++) {
-                float value = values[i];
-                if (value != YAxis.BLANK && start <= dates[i] && dates[i] <= end /* ? */) {
-                    min = Math.min(value, min);
-                    max = Math.max(value, max);
-                }
+            cache.getSummary().bounds(cache.index(start, 0, 1, 0), cache.index(end, 0, 0, 0) + 1, bounds);
+        }
+        return bounds;
+    }
+
+    @Override
+    public BandStats getStats(long start, long end) {
+        BandStats.Accumulator acc = new BandStats.Accumulator();
+        long key = date2key(start);
+        long keyEnd = date2key(end);
+        while (key <= keyEnd) {
+            DataChunk cache = cacheMap.get(key);
+            key++;
+            if (cache == null) {
+                continue;
             }
+            cache.getSummary().accumulate(cache.index(start, 0, 1, 0), cache.index(end, 0, 0, 0) + 1, acc);
         }
-        return new float[]{min, max};
+        return acc.build();
     }
 
     @Override
-    public List<List<DateValue>> getValues(double graphWidth, long start, long end) {
+    public void getValues(double graphWidth, long start, long end, ValueSink sink) {
         int level = 0;
-        double factor = 1;
-        double elsz = 1. * MILLIS_PER_CHUNK / CHUNKED_SIZE * factor;
         long aWidth = end - start;
-        double noelements = aWidth / elsz;
-
-        while (level < MAX_LEVEL - 1 && noelements > graphWidth) {
+        while (level < MAX_LEVEL - 1 && aWidth / (double) (MILLIS_PER_TICK << level) > graphWidth) {
             level++;
-            factor *= FACTOR_STEP;
-            elsz = 1. * MILLIS_PER_CHUNK / CHUNKED_SIZE * factor;
-            noelements = aWidth / elsz;
         }
-
-        List<List<DateValue>> ret = new ArrayList<>();
-        List<DateValue> list = new ArrayList<>();
+        long step = MILLIS_PER_TICK << level;
 
         long key = date2key(start);
         long keyEnd = date2key(end);
@@ -100,35 +99,34 @@ class BandCacheMinute implements BandCache {
             if (cache == null) {
                 continue;
             }
-            float[] values = cache.getValues(level);
-            long[] dates = cache.getDates(level);
-            int i = 0;
-            while (i < values.length) {
-                float value = values[i];
-                if (value == YAxis.BLANK) {
-                    ret.add(list);
-                    list = new ArrayList<>();
-                } else {
-                    list.add(new DateValue(dates[i], value));
+            // one more bucket at each side, so that the line reaches the edges
+            int from = cache.index(start, level, 0, -1);
+            int to = cache.index(end, level, 0, 1);
+            long date = cache.startDate + from * step;
+            if (level == 0) {
+                float[] values = cache.values;
+                for (int i = from; i <= to; i++, date += step)
+                    sink.put(date, values[i]);
+            } else {
+                float[] mins = cache.getMin(level);
+                float[] maxs = cache.getMax(level);
+                for (int i = from; i <= to; i++, date += step) {
+                    float min = mins[i];
+                    sink.put(date, min);
+                    if (maxs[i] != min)
+                        sink.put(date, maxs[i]);
                 }
-                i++;
             }
         }
-        ret.add(list);
-        return ret;
     }
 
     @Override
     public float getValue(long ts) {
-        long key = date2key(ts);
-        DataChunk cache = cacheMap.get(key);
+        DataChunk cache = cacheMap.get(date2key(ts));
         if (cache != null) {
-            long[] dates = cache.getDates(0);
-            int len = dates.length;
-            int idx = (int) ((len - 1) * 1. * (ts - dates[0]) / (dates[len - 1] - dates[0]) + 0.5);
-
-            if (idx >= 0 && idx < len) {
-                return cache.getValues(0)[idx];
+            long idx = (ts - cache.startDate + MILLIS_PER_TICK / 2) / MILLIS_PER_TICK;
+            if (idx >= 0 && idx < CHUNKED_SIZE) {
+                return cache.values[(int) idx];
             }
         }
         return YAxis.BLANK;
@@ -143,56 +141,103 @@ class BandCacheMinute implements BandCache {
 
     private static class DataChunk {
 
-        private final float[][] values = new float[MAX_LEVEL][];
-        private final long[][] dates = new long[MAX_LEVEL][];
+        private final long key;
+        private final long startDate;
+        private final float[] values = new float[CHUNKED_SIZE];
+        private final float[][] mins = new float[MAX_LEVEL][];
+        private final float[][] maxs = new float[MAX_LEVEL][];
+        private BandSummary summary;
+
+        DataChunk(long _key) {
+            key = _key;
+            startDate = key * MILLIS_PER_CHUNK;
+            Arrays.fill(values, YAxis.BLANK);
+        }
 
-        DataChunk(long key) {
-            int factor = 1;
-            for (int i = 0; i < MAX_LEVEL; i++) {
-                values[i] = new float[(int) CHUNKED_SIZE / factor];
-                Arrays.fill(values[i], YAxis.BLANK);
-                dates[i] = new long[(int) CHUNKED_SIZE / factor];
-                factor *= FACTOR_STEP;
-            }
+        static int size(int level) {
+            return ((CHUNKED_SIZE - 1) >> level) + 1;
+        }
 
-            long startdate = key * MILLIS_PER_CHUNK;
-            factor = 1;
-            for (int j = 0; j < values.length; j++) {
-                for (int i = 0; i < values[j].length; i++) {
-                    dates[j][i] = startdate + i * MILLIS_PER_TICK * factor;
-                }
-                factor *= FACTOR_STEP;
-            }
+        // index of the bucket of date at level, rounded up if ceil, moved by extra, clamped to the chunk
+        int index(long date, int level, int ceil, int extra) {
+            long step = MILLIS_PER_TICK << level;
+            long idx = Math.floorDiv(date - startDate + ceil * (step - 1), step) + extra;
+            return (int) Math.max(0, Math.min(idx, size(level) - 1));
         }
 
-        void setValue(boolean max, int minuteOfDay, float value) {
-            int factor = 1;
-            for (int i = 0; i < values.length; i++) {
-                //if (values[i].length == 0) -- if ever MILLIS_PER_TICK > 5min
-                //    continue;
-                int idx = minuteOfDay / factor;
-                if (idx >= values[i].length) {
-                    idx = values[i].length - 1;
-                }
-                values[i][idx] = max ? Math.max(values[i][idx], value) : value;
-                factor *= FACTOR_STEP;
+        void setValue(boolean max, int tick, float value) {
+            values[tick] = max ? Math.max(values[tick], value) : value;
+            if (summary != null)
+                summary.invalidate(tick);
+            if (mins[1] != null) {
+                Arrays.fill(mins, null);
+                Arrays.fill(maxs, null);
             }
+        }
 
+        BandSummary getSummary() {
+            if (summary == null)
+                summary = new BandSummary(values, CHUNKED_SIZE);
+            return summary;
         }
 
-        float[] getValues(int level) {
-            return values[level];
+        float[] getMin(int level) {
+            build(level);
+            return mins[level];
+        }
+
+        float[] getMax(int level) {
+            build(level);
+            return maxs[level];
+        }
+
+        private void build(int level) {
+            if (mins[level] != null)
+                return;
+            if (level > 1)
+                build(level - 1);
+
+            int len = size(level);
+            float[] lmin = new float[len];
+            float[] lmax = new float[len];
+            for (int i = 0; i < len; i++) {
+                int j = 2 * i;
+                float min, max;
+                if (level == 1) {
+                    min = max = values[j];
+                    if (j + 1 < CHUNKED_SIZE) {
+                        float v = values[j + 1];
+                        min = combineMin(min, v);
+                        max = Math.max(max, v); // BLANK is the lowest float
+                    }
+                } else {
+                    float[] pmin = mins[level - 1];
+                    float[] pmax = maxs[level - 1];
+                    min = pmin[j];
+                    max = pmax[j];
+                    if (j + 1 < pmin.length) {
+                        min = combineMin(min, pmin[j + 1]);
+                        max = Math.max(max, pmax[j + 1]);
+                    }
+                }
+                lmin[i] = min;
+                lmax[i] = max;
+            }
+            mins[level] = lmin;
+            maxs[level] = lmax;
         }
 
-        long[] getDates(int level) {
-            return dates[level];
+        private static float combineMin(float a, float b) {
+            if (a == YAxis.BLANK)
+                return b;
+            if (b == YAxis.BLANK)
+                return a;
+            return Math.min(a, b);
         }
 
         void serialize(JSONArray ja, double f) {
-            long[] d = dates[0];
-            float[] v = values[0];
-            for (int i = 0; i < v.length; i++)
-                ja.put(new JSONArray().put(d[i] / 1000L).put(f * v[i]));
+            for (int i = 0; i < CHUNKED_SIZE; i++)
+                ja.put(new JSONArray().put((startDate + i * MILLIS_PER_TICK) / 1000L).put(f * values[i]));
         }
 
     }
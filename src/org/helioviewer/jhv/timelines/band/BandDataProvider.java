@@ -3,13 +3,13 @@ package org.helioviewer.jhv.timelines.band;
 import java.net.URI;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 
 import org.helioviewer.jhv.Log;
 import org.helioviewer.jhv.base.interval.Interval;
 import org.helioviewer.jhv.io.JSONUtils;
+import org.helioviewer.jhv.io.NetClient;
 import org.helioviewer.jhv.threads.EventQueueCallbackExecutor;
 import org.helioviewer.jhv.time.TimeUtils;
 import org.helioviewer.jhv.timelines.Timelines;
@@ -17,13 +17,10 @@ import org.helioviewer.jhv.timelines.TimelineSettings;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.util.concurrent.FutureCallback;
 
 public class BandDataProvider {
 
-    private static final ArrayListMultimap<Band, Future<BandResponse>> workerMap = ArrayListMultimap.create();
-
     public static void loadBandTypes() {
         EventQueueCallbackExecutor.pool.submit(new BandTypeDownload(), new BandTypeDownloadCallback());
     }
@@ -32,61 +29,45 @@ public class BandDataProvider {
         EventQueueCallbackExecutor.pool.submit(new BandLoad(jo), new BandLoadCallback());
     }
 
-    static void addDownloads(Band band, List<Interval> intervals) {
+    static void addDownloads(Band band, List<Interval> intervals, long visibleStart, long visibleEnd) {
         if ("".equals(band.getBandType().getBaseURL()))
             return;
-        for (Interval interval : intervals) {
-            Future<BandResponse> worker = EventQueueCallbackExecutor.pool.submit(
-                    new BandDownload(band, interval.start, interval.end), new BandDownloadCallback(band));
-            workerMap.put(band, worker);
-        }
+        BandScheduler.add(band, intervals, visibleStart, visibleEnd);
+    }
+
+    static void setVisible(Band band, long visibleStart, long visibleEnd) {
+        BandScheduler.setVisible(band, visibleStart, visibleEnd);
     }
 
     static void stopDownloads(Band band) {
-        workerMap.get(band).forEach(worker -> worker.cancel(true));
-        workerMap.removeAll(band);
+        BandScheduler.stop(band);
     }
 
     static boolean isDownloadActive(Band band) {
-        for (Future<BandResponse> worker : workerMap.get(band)) {
-            if (!worker.isDone())
-                return true;
-        }
-        return false;
+        return BandScheduler.isActive(band);
     }
 
-    private record BandDownload(Band band, long startTime, long endTime) implements Callable<BandResponse> {
-
-        BandDownload {
-            Timelines.getLayers().downloadStarted(band);
-        }
-
-        @Override
-        public BandResponse call() throws Exception {
-            BandType type = band.getBandType();
-            URI uri = new URI(type.getBaseURL() + "timeline=" + type.getName() +
-                    "&start_date=" + TimeUtils.formatDate(startTime) +
-                    "&end_date=" + TimeUtils.formatDate(endTime));
-            return new BandResponse(JSONUtils.getUncached(uri));
-        }
-
+    // The stored days of the interval completed by a download of the missing ones, on the workers of the scheduler
+    static BandResponse download(BandType type, long startTime, long endTime) throws Exception {
+        BandStore.Coverage coverage = BandStore.read(type, startTime, endTime);
+        if (coverage.complete())
+            return coverage.stored();
+
+        long start = Math.max(startTime, coverage.missingStart());
+        long end = Math.min(endTime, coverage.missingEnd() + TimeUtils.DAY_IN_MILLIS);
+        BandResponse downloaded = downloadNetwork(type, start, end);
+        if (downloaded.bandName.equals(type.getName()))
+            BandStore.write(type, downloaded, start, end);
+        return coverage.stored().dates.length == 0 ? downloaded : downloaded.merge(coverage.stored());
     }
 
-    private record BandDownloadCallback(Band band) implements FutureCallback<BandResponse> {
-
-        @Override
-        public void onSuccess(BandResponse result) {
-            if (result.bandName.equals(band.getBandType().getName()))
-                band.addToCache(result.values, result.dates);
-            else
-                Log.error("Expected " + band.getBandType().getName() + ", got " + result.bandName);
-        }
-
-        @Override
-        public void onFailure(@Nonnull Throwable t) {
-            Log.error(t);
+    private static BandResponse downloadNetwork(BandType type, long start, long end) throws Exception {
+        URI uri = new URI(type.getBaseURL() + "timeline=" + type.getName() +
+                "&start_date=" + TimeUtils.formatDate(start) +
+                "&end_date=" + TimeUtils.formatDate(end));
+        try (NetClient nc = NetClient.of(uri, false, NetClient.NetCache.NETWORK)) {
+            return BandResponseParser.parse(nc.getSource(), nc.getContentLength());
         }
-
     }
 
     private record BandLoad(JSONObject jo) implements Callable<BandResponse> {
@@ -10,6 +10,13 @@ class BandResponse {
     final long[] dates;
     final float[] values;
 
+    BandResponse(String _bandName, BandType _bandType, long[] _dates, float[] _values) {
+        bandName = _bandName;
+        bandType = _bandType;
+        dates = _dates;
+        values = _values;
+    }
+
     BandResponse(JSONObject jo) {
         JSONObject bo = jo.optJSONObject("bandType");
         bandType = bo == null ? null : new BandType(bo);
@@ -32,4 +39,33 @@ class BandResponse {
         }
     }
 
+    // Merges two responses sorted by date, keeping the result sorted
+    BandResponse merge(BandResponse other) {
+        long[] od = other.dates;
+        float[] ov = other.values;
+        int len = dates.length, olen = od.length;
+        long[] d = new long[len + olen];
+        float[] v = new float[len + olen];
+
+        int i = 0, j = 0, k = 0;
+        while (i < len && j < olen) {
+            if (dates[i] <= od[j]) {
+                d[k] = dates[i];
+                v[k++] = values[i++];
+            } else {
+                d[k] = od[j];
+                v[k++] = ov[j++];
+            }
+        }
+        while (i < len) {
+            d[k] = dates[i];
+            v[k++] = values[i++];
+        }
+        while (j < olen) {
+            d[k] = od[j];
+            v[k++] = ov[j++];
+        }
+        return new BandResponse(bandName, bandType, d, v);
+    }
+
 }
@@ -0,0 +1,268 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+// Streaming parse of a timeline download. The data array is tokenized as the bytes arrive and written
+// straight into primitive arrays, without building the org.json tree; only small members such as
+// bandType are handed to org.json.
+class BandResponseParser {
+
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int BYTES_PER_ENTRY = 24; // [1672531200,1.2345e-06],
+
+    private final BufferedSource in;
+    private final StringBuilder sb = new StringBuilder();
+
+    private String bandName = "Unknown";
+    private BandType bandType;
+    private double multiplier = 1;
+    private boolean hasMultiplier;
+    private boolean multiplied;
+    private long[] dates = new long[0];
+    private float[] values = new float[0];
+
+    private BandResponseParser(BufferedSource _in) {
+        in = _in;
+    }
+
+    static BandResponse parse(BufferedSource in, long contentLength) throws IOException {
+        return new BandResponseParser(in).parse(contentLength);
+    }
+
+    private BandResponse parse(long contentLength) throws IOException {
+        expect('{');
+        if (peek() == '}')
+            in.skip(1);
+        else {
+            while (true) {
+                String key = readString();
+                expect(':');
+                switch (key) {
+                    case "data" -> readData(contentLength);
+                    case "timeline" -> bandName = peek() == '"' ? readString() : readRaw();
+                    case "multiplier" -> {
+                        multiplier = readNumber();
+                        hasMultiplier = true;
+                    }
+                    case "bandType" -> {
+                        String raw = readRaw();
+                        if (raw.startsWith("{"))
+                            bandType = new BandType(new JSONObject(raw));
+                    }
+                    default -> skipRaw();
+                }
+                if (next() == '}')
+                    break;
+            }
+        }
+
+        if (!multiplied && multiplier != 1) { // multiplier came after data
+            for (int i = 0; i < values.length; i++)
+                values[i] *= multiplier;
+        }
+        return new BandResponse(bandName, bandType, dates, values);
+    }
+
+    private void readData(long contentLength) throws IOException {
+        if (peek() == 'n') {
+            readRaw();
+            return;
+        }
+        expect('[');
+        if (peek() == ']') {
+            in.skip(1);
+            return;
+        }
+
+        multiplied = hasMultiplier;
+        double mult = multiplier;
+        int capacity = contentLength > 0 ? (int) Math.min(contentLength / BYTES_PER_ENTRY + 1, Integer.MAX_VALUE - 8) : 1024;
+        long[] d = new long[capacity];
+        float[] v = new float[capacity];
+        int len = 0;
+        while (true) {
+            if (len == d.length) {
+                int grow = len + (len >> 1) + 1;
+                d = Arrays.copyOf(d, grow);
+                v = Arrays.copyOf(v, grow);
+            }
+            expect('[');
+            d[len] = (long) readNumber() * 1000L;
+            expect(',');
+            v[len] = (float) (readNumber() * mult);
+            len++;
+            int c = next();
+            while (c == ',') { // extra elements
+                skipRaw();
+                c = next();
+            }
+            if (c != ']')
+                throw error("Expected ]");
+            if (next() == ']')
+                break;
+        }
+        dates = len == d.length ? d : Arrays.copyOf(d, len);
+        values = len == v.length ? v : Arrays.copyOf(v, len);
+    }
+
+    // first non-whitespace byte, not consumed
+    private int peek() throws IOException {
+        while (true) {
+            if (!in.request(1))
+                throw new EOFException("Unexpected end of JSON");
+            int c = in.getBuffer().getByte(0);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return c;
+            in.skip(1);
+        }
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        in.skip(1);
+        return c;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (next() != expected)
+            throw error("Expected " + expected);
+    }
+
+    private JSONException error(String msg) {
+        return new JSONException(msg + " in band response");
+    }
+
+    private double readNumber() throws IOException {
+        int c = peek();
+        if (c == 'n') { // null
+            readRaw();
+            return Double.NaN;
+        }
+
+        sb.setLength(0);
+        boolean negative = false;
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean fraction = false;
+        boolean simple = true;
+        while (in.request(1)) {
+            c = in.getBuffer().getByte(0);
+            if (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0')
+                    digits++;
+                if (digits <= 18)
+                    mantissa = 10 * mantissa + (c - '0');
+                else if (!fraction)
+                    exponent++;
+                if (fraction && digits <= 18)
+                    exponent--;
+            } else if (c == '.') {
+                fraction = true;
+            } else if (c == '-' && sb.isEmpty()) {
+                negative = true;
+            } else if (c == 'e' || c == 'E' || c == '+' || c == '-') {
+                simple = false;
+            } else
+                break;
+            sb.append((char) c);
+            in.skip(1);
+        }
+        if (sb.isEmpty())
+            throw error("Expected number");
+
+        // exact when both mantissa and power of ten are exact doubles
+        if (simple && digits <= 15 && exponent >= -22 && exponent <= 22) {
+            double d = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+            return negative ? -d : d;
+        }
+        try {
+            return Double.parseDouble(sb.toString());
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + sb);
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        sb.setLength(0);
+        while (true) {
+            long quote = in.indexOf((byte) '"');
+            if (quote == -1)
+                throw new EOFException("Unterminated string");
+            long escape = in.indexOf((byte) '\\', 0, quote);
+            if (escape == -1) {
+                sb.append(in.readUtf8(quote));
+                in.skip(1);
+                return sb.toString();
+            }
+            sb.append(in.readUtf8(escape));
+            in.skip(1);
+            int c = in.readByte();
+            switch (c) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> sb.append((char) Integer.parseInt(in.readUtf8(4), 16));
+                default -> sb.append((char) c);
+            }
+        }
+    }
+
+    private String readRaw() throws IOException {
+        Buffer out = new Buffer();
+        copyRaw(out);
+        return out.readUtf8();
+    }
+
+    private void skipRaw() throws IOException {
+        copyRaw(null);
+    }
+
+    // copies the text of the next value, or skips it if out is null
+    private void copyRaw(Buffer out) throws IOException {
+        int depth = 0;
+        boolean string = false;
+        peek();
+        while (true) {
+            if (!in.request(1))
+                throw new EOFException("Unexpected end of JSON");
+            byte c = in.getBuffer().getByte(0);
+            if (!string && depth == 0 && (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t'))
+                return;
+            in.skip(1);
+            if (out != null)
+                out.writeByte(c);
+
+            if (string) {
+                if (c == '\\') {
+                    byte e = in.readByte();
+                    if (out != null)
+                        out.writeByte(e);
+                } else if (c == '"')
+                    string = false;
+            } else if (c == '"')
+                string = true;
+            else if (c == '{' || c == '[')
+                depth++;
+            else if (c == '}' || c == ']') {
+                if (--depth == 0)
+                    return;
+            }
+            if (depth == 0 && !string && c == '"') // end of a top-level string
+                return;
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.helioviewer.jhv.Log;
+import org.helioviewer.jhv.base.interval.Interval;
+import org.helioviewer.jhv.threads.EventQueueCallbackExecutor;
+import org.helioviewer.jhv.threads.JHVThread;
+import org.helioviewer.jhv.time.TimeUtils;
+import org.helioviewer.jhv.timelines.Timelines;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.MoreExecutors;
+
+// Schedules the downloads of the bands. Jobs are queued per server and at most MAX_PER_SERVER of them
+// run at once, the nearest to the visible interval first. In-flight jobs are keyed by what they fetch,
+// the base URL and timeline, and their interval: a request already covered by a job of the same source
+// subscribes to it, a request adjacent to a queued job is merged into it up to MAX_SPAN. The servers
+// answer one timeline per request, so bands of different timelines on the same server share the queue
+// and its limit, but not a response.
+// Queued jobs far from the visible interval are cancelled and given back to the request cache of the band,
+// running ones complete and are kept in the store.
+// Jobs are created, merged and cancelled on the EDT; the workers only take them from the queues,
+// a compare-and-set of the state decides between a worker starting a job and the EDT cancelling it.
+class BandScheduler {
+
+    private static final int MAX_PER_SERVER = 4; // below the per-host limit of the HTTP client
+    private static final long MAX_SPAN = Band.DOWNLOADER_MAX_DAYS_PER_BLOCK * TimeUtils.DAY_IN_MILLIS;
+    private static final long KEEP_MARGIN = 7 * TimeUtils.DAY_IN_MILLIS;
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int CANCELLED = 2;
+
+    private static final EventQueueCallbackExecutor executor = new EventQueueCallbackExecutor(
+            MoreExecutors.listeningDecorator(Executors.newCachedThreadPool(new JHVThread.NamedThreadFactory("Band Download"))));
+
+    private static final ConcurrentHashMap<String, Server> servers = new ConcurrentHashMap<>();
+    private static final HashMap<Source, List<Job>> jobs = new HashMap<>(); // queued and running
+    private static long sequence;
+
+    private record Source(String baseURL, String timeline) {
+        static Source of(BandType type) {
+            return new Source(type.getBaseURL(), type.getName());
+        }
+    }
+
+    private static class Job {
+
+        final BandType type;
+        final Source source;
+        final Server server;
+        final long start;
+        final long end;
+        final long seq = sequence++;
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+        final LinkedHashSet<Band> bands = new LinkedHashSet<>();
+        long priority; // changed only while not in the queue
+
+        Job(BandType _type, Server _server, long _start, long _end) {
+            type = _type;
+            source = Source.of(type);
+            server = _server;
+            start = _start;
+            end = _end;
+        }
+
+    }
+
+    private static class Server {
+
+        final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>(16,
+                Comparator.comparingLong((Job job) -> job.priority).thenComparingLong(job -> job.seq));
+        final AtomicInteger running = new AtomicInteger();
+
+        // Starts queued jobs while below the limit, from any thread
+        void dispatch() {
+            while (true) {
+                int n = running.get();
+                if (n >= MAX_PER_SERVER || queue.isEmpty())
+                    return;
+                if (!running.compareAndSet(n, n + 1))
+                    continue;
+
+                Job job = queue.poll();
+                if (job == null || !job.state.compareAndSet(QUEUED, RUNNING)) { // emptied or cancelled meanwhile
+                    running.decrementAndGet();
+                    continue;
+                }
+                executor.submit(() -> {
+                    try {
+                        return BandDataProvider.download(job.type, job.start, job.end);
+                    } finally {
+                        running.decrementAndGet();
+                        dispatch();
+                    }
+                }, new JobCallback(job));
+            }
+        }
+
+    }
+
+    private static Server getServer(BandType type) {
+        String key;
+        try {
+            key = URI.create(type.getBaseURL()).getHost();
+        } catch (Exception e) {
+            key = null;
+        }
+        return servers.computeIfAbsent(key == null ? type.getBaseURL() : key, k -> new Server());
+    }
+
+    private static long distance(long start, long end, long visibleStart, long visibleEnd) {
+        if (end < visibleStart)
+            return visibleStart - end;
+        if (start > visibleEnd)
+            return start - visibleEnd;
+        return 0;
+    }
+
+    static void add(Band band, List<Interval> intervals, long visibleStart, long visibleEnd) {
+        BandType type = band.getBandType();
+        List<Job> sourceJobs = jobs.computeIfAbsent(Source.of(type), k -> new ArrayList<>());
+        Server server = getServer(type);
+
+        for (Interval interval : intervals) {
+            long start = interval.start, end = interval.end;
+            Job covering = null, adjacent = null;
+            for (Job job : sourceJobs) {
+                if (job.start <= start && job.end >= end) {
+                    covering = job;
+                    break;
+                }
+                if ((job.end == start || job.start == end) && Math.max(job.end, end) - Math.min(job.start, start) <= MAX_SPAN &&
+                        job.state.get() == QUEUED)
+                    adjacent = job;
+            }
+
+            if (covering != null) { // in flight from this source already
+                covering.bands.add(band);
+                continue;
+            }
+
+            Job job;
+            if (adjacent != null && adjacent.state.compareAndSet(QUEUED, CANCELLED)) {
+                server.queue.remove(adjacent);
+                sourceJobs.remove(adjacent);
+                job = new Job(type, server, Math.min(adjacent.start, start), Math.max(adjacent.end, end));
+                job.bands.addAll(adjacent.bands);
+            } else
+                job = new Job(type, server, start, end);
+            job.bands.add(band);
+            job.priority = distance(job.start, job.end, visibleStart, visibleEnd);
+            sourceJobs.add(job);
+            server.queue.add(job);
+        }
+        Timelines.getLayers().downloadStarted(band);
+        server.dispatch();
+    }
+
+    // Reorders the queued jobs of the band by the new visible interval and cancels the ones far from it
+    static void setVisible(Band band, long visibleStart, long visibleEnd) {
+        List<Job> sourceJobs = jobs.get(Source.of(band.getBandType()));
+        if (sourceJobs == null)
+            return;
+
+        long margin = visibleEnd - visibleStart + KEEP_MARGIN;
+        boolean dropped = false;
+        for (Job job : new ArrayList<>(sourceJobs)) {
+            if (!job.bands.contains(band) || job.state.get() != QUEUED || !job.server.queue.remove(job))
+                continue; // running
+
+            long priority = distance(job.start, job.end, visibleStart, visibleEnd);
+            if (priority > margin) {
+                band.cancelRequest(job.start, job.end);
+                job.bands.remove(band);
+                dropped = true;
+                if (job.bands.isEmpty() && job.state.compareAndSet(QUEUED, CANCELLED)) {
+                    sourceJobs.remove(job);
+                    continue;
+                }
+            }
+            job.priority = priority;
+            job.server.queue.add(job);
+        }
+        if (dropped && !isActive(band)) // no job callback will turn its loading indicator off
+            Timelines.getLayers().downloadFinished(band);
+        getServer(band.getBandType()).dispatch();
+    }
+
+    static void stop(Band band) {
+        List<Job> sourceJobs = jobs.get(Source.of(band.getBandType()));
+        if (sourceJobs == null)
+            return;
+
+        for (Job job : new ArrayList<>(sourceJobs)) {
+            if (job.bands.remove(band) && job.bands.isEmpty() && job.state.compareAndSet(QUEUED, CANCELLED)) {
+                job.server.queue.remove(job);
+                sourceJobs.remove(job);
+            }
+        }
+    }
+
+    static boolean isActive(Band band) {
+        List<Job> sourceJobs = jobs.get(Source.of(band.getBandType()));
+        if (sourceJobs == null)
+            return false;
+        for (Job job : sourceJobs) {
+            if (job.bands.contains(band))
+                return true;
+        }
+        return false;
+    }
+
+    private record JobCallback(Job job) implements FutureCallback<BandResponse> {
+
+        private List<Band> finish() {
+            List<Job> sourceJobs = jobs.get(job.source);
+            if (sourceJobs != null)
+                sourceJobs.remove(job);
+            List<Band> bands = new ArrayList<>(job.bands);
+            bands.forEach(band -> Timelines.getLayers().downloadFinished(band));
+            return bands;
+        }
+
+        @Override
+        public void onSuccess(BandResponse result) {
+            List<Band> bands = finish();
+            if (!result.bandName.equals(job.type.getName())) {
+                Log.error("Expected " + job.type.getName() + ", got " + result.bandName);
+                return;
+            }
+            bands.forEach(band -> band.addToCache(result.values, result.dates));
+        }
+
+        @Override
+        public void onFailure(@Nonnull Throwable t) {
+            finish();
+            if (!(t instanceof CancellationException))
+                Log.error(t);
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.util.Arrays;
+
+// Statistics of the values of a band over an interval; without values, min is +Infinity and max -Infinity.
+// Quantiles are approximate, interpolated in a weighted sample of the values which is sorted when first needed.
+public class BandStats {
+
+    public final int count;
+    public final float min;
+    public final float max;
+    public final double sum;
+
+    private final float[] values;
+    private final float[] weights;
+    private final int length;
+
+    private float[] sample; // sorted
+    private double[] rank; // cumulative weight up to and including each sample value
+
+    private BandStats(int _count, float _min, float _max, double _sum, float[] _values, float[] _weights, int _length) {
+        count = _count;
+        min = _min;
+        max = _max;
+        sum = _sum;
+        values = _values;
+        weights = _weights;
+        length = _length;
+    }
+
+    public double mean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    // q in [0,1]; NaN without values
+    public float quantile(double q) {
+        if (length == 0)
+            return Float.NaN;
+        if (q <= 0)
+            return min;
+        if (q >= 1)
+            return max;
+
+        sort();
+        int len = length;
+        double target = q * rank[len - 1];
+        int idx = Arrays.binarySearch(rank, target);
+        if (idx < 0)
+            idx = -idx - 1;
+        return sample[Math.min(idx, len - 1)];
+    }
+
+    private synchronized void sort() {
+        if (sample != null)
+            return;
+
+        long[] order = new long[length]; // indices sorted by value, in the high bits
+        for (int i = 0; i < length; i++)
+            order[i] = ((long) sortable(values[i]) << 32) | i;
+        Arrays.sort(order);
+
+        float[] s = new float[length];
+        double[] r = new double[length];
+        double acc = 0;
+        for (int i = 0; i < length; i++) {
+            int idx = (int) order[i];
+            s[i] = values[idx];
+            r[i] = acc += weights[idx];
+        }
+        rank = r;
+        sample = s;
+    }
+
+    // ints ordered as the floats
+    private static int sortable(float f) {
+        int bits = Float.floatToIntBits(f);
+        return bits < 0 ? bits ^ 0x7fffffff : bits;
+    }
+
+    public float median() {
+        return quantile(0.5);
+    }
+
+    @Override
+    public String toString() {
+        return "[count=" + count + " min=" + min + " max=" + max + " mean=" + mean() + " median=" + median() + ']';
+    }
+
+    // Collects the summaries of the chunks of a cache
+    static class Accumulator {
+
+        private static final int MAX_SAMPLE = 1 << 17;
+
+        private int count;
+        private float min = Float.POSITIVE_INFINITY;
+        private float max = Float.NEGATIVE_INFINITY;
+        private double sum;
+
+        private float[] values = new float[256];
+        private float[] weights = new float[256];
+        private int length;
+
+        void add(int _count, double _sum, float _min, float _max) {
+            count += _count;
+            sum += _sum;
+            min = Math.min(min, _min);
+            max = Math.max(max, _max);
+        }
+
+        void addSample(float value, float weight) {
+            if (length == MAX_SAMPLE) { // thin out, every other value of the strided runs of the chunks
+                for (int i = 0; i < length / 2; i++) {
+                    values[i] = values[2 * i];
+                    weights[i] = 2 * weights[2 * i];
+                }
+                length /= 2;
+            } else if (length == values.length) {
+                values = Arrays.copyOf(values, 2 * length);
+                weights = Arrays.copyOf(weights, 2 * length);
+            }
+            values[length] = value;
+            weights[length++] = weight;
+        }
+
+        BandStats build() {
+            return new BandStats(count, min, max, sum, values, weights, length);
+        }
+
+    }
+
+}
@@ -0,0 +1,281 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import org.helioviewer.jhv.JHVDirectory;
+import org.helioviewer.jhv.Log;
+import org.helioviewer.jhv.base.Regex;
+import org.helioviewer.jhv.io.FileUtils;
+import org.helioviewer.jhv.threads.JHVThread;
+import org.helioviewer.jhv.time.TimeUtils;
+
+// Disk store of downloaded band data, kept across sessions: one columnar file per band and UTC day,
+// holding the dates followed by the values. The files present are the index of the covered days.
+// Only days which ended some time ago and are covered by the response are stored, the near-real-time
+// tail is always downloaded. Like the JPIP cache, files expire when idle and the least recently used are evicted
+// above the size cap.
+class BandStore {
+
+    private static final Path storeDir = Path.of(JHVDirectory.CACHE.getPath(), "Timelines-2");
+
+    private static final long EXPIRY = Duration.ofDays(30).toMillis(); // time to idle
+    private static final long MAX_SIZE = 512L * 1024 * 1024;
+    private static final long EVICT_SIZE = MAX_SIZE - MAX_SIZE / 8;
+
+    private static final ExecutorService maintenance = Executors.newSingleThreadExecutor(new JHVThread.NamedThreadFactory("Band Store"));
+    private static final AtomicLong size = new AtomicLong();
+    private static final AtomicBoolean evicting = new AtomicBoolean();
+
+    static {
+        maintenance.execute(() -> {
+            try {
+                FileUtils.deleteDir(Path.of(JHVDirectory.CACHE.getPath(), "Timelines-1")); // old version, with empty days
+            } catch (NoSuchFileException ignore) {
+            } catch (Exception e) {
+                Log.error(e);
+            }
+            try {
+                Files.createDirectories(storeDir);
+                FileUtils.deleteFromDir(storeDir, EXPIRY, false);
+                size.addAndGet(FileUtils.diskUsage(storeDir)); // writes may already have counted, overcount at worst
+            } catch (Exception e) {
+                Log.error(e);
+            }
+        });
+    }
+
+    private static final int MAGIC = 0x4a484254; // JHBT
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final long CLOSED_AFTER = 2 * TimeUtils.DAY_IN_MILLIS;
+
+    // The days from start to end, by the first and last missing day
+    record Coverage(BandResponse stored, long missingStart, long missingEnd) {
+        boolean complete() {
+            return missingStart > missingEnd;
+        }
+    }
+
+    private static Path getDir(BandType type) {
+        return storeDir.resolve(Regex.NonFilename.matcher(type.getName()).replaceAll("_"));
+    }
+
+    private static Path getPath(Path dir, long day) {
+        return dir.resolve(day / TimeUtils.DAY_IN_MILLIS + ".bin");
+    }
+
+    // Reads the stored days outside of the first to last missing day of the interval
+    static Coverage read(BandType type, long start, long end) {
+        Path dir = getDir(type);
+        long first = TimeUtils.floorDay(start);
+        long last = TimeUtils.floorDay(end);
+
+        long missingStart = Long.MAX_VALUE, missingEnd = Long.MIN_VALUE;
+        for (long day = first; day <= last; day += TimeUtils.DAY_IN_MILLIS) {
+            if (!Files.exists(getPath(dir, day))) {
+                missingStart = Math.min(missingStart, day);
+                missingEnd = Math.max(missingEnd, day);
+            }
+        }
+
+        long[] dates = new long[0];
+        float[] values = new float[0];
+        for (long day = first; day <= last; day += TimeUtils.DAY_IN_MILLIS) {
+            if (day >= missingStart && day <= missingEnd)
+                continue;
+            Path path = getPath(dir, day);
+            ByteBuffer data = load(path);
+            if (data == null) { // unreadable, download again
+                missingStart = Math.min(missingStart, day);
+                missingEnd = Math.max(missingEnd, day);
+                continue;
+            }
+
+            int len = dates.length, count = data.getInt(Integer.BYTES);
+            dates = Arrays.copyOf(dates, len + count);
+            values = Arrays.copyOf(values, len + count);
+            data.position(HEADER_SIZE);
+            data.asLongBuffer().get(dates, len, count);
+            data.position(HEADER_SIZE + count * Long.BYTES);
+            data.asFloatBuffer().get(values, len, count);
+            touch(path);
+        }
+        if (missingStart <= missingEnd) { // drop what will be downloaded again
+            long ms = missingStart, me = missingEnd + TimeUtils.DAY_IN_MILLIS;
+            int n = 0;
+            for (int i = 0; i < dates.length; i++) {
+                if (dates[i] < ms || dates[i] >= me) {
+                    dates[n] = dates[i];
+                    values[n++] = values[i];
+                }
+            }
+            dates = Arrays.copyOf(dates, n);
+            values = Arrays.copyOf(values, n);
+        }
+        return new Coverage(new BandResponse(type.getName(), null, dates, values), missingStart, missingEnd);
+    }
+
+    @Nullable
+    private static ByteBuffer load(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC)
+                throw new IOException("Corrupt band store file " + path);
+            int count = data.getInt(Integer.BYTES);
+            if (data.capacity() != HEADER_SIZE + (long) count * (Long.BYTES + Float.BYTES))
+                throw new IOException("Corrupt band store file " + path);
+            return data;
+        } catch (NoSuchFileException ignore) {
+        } catch (IOException e) {
+            Log.error(e);
+            delete(path);
+        }
+        return null;
+    }
+
+    // Stores the closed days of a download from start to end; requests are by day, the day of end
+    // is left to the next download
+    static void write(BandType type, BandResponse response, long start, long end) {
+        long first = TimeUtils.floorDay(start);
+        long last = Math.min(TimeUtils.floorDay(end), TimeUtils.floorDay(System.currentTimeMillis() - CLOSED_AFTER));
+        if (first >= last)
+            return;
+
+        Path dir = getDir(type);
+        try {
+            Files.createDirectories(dir);
+
+            long[] dates = response.dates;
+            float[] values = response.values;
+            for (long day = first; day < last; day += TimeUtils.DAY_IN_MILLIS) {
+                long dayEnd = day + TimeUtils.DAY_IN_MILLIS;
+                int count = 0;
+                for (long date : dates) {
+                    if (date >= day && date < dayEnd)
+                        count++;
+                }
+                if (!covered(dates, day, dayEnd, count)) // maybe not yet complete on the server, ask again next time
+                    continue;
+
+                ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + count * (Long.BYTES + Float.BYTES));
+                data.putInt(MAGIC).putInt(count);
+                for (long date : dates) {
+                    if (date >= day && date < dayEnd)
+                        data.putLong(date);
+                }
+                for (int i = 0; i < dates.length; i++) {
+                    if (dates[i] >= day && dates[i] < dayEnd)
+                        data.putFloat(values[i]);
+                }
+                data.flip();
+
+                Path path = getPath(dir, day);
+                long oldSize = Files.exists(path) ? Files.size(path) : 0;
+                long newSize = data.remaining();
+                Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    while (data.hasRemaining())
+                        channel.write(data);
+                }
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                size.addAndGet(newSize - oldSize);
+            }
+        } catch (Exception e) {
+            Log.error(e);
+        }
+        if (size.get() > MAX_SIZE && evicting.compareAndSet(false, true))
+            maintenance.execute(BandStore::evict);
+    }
+
+    // Whether the samples of the day reach both of its ends within the largest gap between them,
+    // i.e., the response was not cut inside the day; dates are sorted
+    private static boolean covered(long[] dates, long day, long dayEnd, int count) {
+        if (count < 2)
+            return false;
+
+        long firstIn = Long.MAX_VALUE, lastIn = Long.MIN_VALUE, maxGap = 0;
+        for (long date : dates) {
+            if (date >= day && date < dayEnd) {
+                if (lastIn != Long.MIN_VALUE)
+                    maxGap = Math.max(maxGap, date - lastIn);
+                firstIn = Math.min(firstIn, date);
+                lastIn = date;
+            }
+        }
+        return firstIn - day <= maxGap && dayEnd - lastIn <= maxGap;
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignore) { // concurrently evicted
+        }
+    }
+
+    private record Entry(Path path, long time, long size) {
+    }
+
+    // Deletes least recently used days of all bands until below the size cap
+    private static void evict() {
+        try {
+            List<Entry> entries = new ArrayList<>();
+            long total = 0;
+            try (Stream<Path> stream = Files.walk(storeDir)) {
+                for (Path p : (Iterable<Path>) stream::iterator) {
+                    try {
+                        if (!Files.isRegularFile(p))
+                            continue;
+                        Entry entry = new Entry(p, Files.getLastModifiedTime(p).toMillis(), Files.size(p));
+                        entries.add(entry);
+                        total += entry.size;
+                    } catch (IOException ignore) { // concurrently replaced
+                    }
+                }
+            }
+            entries.sort(Comparator.comparingLong(Entry::time));
+
+            for (Entry entry : entries) {
+                if (total <= EVICT_SIZE)
+                    break;
+                if (delete(entry.path)) {
+                    total -= entry.size;
+                    size.addAndGet(-entry.size); // keeps the concurrent writes
+                }
+            }
+        } catch (Exception e) {
+            Log.error(e);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static boolean delete(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            Log.error(e);
+        }
+        return false;
+    }
+
+}
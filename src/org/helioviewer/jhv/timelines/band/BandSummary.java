@@ -0,0 +1,233 @@
+package org.helioviewer.jhv.timelines.band;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.helioviewer.jhv.timelines.draw.YAxis;
+
+// Summary of a chunk of band values for statistics over index ranges. Blocks of BLOCK values keep their
+// count and sum as prefix sums and their minimum and maximum in trees, so that a range costs two partial
+// blocks and a logarithmic tree walk. A jittered strided sample of the whole chunk gives the quantiles,
+// it is taken when first needed. Blank values are left out. A changed value must be reported by invalidate,
+// only its block is computed again.
+class BandSummary {
+
+    private static final int BLOCK = 64;
+    private static final int SAMPLE = 1024;
+    private static final int PARTIAL_SAMPLE = 4096; // at most two partial chunks per query
+
+    private final float[] values;
+    private final int length;
+    private final int blocks;
+
+    private final int[] blockCount;
+    private final double[] blockSum;
+    private final int[] countPrefix;
+    private final double[] sumPrefix;
+    private final float[] minTree; // leaves at blocks + i
+    private final float[] maxTree;
+
+    private final BitSet dirty = new BitSet();
+    private float[] sample; // of the whole chunk, null until needed
+
+    BandSummary(float[] _values, int _length) {
+        values = _values;
+        length = _length;
+        blocks = (length + BLOCK - 1) / BLOCK;
+
+        blockCount = new int[blocks];
+        blockSum = new double[blocks];
+        countPrefix = new int[blocks + 1];
+        sumPrefix = new double[blocks + 1];
+        minTree = new float[2 * blocks];
+        maxTree = new float[2 * blocks];
+        for (int b = 0; b < blocks; b++)
+            computeBlock(b);
+        for (int n = blocks - 1; n > 0; n--) {
+            minTree[n] = Math.min(minTree[2 * n], minTree[2 * n + 1]);
+            maxTree[n] = Math.max(maxTree[2 * n], maxTree[2 * n + 1]);
+        }
+        computePrefix(0);
+    }
+
+    void invalidate(int index) {
+        dirty.set(index / BLOCK);
+        sample = null;
+    }
+
+    private void update() {
+        int first = dirty.nextSetBit(0);
+        if (first < 0)
+            return;
+        for (int b = first; b >= 0; b = dirty.nextSetBit(b + 1)) {
+            computeBlock(b);
+            for (int n = (blocks + b) >> 1; n > 0; n >>= 1) {
+                minTree[n] = Math.min(minTree[2 * n], minTree[2 * n + 1]);
+                maxTree[n] = Math.max(maxTree[2 * n], maxTree[2 * n + 1]);
+            }
+        }
+        computePrefix(first);
+        dirty.clear();
+    }
+
+    private void computeBlock(int b) {
+        int count = 0;
+        double sum = 0;
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int i = b * BLOCK, to = Math.min(i + BLOCK, length); i < to; i++) {
+            float v = values[i];
+            if (v != YAxis.BLANK) {
+                count++;
+                sum += v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        blockCount[b] = count;
+        blockSum[b] = sum;
+        minTree[blocks + b] = min;
+        maxTree[blocks + b] = max;
+    }
+
+    private void computePrefix(int from) {
+        for (int b = from; b < blocks; b++) {
+            countPrefix[b + 1] = countPrefix[b] + blockCount[b];
+            sumPrefix[b + 1] = sumPrefix[b] + blockSum[b];
+        }
+    }
+
+    private float[] getSample() {
+        if (sample == null) {
+            int count = countPrefix[blocks];
+            int stride = Math.max(1, count / SAMPLE);
+            float[] s = new float[Math.min(count, SAMPLE + 1)];
+            int n = 0;
+            for (int i = 0, seen = 0; i < length && n < s.length; i++) {
+                float v = values[i];
+                if (v != YAxis.BLANK && seen % stride == jitter(seen++ / stride, stride))
+                    s[n++] = v;
+            }
+            sample = Arrays.copyOf(s, n);
+        }
+        return sample;
+    }
+
+    // Widens bounds, {min, max}, by the values from index from to index to, exclusive
+    void bounds(int from, int to, float[] bounds) {
+        from = Math.max(from, 0);
+        to = Math.min(to, length);
+        if (from >= to)
+            return;
+        update();
+
+        int bFrom = (from + BLOCK - 1) / BLOCK;
+        int bTo = to / BLOCK;
+        if (bFrom >= bTo)
+            scanBounds(from, to, bounds);
+        else {
+            scanBounds(from, bFrom * BLOCK, bounds);
+            scanBounds(bTo * BLOCK, to, bounds);
+            bounds[0] = Math.min(bounds[0], queryMin(bFrom, bTo));
+            bounds[1] = Math.max(bounds[1], queryMax(bFrom, bTo));
+        }
+    }
+
+    // Adds the values from index from to index to, exclusive
+    void accumulate(int from, int to, BandStats.Accumulator acc) {
+        from = Math.max(from, 0);
+        to = Math.min(to, length);
+        if (from >= to)
+            return;
+        update();
+
+        if (from == 0 && to == length) {
+            int count = countPrefix[blocks];
+            if (count > 0) {
+                acc.add(count, sumPrefix[blocks], minTree[1], maxTree[1]);
+                float[] s = getSample();
+                float weight = count / (float) s.length;
+                for (float v : s)
+                    acc.addSample(v, weight);
+            }
+            return;
+        }
+
+        int bFrom = (from + BLOCK - 1) / BLOCK;
+        int bTo = to / BLOCK;
+        if (bFrom >= bTo)
+            scan(from, to, acc);
+        else {
+            scan(from, bFrom * BLOCK, acc);
+            scan(bTo * BLOCK, to, acc);
+            int count = countPrefix[bTo] - countPrefix[bFrom];
+            if (count > 0)
+                acc.add(count, sumPrefix[bTo] - sumPrefix[bFrom], queryMin(bFrom, bTo), queryMax(bFrom, bTo));
+        }
+
+        int stride = Math.max(1, (to - from) / PARTIAL_SAMPLE);
+        for (int i = from; i < to; i += stride) {
+            int j = Math.min(i + jitter(i / stride, stride), to - 1);
+            float v = values[j];
+            if (v != YAxis.BLANK)
+                acc.addSample(v, stride);
+        }
+    }
+
+    // offset in the k-th stride, so that the sample does not lock to periodic data
+    private static int jitter(int k, int stride) {
+        int h = k * 0x9e3779b9;
+        h ^= h >>> 16;
+        return (h & 0x7fffffff) % stride;
+    }
+
+    private void scan(int from, int to, BandStats.Accumulator acc) {
+        int count = 0;
+        double sum = 0;
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            float v = values[i];
+            if (v != YAxis.BLANK) {
+                count++;
+                sum += v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        if (count > 0)
+            acc.add(count, sum, min, max);
+    }
+
+    private void scanBounds(int from, int to, float[] bounds) {
+        for (int i = from; i < to; i++) {
+            float v = values[i];
+            if (v != YAxis.BLANK) {
+                bounds[0] = Math.min(bounds[0], v);
+                bounds[1] = Math.max(bounds[1], v);
+            }
+        }
+    }
+
+    // minimum of the blocks from b0 to b1, exclusive
+    private float queryMin(int b0, int b1) {
+        float min = Float.POSITIVE_INFINITY;
+        for (int l = b0 + blocks, r = b1 + blocks; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1)
+                min = Math.min(min, minTree[l++]);
+            if ((r & 1) == 1)
+                min = Math.min(min, minTree[--r]);
+        }
+        return min;
+    }
+
+    private float queryMax(int b0, int b1) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int l = b0 + blocks, r = b1 + blocks; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1)
+                max = Math.max(max, maxTree[l++]);
+            if ((r & 1) == 1)
+                max = Math.max(max, maxTree[--r]);
+        }
+        return max;
+    }
+
+}
@@ -6,15 +6,18 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.BiFunction;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.helioviewer.jhv.base.Regex;
 import org.helioviewer.jhv.io.NetFileCache;
 import org.helioviewer.jhv.time.TimeUtils;
+import org.helioviewer.jhv.timelines.TimelineLayers;
 import org.helioviewer.jhv.timelines.Timelines;
 import org.helioviewer.jhv.timelines.draw.DrawController;
 import org.helioviewer.jhv.timelines.draw.YAxis;
@@ -27,47 +30,84 @@ import uk.ac.bristol.star.cdf.AttributeEntry;
 import uk.ac.bristol.star.cdf.CdfContent;
 import uk.ac.bristol.star.cdf.CdfReader;
 import uk.ac.bristol.star.cdf.DataType;
+import uk.ac.bristol.star.cdf.EpochFormatter;
 import uk.ac.bristol.star.cdf.GlobalAttribute;
+import uk.ac.bristol.star.cdf.TtScaler;
 import uk.ac.bristol.star.cdf.Variable;
 import uk.ac.bristol.star.cdf.VariableAttribute;
 
+// The file is memory-mapped by jcdf. The bands of all data variables are checked and added in the order
+// of the variables first, then the variables are decoded in parallel, each in chunks of records which are
+// rebinned and handed to the band caches as they are ready, so that the plot fills progressively and the
+// raw records are never held whole. If a variable fails, the bands added for the file are removed.
 public class CDFReader {
 
-    public static void load(URI uri) throws Exception {
-        List<BandData> lines = read(NetFileCache.get(uri));
-        if (lines.isEmpty()) // failed
-            return;
-        long[] dates = lines.get(0).dates();
-        if (dates.length == 0) // empty file
-            return;
+    private static final int CHUNK_RECORDS = 64 * 1024;
 
-        EventQueue.invokeLater(() -> {
-            for (BandData line : lines) {
-                Band band = Band.createFromType(line.bandType());
-                band.addToCache(line.values(), dates);
-                Timelines.getLayers().add(band);
-            }
-            DrawController.setSelectedInterval(dates[0], dates[dates.length - 1]);
-        });
+    public static void load(URI uri) throws Exception {
+        read(NetFileCache.get(uri));
     }
 
     private static final double eV2K = 11604.5250061657;
     private static final Set<String> SWAIncluded = Set.of("N", "V_RTN", "T");
 
-    private record BandData(BandType bandType, long[] dates, float[] values) {
+    private record DatesValues(long[] dates, float[][] values) {
     }
 
-    private record DatesValues(long[] dates, float[][] values) {
+    private record CDFVariable(Variable variable, Map<String, String> attributes) {
     }
 
-    private record CDFData(DatesValues datesValues, float scaleMin, float scaleMax, String scaleType, String units,
-                           String[] labels) {
+    private record CDFBands(Variable variable, float fillVal, int numAxes, Transform transform, BandType[] bandTypes) {
     }
 
-    private record CDFVariable(Variable variable, Map<String, String> attributes) {
+    // Derived quantities, applied to each rebinned chunk
+    private enum Transform {
+        None, Speed, Kelvin, Modulus;
+
+        DatesValues apply(DatesValues dv) {
+            float[][] values = dv.values;
+            int numPoints = dv.dates.length;
+            switch (this) {
+                case Speed -> { // replace with velocity modulus
+                    return new DatesValues(dv.dates, new float[][]{modulus(values, numPoints)});
+                }
+                case Kelvin -> { // transform to Kelvin
+                    for (int i = 0; i < numPoints; i++) {
+                        float v = values[0][i];
+                        if (v != YAxis.BLANK)
+                            values[0][i] = (float) (v * eV2K);
+                    }
+                    return dv;
+                }
+                case Modulus -> { // prepend column with modulus
+                    float[][] modValues = new float[values.length + 1][];
+                    modValues[0] = modulus(values, numPoints);
+                    System.arraycopy(values, 0, modValues, 1, values.length);
+                    return new DatesValues(dv.dates, modValues);
+                }
+                default -> {
+                    return dv;
+                }
+            }
+        }
+
+        private static float[] modulus(float[][] values, int numPoints) {
+            float[] mod = new float[numPoints];
+            for (int i = 0; i < numPoints; i++) {
+                float x = values[0][i];
+                float y = values[1][i];
+                float z = values[2][i];
+                if (x == YAxis.BLANK || y == YAxis.BLANK || z == YAxis.BLANK)
+                    mod[i] = YAxis.BLANK;
+                else
+                    mod[i] = (float) Math.sqrt(x * x + y * y + z * z);
+            }
+            return mod;
+        }
+
     }
 
-    private static List<BandData> read(URI uri) throws IOException {
+    private static void read(URI uri) throws IOException {
         CdfContent cdf = new CdfContent(new CdfReader(new File(uri)));
 
         LinkedListMultimap<String, String> globalAttrs = LinkedListMultimap.create();
@@ -96,36 +136,58 @@ public class CDFReader {
         }
 
         long[] dates = readEpoch(variables, uri);
-        List<BandData> ret = new ArrayList<>();
+        if (dates.length == 0) // empty file
+            return;
 
+        List<CDFBands> cdfBands = new ArrayList<>();
         for (CDFVariable v : variables) {
             if ("data".equals(v.attributes.get("VAR_TYPE"))) {
                 if (!"SWA-PAS".equals(instrumentName) || SWAIncluded.contains(v.variable.getName()))
-                    ret.addAll(readBandData(v, dates, instrumentName, variables, uri));
+                    cdfBands.add(prepare(v, dates, instrumentName, variables, uri));
             }
         }
-        return ret;
-    }
 
-    private static List<BandData> readBandData(CDFVariable v, long[] dates, String instrumentName, CDFVariable[] variables, URI uri) throws IOException {
-        CDFData data = readData(v, dates, instrumentName, variables, uri);
-        int numAxes = data.datesValues.values.length;
+        // filled on the EDT, queued before the chunks of the tasks
+        List<Band[]> bands = new ArrayList<>(cdfBands.size());
+        for (CDFBands cb : cdfBands)
+            bands.add(new Band[cb.bandTypes.length]);
+        List<Band> added = new ArrayList<>();
+        EventQueue.invokeLater(() -> {
+            for (int j = 0; j < bands.size(); j++) {
+                BandType[] bandTypes = cdfBands.get(j).bandTypes;
+                Band[] b = bands.get(j);
+                for (int i = 0; i < b.length; i++) {
+                    Band band = Band.createFromType(bandTypes[i]);
+                    if (!TimelineLayers.get().contains(band))
+                        added.add(band);
+                    Timelines.getLayers().add(band);
+                    b[i] = band;
+                }
+            }
+            DrawController.setSelectedInterval(dates[0], dates[dates.length - 1]);
+        });
 
-        List<BandData> ret = new ArrayList<>(numAxes);
-        for (int i = 0; i < numAxes; i++) {
-            String name = instrumentName + ' ' + data.labels[i];
-            JSONObject jo = new JSONObject().
-                    put("baseUrl", "").
-                    put("unitLabel", data.units).
-                    put("name", name).
-                    put("range", new JSONArray().put(data.scaleMin).put(data.scaleMax)).
-                    put("scale", data.scaleType).
-                    put("label", name).
-                    put("group", "CDF");
-            //put("bandCacheType", "BandCacheAll");
-            ret.add(new BandData(new BandType(jo), data.datesValues.dates, data.datesValues.values[i]));
+        AtomicBoolean failed = new AtomicBoolean();
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>(cdfBands.size());
+        for (int i = 0; i < cdfBands.size(); i++) {
+            CDFBands cb = cdfBands.get(i);
+            Band[] b = bands.get(i);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                try {
+                    readData(cb, b, dates, failed);
+                } catch (IOException | RuntimeException e) {
+                    failed.set(true); // stops the other variables
+                    throw e;
+                }
+                return null;
+            }));
+        }
+        try {
+            ForkJoinTask.invokeAll(tasks);
+        } catch (RuntimeException e) {
+            EventQueue.invokeLater(() -> added.forEach(Timelines.getLayers()::remove));
+            throw e;
         }
-        return ret;
     }
 
     private static long[] readEpoch(CDFVariable[] variables, URI uri) throws IOException {
@@ -139,8 +201,15 @@ public class CDFReader {
         if (epoch == null)
             throw new IOException("Epoch not found: " + uri);
 
+        Variable v = epoch.variable;
+        DataType dataType = v.getDataType();
+        if (dataType == DataType.TIME_TT2000)
+            return readTT2000(v, uri);
+        if (dataType == DataType.EPOCH)
+            return readEpochMillis(v, uri);
+
         List<String> timeFillVal = List.of("9999-12-31T23:59:59.999999999", "0000-01-01T00:00:00.000000000", epoch.attributes.get("FILLVAL")); // FILLVAL may be duplicate
-        String[][] epochVals = readCDFVariableString(epoch.variable);
+        String[][] epochVals = readCDFVariableString(v);
         // dumpVariableAttrs(epoch);
         // dumpValues(epochVals);
 
@@ -156,7 +225,46 @@ public class CDFReader {
         return dates;
     }
 
-    private static CDFData readData(CDFVariable data, long[] dates, String instrumentName, CDFVariable[] variables, URI uri) throws IOException {
+    // nanoseconds since J2000 TT, converted with the leap second table of jcdf
+    private static long[] readTT2000(Variable v, URI uri) throws IOException {
+        int count = v.getRecordCount();
+        long[] raw = (long[]) v.createRawValueArray();
+        long[] dates = new long[count];
+        for (int j = 0; j < count; j++) {
+            v.readRawRecord(j, raw);
+            dates[j] = raw[0];
+        }
+
+        TtScaler[] scalers = TtScaler.getTtScalers();
+        int index = scalers.length - 1;
+        for (int j = 0; j < count; j++) {
+            long tt2k = dates[j];
+            if (tt2k == Long.MIN_VALUE || tt2k == Long.MIN_VALUE + 1) // refuse to fill timestamps
+                throw new IOException("Filled timestamp (" + tt2k + "): " + uri);
+            long tt2kMillis = Math.floorDiv(tt2k, 1000000L);
+            index = TtScaler.getScalerIndex(tt2kMillis, scalers, index);
+            dates[j] = (long) Math.floor(scalers[index].tt2kToUnixMillis(tt2kMillis));
+        }
+        return dates;
+    }
+
+    // milliseconds since 0000-01-01
+    private static long[] readEpochMillis(Variable v, URI uri) throws IOException {
+        int count = v.getRecordCount();
+        double[] raw = (double[]) v.createRawValueArray();
+        long[] dates = new long[count];
+        for (int j = 0; j < count; j++) {
+            v.readRawRecord(j, raw);
+            double epoch = raw[0];
+            if (!(epoch > 0) || epoch > 3e14) // refuse to fill timestamps, -1e31 or past year 9999
+                throw new IOException("Filled timestamp (" + epoch + "): " + uri);
+            dates[j] = (long) epoch + EpochFormatter.AD0_UNIX_MILLIS;
+        }
+        return dates;
+    }
+
+    // checks a data variable and describes its bands
+    private static CDFBands prepare(CDFVariable data, long[] dates, String instrumentName, CDFVariable[] variables, URI uri) throws IOException {
         String variableName = data.variable.getName();
 
         Map<String, String> dataAttrs = data.attributes;
@@ -173,12 +281,13 @@ public class CDFReader {
         }
 
         float fillVal = Float.parseFloat(dataFillVal);
-        float[][] values = readCDFVariableFloat(data.variable, fillVal);
-        // dumpVariableAttrs(data);
-        // dumpValues(dataVals);
+        Variable variable = data.variable;
+        String dataType = variable.getDataType().toString();
+        if (!Set.of("REAL4", "FLOAT", "REAL8", "DOUBLE").contains(dataType))
+            throw new IOException("Unimplemented data type: " + dataType);
 
-        int numAxes = values.length;
-        int numPoints = values[0].length;
+        int numAxes = Array.getLength(variable.createRawValueArray());
+        int numPoints = variable.getRecordCount();
         if (dates.length != numPoints) {
             throw new IOException("Inconsistent lengths of epoch (" + dates.length + ") and data (" + numPoints + ") variables: " + uri);
         }
@@ -229,118 +338,99 @@ public class CDFReader {
             default -> Float.parseFloat(dataScaleMax);
         };
 
-        DatesValues rebinned = rebin(new DatesValues(dates, values));
-        if ("SWA-PAS".equals(instrumentName) && "V_RTN".equals(variableName)) { // replace with velocity modulus
-            int rNumPoints = rebinned.dates.length;
-            float[][] rValues = rebinned.values;
-
-            float[][] modValues = new float[1][rNumPoints];
-            for (int i = 0; i < rNumPoints; i++) {
-                float x = rValues[0][i];
-                float y = rValues[1][i];
-                float z = rValues[2][i];
-                if (x == YAxis.BLANK || y == YAxis.BLANK || z == YAxis.BLANK)
-                    modValues[0][i] = YAxis.BLANK;
-                else
-                    modValues[0][i] = (float) Math.sqrt(x * x + y * y + z * z);
-            }
-
-            rebinned = new DatesValues(rebinned.dates, modValues);
+        Transform transform = Transform.None;
+        if ("SWA-PAS".equals(instrumentName) && "V_RTN".equals(variableName)) {
+            transform = Transform.Speed;
             labels = new String[]{"Speed"};
         } else if ("SWA-PAS".equals(instrumentName) && "N".equals(variableName)) { // show log
             dataUnits = "cm^-3";
             dataScaleTyp = "logarithmic";
-        } else if ("SWA-PAS".equals(instrumentName) && "T".equals(variableName)) { // transform to Kelvin + show log
-            int rNumPoints = rebinned.dates.length;
-            float[][] rValues = rebinned.values;
-            for (int i = 0; i < rNumPoints; i++) {
-                float v = rValues[0][i];
-                if (v != YAxis.BLANK)
-                    rValues[0][i] = (float) (v * eV2K);
-            }
+        } else if ("SWA-PAS".equals(instrumentName) && "T".equals(variableName)) { // show log
+            transform = Transform.Kelvin;
             dataUnits = "K";
             dataScaleTyp = "logarithmic";
-        } else if ("MAG".equals(instrumentName) && variableName.startsWith("B_")) { // prepend column with modulus
-            int rNumPoints = rebinned.dates.length;
-            float[][] rValues = rebinned.values;
-
-            int rNumAxes = rValues.length;
-            float[][] modValues = new float[rNumAxes + 1][];
-            modValues[0] = new float[rNumPoints];
-            for (int i = 0; i < rNumPoints; i++) {
-                float x = rValues[0][i];
-                float y = rValues[1][i];
-                float z = rValues[2][i];
-                if (x == YAxis.BLANK || y == YAxis.BLANK || z == YAxis.BLANK)
-                    modValues[0][i] = YAxis.BLANK;
-                else
-                    modValues[0][i] = (float) Math.sqrt(x * x + y * y + z * z);
-            }
-            System.arraycopy(rValues, 0, modValues, 1, rNumAxes);
-            rebinned = new DatesValues(rebinned.dates, modValues);
-
-            String[] modLabels = new String[rNumAxes + 1];
+        } else if ("MAG".equals(instrumentName) && variableName.startsWith("B_")) {
+            transform = Transform.Modulus;
+            String[] modLabels = new String[numAxes + 1];
             modLabels[0] = variableName + ' ' + "|B|";
-            System.arraycopy(labels, 0, modLabels, 1, rNumAxes);
+            System.arraycopy(labels, 0, modLabels, 1, numAxes);
             labels = modLabels;
         }
-        return new CDFData(rebinned, scaleMin, scaleMax, dataScaleTyp, dataUnits, labels);
-    }
-
-    private static class Bin {
 
-        private int n = 0;
-        private float mean = 0;
-
-        void add(float val) {
-            if (val != YAxis.BLANK) {
-                n++;
-                mean += (val - mean) / n;
-            }
+        BandType[] bandTypes = new BandType[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            String name = instrumentName + ' ' + labels[i];
+            JSONObject jo = new JSONObject().
+                    put("baseUrl", "").
+                    put("unitLabel", dataUnits).
+                    put("name", name).
+                    put("range", new JSONArray().put(scaleMin).put(scaleMax)).
+                    put("scale", dataScaleTyp).
+                    put("label", name).
+                    put("group", "CDF");
+            //put("bandCacheType", "BandCacheAll");
+            bandTypes[i] = new BandType(jo);
         }
+        return new CDFBands(variable, fillVal, numAxes, transform, bandTypes);
+    }
 
-        float getMean() {
-            return n == 0 ? YAxis.BLANK : mean;
+    private static void readData(CDFBands data, Band[] bands, long[] dates, AtomicBoolean failed) throws IOException {
+        Variable variable = data.variable;
+        int numPoints = dates.length;
+        // chunks end at bin boundaries, so that bins are not split
+        int from = 0;
+        while (from < numPoints && !failed.get()) {
+            int to = Math.min(from + CHUNK_RECORDS, numPoints);
+            while (to < numPoints && dates[to] / REBIN_FACTOR == dates[to - 1] / REBIN_FACTOR)
+                to++;
+
+            float[][] values = readCDFVariableFloat(variable, data.fillVal, data.numAxes, from, to);
+            DatesValues rebinned = data.transform.apply(rebin(Arrays.copyOfRange(dates, from, to), values));
+            EventQueue.invokeLater(() -> {
+                for (int i = 0; i < bands.length; i++)
+                    bands[i].addToCache(rebinned.values[i], rebinned.dates);
+            });
+            from = to;
         }
-
     }
 
-    private static DatesValues rebin(DatesValues datesValues) {
-        long[] dates = datesValues.dates;
-        float[][] values = datesValues.values;
+    private static final long REBIN_FACTOR = TimeUtils.MINUTE_IN_MILLIS;
+
+    // running mean per bin
+    private static DatesValues rebin(long[] dates, float[][] values) {
         int numAxes = values.length;
-        int numPoints = values[0].length;
+        int numPoints = dates.length;
         if (numPoints == 0)
-            return datesValues;
+            return new DatesValues(dates, values);
 
-        long rebinFactor = TimeUtils.MINUTE_IN_MILLIS;
-        long startBin = dates[0] / rebinFactor;
-        long endBin = dates[dates.length - 1] / rebinFactor;
+        long startBin = dates[0] / REBIN_FACTOR;
+        long endBin = dates[numPoints - 1] / REBIN_FACTOR;
         int numBins = (int) (endBin - startBin + 1);
 
-        Bin[][] bins = new Bin[numAxes][numBins];
-        for (int j = 0; j < numAxes; j++) {
-            for (int i = 0; i < numBins; i++) {
-                bins[j][i] = new Bin();
-            }
-        }
-        for (int j = 0; j < numAxes; j++) {
-            for (int i = 0; i < numPoints; i++) {
-                bins[j][(int) (dates[i] / rebinFactor - startBin)].add(values[j][i]);
-            }
-        }
-
         long[] datesBinned = new long[numBins];
         for (int i = 0; i < numBins; i++) {
-            datesBinned[i] = (startBin + i) * rebinFactor;
+            datesBinned[i] = (startBin + i) * REBIN_FACTOR;
         }
+
         float[][] valuesBinned = new float[numAxes][numBins];
+        int[] n = new int[numBins];
         for (int j = 0; j < numAxes; j++) {
+            float[] in = values[j];
+            float[] mean = valuesBinned[j];
+            Arrays.fill(n, 0);
+            for (int i = 0; i < numPoints; i++) {
+                float val = in[i];
+                if (val != YAxis.BLANK) {
+                    int bin = (int) (dates[i] / REBIN_FACTOR - startBin);
+                    n[bin]++;
+                    mean[bin] += (val - mean[bin]) / n[bin];
+                }
+            }
             for (int i = 0; i < numBins; i++) {
-                valuesBinned[j][i] = bins[j][i].getMean();
+                if (n[i] == 0)
+                    mean[i] = YAxis.BLANK;
             }
         }
-
         return new DatesValues(datesBinned, valuesBinned);
     }
 
@@ -364,47 +454,28 @@ public class CDFReader {
         return ret;
     }
 
-    private static float fillFloat(Object o, Float fillVal) {
-        float val = (float) o;
+    private static float fill(float val, float fillVal) {
         return !Float.isFinite(val) || val == fillVal ? YAxis.BLANK : val;
     }
 
-    private static float fillDouble(Object o, Float fillVal) {
-        float val = (float) ((double) o);
-        return !Float.isFinite(val) || val == fillVal ? YAxis.BLANK : val;
-    }
-
-    private static float[][] readCDFVariableFloat(Variable v, Float fillVal /* avoid autoboxing */) throws IOException {
-        DataType dataType = v.getDataType();
-        BiFunction<Object, Float, Float> fillFunc = switch (dataType.toString()) { // next version: patterns in switch
-            case "REAL4", "FLOAT" -> CDFReader::fillFloat;
-            case "REAL8", "DOUBLE" -> CDFReader::fillDouble;
-            default -> throw new IOException("Unimplemented data type: " + dataType);
-        };
-
+    // records [from, to) of a REAL4 or REAL8 variable, transposed to axes
+    private static float[][] readCDFVariableFloat(Variable v, float fillVal, int numAxes, int from, int to) throws IOException {
+        float[][] ret = new float[numAxes][to - from];
         Object abuf = v.createRawValueArray();
-        int numPoints = v.getRecordCount();
-
-        v.readRawRecord(0, abuf); // read first record to get number of axes
-        int numAxes = Array.getLength(abuf);
-
-        float[][] ret = new float[numAxes][numPoints];
-        if (numPoints == 0)
-            return ret;
-
-        for (int i = 0; i < numAxes; i++)
-            ret[i][0] = fillFunc.apply(dataType.getScalar(abuf, i), fillVal);
-
-        for (int j = 1; j < numPoints; j++) {
-            v.readRawRecord(j, abuf);
-            int len = Array.getLength(abuf);
-            if (len != numAxes)
-                throw new IOException("Inconsistent number of elements: expected " + numAxes + ", got " + len);
-
-            for (int i = 0; i < numAxes; i++)
-                ret[i][j] = fillFunc.apply(dataType.getScalar(abuf, i), fillVal);
-        }
-
+        if (abuf instanceof float[] fbuf) {
+            for (int j = from; j < to; j++) {
+                v.readRawRecord(j, fbuf);
+                for (int i = 0; i < numAxes; i++)
+                    ret[i][j - from] = fill(fbuf[i], fillVal);
+            }
+        } else if (abuf instanceof double[] dbuf) {
+            for (int j = from; j < to; j++) {
+                v.readRawRecord(j, dbuf);
+                for (int i = 0; i < numAxes; i++)
+                    ret[i][j - from] = fill((float) dbuf[i], fillVal);
+            }
+        } else
+            throw new IOException("Unimplemented data type: " + v.getDataType());
         return ret;
     }
 /*
@@ -1,5 +1,6 @@
 package org.helioviewer.jhv.timelines.chart;
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Cursor;
 import java.awt.Dimension;
@@ -19,6 +20,8 @@ import java.awt.event.MouseWheelListener;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.List;
 
 import javax.swing.JComponent;
 import javax.swing.event.MouseInputListener;
@@ -49,6 +52,16 @@ public class ChartDrawGraphPane extends JComponent implements MouseInputListener
 
     private BufferedImage screenImage;
 
+    // layers which can be cached are drawn into their own image, redrawn only when their stamp changes
+    private record LayerImage(BufferedImage image, long stamp) {
+    }
+
+    private final HashMap<TimelineLayer, LayerImage> layerImages = new HashMap<>();
+    private int layersCached;
+    private int layersDrawn;
+    private double frameMillis; // moving averages
+    private double redrawMillis;
+
     private final Stroke boldStroke = new BasicStroke(2);
     private final Stroke thinStroke = new BasicStroke(0.5f);
     private Point mousePosition;
@@ -69,6 +82,8 @@ public class ChartDrawGraphPane extends JComponent implements MouseInputListener
         addMouseWheelListener(this);
         addComponentListener(this);
         DrawController.addDrawListener(this);
+        DrawController.setFrameStats(() -> String.format("Chart frame %.2fms, redraw %.2fms, %d of %d layers from cache",
+                frameMillis, redrawMillis, layersCached, layersCached + layersDrawn));
         DrawController.setGraphInformation(new Rectangle(getWidth(), getHeight()));
     }
 
@@ -114,6 +129,7 @@ public class ChartDrawGraphPane extends JComponent implements MouseInputListener
 
     @Override
     protected void paintComponent(Graphics g1) {
+        long start = System.nanoTime();
         super.paintComponent(g1);
         Rectangle graphArea = DrawController.getGraphArea();
 
@@ -121,6 +137,7 @@ public class ChartDrawGraphPane extends JComponent implements MouseInputListener
         if (redrawGraphArea || axisHighlightChanged) {
             redrawGraphArea = false;
             redrawGraph(graphArea);
+            redrawMillis = 0.8 * redrawMillis + 0.2 * (System.nanoTime() - start) / 1e6;
         }
 
         Graphics2D g = (Graphics2D) g1;
@@ -132,6 +149,7 @@ public class ChartDrawGraphPane extends JComponent implements MouseInputListener
             drawMovieLine(g);
             drawTimelineValues(g, graphArea, DrawController.selectedAxis);
         }
+        frameMillis = 0.8 * frameMillis + 0.2 * (System.nanoTime() - start) / 1e6;
     }
 
     private void redrawGraph(Rectangle graphArea) {
@@ -151,6 +169,7 @@ public class ChartDrawGraphPane extends JComponent implements MouseInputListener
 
             Graphics2D fullG = screenImage.createGraphics();
             drawBackground(fullG, screenImage.getWidth(), screenImage.getHeight());
+            Graphics2D imageG = (Graphics2D) fullG.create();
 
             fullG.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
             fullG.setFont(DrawConstants.font);
@@ -158,15 +177,56 @@ public class ChartDrawGraphPane extends JComponent implements MouseInputListener
 
             Graphics2D plotG = (Graphics2D) fullG.create();
             plotG.setClip(graphArea);
-            drawData(fullG, plotG, graphArea, DrawController.selectedAxis);
+            drawData(fullG, plotG, imageG, graphArea, DrawController.selectedAxis);
 
             plotG.dispose();
+            imageG.dispose();
             fullG.dispose();
         }
     }
 
-    private void drawData(Graphics2D fullG, Graphics2D plotG, Rectangle graphArea, TimeAxis xAxis) {
-        TimelineLayers.get().forEach(layer -> layer.draw(plotG, graphArea, xAxis, mousePosition));
+    private void drawData(Graphics2D fullG, Graphics2D plotG, Graphics2D imageG, Rectangle graphArea, TimeAxis xAxis) {
+        List<TimelineLayer> layers = TimelineLayers.get();
+        layerImages.keySet().retainAll(layers);
+        layersCached = 0;
+        layersDrawn = 0;
+
+        int width = screenImage.getWidth();
+        int height = screenImage.getHeight();
+        for (TimelineLayer layer : layers) {
+            if (!layer.isEnabled()) // its cached image may be stale
+                continue;
+
+            long stamp = layer.getDrawStamp();
+            if (stamp < 0) {
+                layer.draw(plotG, graphArea, xAxis, mousePosition);
+                continue;
+            }
+
+            LayerImage li = layerImages.get(layer);
+            if (li != null && li.stamp == stamp && li.image.getWidth() == width && li.image.getHeight() == height) {
+                layersCached++;
+            } else {
+                layersDrawn++;
+                BufferedImage image = li != null && li.image.getWidth() == width && li.image.getHeight() == height ?
+                        li.image :
+                        GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+                Graphics2D layerG = image.createGraphics();
+                layerG.setComposite(AlphaComposite.Clear);
+                layerG.fillRect(0, 0, width, height);
+                layerG.setComposite(AlphaComposite.SrcOver);
+                layerG.setRenderingHints(fullG.getRenderingHints());
+                layerG.setFont(fullG.getFont());
+                layerG.setTransform(fullG.getTransform());
+                layerG.setClip(graphArea);
+                layer.draw(layerG, graphArea, xAxis, mousePosition);
+                layerG.dispose();
+
+                li = new LayerImage(image, stamp);
+                layerImages.put(layer, li);
+            }
+            imageG.drawImage(li.image, 0, 0, null);
+        }
         drawLabels(fullG, graphArea, xAxis);
     }
 
@@ -6,6 +6,7 @@ import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.function.Supplier;
 
 import javax.swing.Timer;
 
@@ -282,6 +283,10 @@ public class DrawController implements LazyComponent, StatusReceiver, JHVEventLi
         optionsPanel.setStatus(status);
     }
 
+    public static void setFrameStats(Supplier<String> stats) {
+        optionsPanel.setFrameStats(stats);
+    }
+
     public static void drawRequest() {
         toDraw = true;
     }
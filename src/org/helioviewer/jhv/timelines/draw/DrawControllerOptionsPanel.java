@@ -1,7 +1,9 @@
 package org.helioviewer.jhv.timelines.draw;
 
 import java.awt.BorderLayout;
+import java.awt.event.MouseEvent;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
@@ -20,6 +22,7 @@ class DrawControllerOptionsPanel extends JPanel {
     private final JComboBox<ZoomItem> zoomCombo;
     private final JideToggleButton lockButton;
     private final JLabel statusLabel;
+    private Supplier<String> frameStats;
 
     private enum ZOOM {
         CUSTOM, All, Year, Month, Day, Hour, Carrington, Movie
@@ -62,6 +65,17 @@ class DrawControllerOptionsPanel extends JPanel {
         add(zoomCombo, BorderLayout.LINE_END);
     }
 
+    // the tooltip text is built only when it is shown
+    void setFrameStats(Supplier<String> stats) {
+        frameStats = stats;
+        setToolTipText(""); // registers with the ToolTipManager
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        return frameStats == null ? null : frameStats.get();
+    }
+
     private record ZoomItem(ZOOM zoom, long number) {
         @Override
         public String toString() {
@@ -6,9 +6,8 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.DataBuffer;
-import java.awt.image.IndexColorModel;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.concurrent.Callable;
 
@@ -26,7 +25,6 @@ import org.helioviewer.jhv.timelines.draw.TimeAxis;
 import org.helioviewer.jhv.timelines.draw.YAxis;
 import org.helioviewer.jhv.timelines.draw.YAxis.YAxisPositiveIdentityScale;
 import org.helioviewer.jhv.threads.EventQueueCallbackExecutor;
-import org.helioviewer.jhv.view.DecodeExecutor;
 import org.helioviewer.jhv.view.j2k.J2KViewCallisto;
 import org.json.JSONObject;
 
@@ -42,7 +40,8 @@ public class RadioData extends AbstractTimelineLayer {
     private static final int MAX_AMOUNT_OF_DAYS = 3;
     private static final int DAYS_IN_CACHE = MAX_AMOUNT_OF_DAYS + 4;
 
-    private static final Cache<Long, RadioJ2KData> cache = Caffeine.newBuilder().maximumSize(DAYS_IN_CACHE)
+    // removals on the calling thread, the EDT
+    private static final Cache<Long, RadioJ2KData> cache = Caffeine.newBuilder().maximumSize(DAYS_IN_CACHE).executor(Runnable::run)
             .removalListener((Long k, RadioJ2KData v, RemovalCause c) -> {
                 if (v != null)
                     v.removeData();
@@ -50,7 +49,6 @@ public class RadioData extends AbstractTimelineLayer {
     private static final HashSet<Long> downloading = new HashSet<>();
 
     private final RadioOptionsPanel optionsPanel;
-    private static IndexColorModel colorModel;
 
     public RadioData(JSONObject jo) {
         String cm = "Spectral";
@@ -60,7 +58,7 @@ public class RadioData extends AbstractTimelineLayer {
                 cm = "Spectral";
         }
 
-        colorModel = createIndexColorModelFromLUT(LUT.get(cm));
+        RadioTiles.setColors(LUT.get(cm).lut8());
         optionsPanel = new RadioOptionsPanel(cm);
         setEnabled(false);
     }
@@ -70,23 +68,13 @@ public class RadioData extends AbstractTimelineLayer {
         jo.put("colormap", optionsPanel.getColormap());
     }
 
-    private static IndexColorModel createIndexColorModelFromLUT(LUT lut2) {
-        int[] source = lut2.lut8();
-        return new IndexColorModel(8, source.length, source, 0, false, -1, DataBuffer.TYPE_BYTE);
-    }
-
     static void setLUT(LUT lut) {
-        colorModel = createIndexColorModelFromLUT(lut);
-        cache.asMap().values().forEach(data -> data.changeColormap(colorModel));
-        DrawController.drawRequest();
-    }
-
-    static IndexColorModel getColorModel() {
-        return colorModel;
+        RadioTiles.setColors(lut.lut8());
     }
 
     private static void clearCache() {
         cache.invalidateAll();
+        RadioTiles.clear();
     }
 
     private void requestAndOpenIntervals(long start) {
@@ -113,8 +101,7 @@ public class RadioData extends AbstractTimelineLayer {
         public RadioJ2KData call() throws Exception {
             APIRequest req = new APIRequest("ROB", APIRequest.CallistoID, date, date, APIRequest.CADENCE_ALL);
             URI uri = new URI(req.toFileRequest());
-            DecodeExecutor executor = new DecodeExecutor();
-            return new RadioJ2KData(new J2KViewCallisto(executor, req, uri), req.startTime(), executor);
+            return new RadioJ2KData(new J2KViewCallisto(req, uri), req.startTime());
         }
 
     }
@@ -136,7 +123,7 @@ public class RadioData extends AbstractTimelineLayer {
         public void onSuccess(RadioJ2KData result) {
             done();
             cache.put(date, result);
-            result.requestData(DrawController.selectedAxis);
+            DrawController.drawRequest();
         }
 
         @Override
@@ -207,7 +194,6 @@ public class RadioData extends AbstractTimelineLayer {
     @Override
     public void fetchData(TimeAxis selectedAxis) {
         if (enabled && selectedAxis.end() - selectedAxis.start() <= TimeUtils.DAY_IN_MILLIS * MAX_AMOUNT_OF_DAYS) {
-            cache.asMap().values().forEach(data -> data.requestData(selectedAxis));
             requestAndOpenIntervals(selectedAxis.start());
         }
     }
@@ -219,7 +205,9 @@ public class RadioData extends AbstractTimelineLayer {
 
         if (timeAxis.end() - timeAxis.start() <= TimeUtils.DAY_IN_MILLIS * MAX_AMOUNT_OF_DAYS) {
             drawString(g, graphArea, timeAxis, "No data available");
-            cache.asMap().values().forEach(data -> data.draw(g, graphArea, timeAxis));
+            HashMap<RadioTiles.Key, Callable<RadioTiles.Tile>> wanted = new HashMap<>();
+            cache.asMap().values().forEach(data -> data.draw(g, graphArea, timeAxis, wanted));
+            RadioTiles.request(wanted);
         } else {
             String text1 = "The selected interval is too big.";
             Rectangle2D r1 = g.getFontMetrics().getStringBounds(text1, g);
@@ -248,9 +236,11 @@ public class RadioData extends AbstractTimelineLayer {
         yAxis.reset(400, 20);
     }
 
-    static void drawString(Graphics2D g, Rectangle ga, TimeAxis xAxis, String text) {
-        int dx0 = xAxis.value2pixel(ga.x, ga.width, xAxis.start());
-        int dx1 = xAxis.value2pixel(ga.x, ga.width, xAxis.end());
+    private static void drawString(Graphics2D g, Rectangle ga, TimeAxis xAxis, String text) {
+        drawString(g, ga, xAxis.value2pixel(ga.x, ga.width, xAxis.start()), xAxis.value2pixel(ga.x, ga.width, xAxis.end()), text);
+    }
+
+    static void drawString(Graphics2D g, Rectangle ga, int dx0, int dx1, String text) {
         int dwidth = dx1 - dx0;
         g.setColor(Color.GRAY);
         g.fillRect(dx0, ga.y, dwidth, ga.height);
@@ -2,45 +2,34 @@ package org.helioviewer.jhv.timelines.radio;
 
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
-import java.awt.image.BufferedImage;
-import java.awt.image.ColorModel;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
-import org.helioviewer.jhv.Log;
-import org.helioviewer.jhv.base.Region;
-import org.helioviewer.jhv.base.image.NIOImageFactory;
 import org.helioviewer.jhv.imagedata.ImageBuffer;
-import org.helioviewer.jhv.imagedata.ImageData;
-import org.helioviewer.jhv.imagedata.ImageDataHandler;
+import org.helioviewer.jhv.math.MathUtils;
 import org.helioviewer.jhv.metadata.XMLMetaDataContainer;
 import org.helioviewer.jhv.time.TimeUtils;
-import org.helioviewer.jhv.timelines.draw.DrawController;
 import org.helioviewer.jhv.timelines.draw.TimeAxis;
-import org.helioviewer.jhv.view.DecodeExecutor;
 import org.helioviewer.jhv.view.j2k.J2KViewCallisto;
-import org.helioviewer.jhv.view.j2k.image.ResolutionSet;
+import org.helioviewer.jhv.view.j2k.image.ResolutionSet.ResolutionLevel;
+import org.helioviewer.jhv.view.j2k.image.SubImage;
 
-class RadioJ2KData implements ImageDataHandler {
+// The spectrogram of a day, drawn from the tiles of the frequency bands at the resolution level
+// matching the pixels covered by the day
+class RadioJ2KData {
 
-    private J2KViewCallisto view;
-    private DecodeExecutor executor;
+    private final J2KViewCallisto view;
+    private final long day;
 
     private final long startDate;
     private final long endDate;
     private final double startFreq;
     private final double endFreq;
-    private final int j2kWidth;
-    private final int j2kHeight;
     private final boolean willDraw;
 
-    private BufferedImage bufferedImage;
-    private Region region;
-
-    RadioJ2KData(J2KViewCallisto _view, long start, DecodeExecutor _executor) throws Exception {
+    RadioJ2KData(J2KViewCallisto _view, long start) throws Exception {
         try {
-            ResolutionSet.ResolutionLevel resLevel = _view.getResolutionLevel(0, 0);
-            j2kWidth = resLevel.width;
-            j2kHeight = resLevel.height;
-
             XMLMetaDataContainer hvMetaData = new XMLMetaDataContainer(_view.getXMLMetaData());
             endFreq = hvMetaData.getRequiredDouble("STARTFRQ");
             startFreq = hvMetaData.getRequiredDouble("END-FREQ");
@@ -48,162 +37,77 @@ class RadioJ2KData implements ImageDataHandler {
             endDate = TimeUtils.parse(hvMetaData.getRequiredString("DATE-END"));
 
             view = _view;
-            view.setDataHandler(this);
-            executor = _executor;
+            day = start;
             willDraw = startDate == start; // didn't get closest
         } catch (Exception e) {
-            _executor.abolish();
             _view.abolish();
             throw e;
         }
     }
 
     void removeData() {
-        if (view != null) {
-            executor.abolish();
-            view.setDataHandler(null);
-            view.abolish();
-            executor = null;
-            view = null;
-        }
-        NIOImageFactory.free(bufferedImage);
+        RadioTiles.removeDay(day);
+        view.abolish();
     }
 
-    @Override
-    public void handleData(ImageData imageData) {
-        if (bufferedImage != null) {
-            Log.warn("Already handled data");
-            return;
-        }
-        ImageBuffer imageBuffer = imageData.getImageBuffer();
-        int w = imageBuffer.width;
-        int h = imageBuffer.height;
-        if (w < 1 || h < 1) {
-            Log.error("width: " + w + " height: " + h);
-            return;
-        }
-
-        region = imageData.getRegion();
-        bufferedImage = NIOImageFactory.createIndexed(imageBuffer.buffer, w, h, RadioData.getColorModel());
-        DrawController.drawRequest();
+    // Decodes the band of the resolution level, on the workers
+    private Callable<RadioTiles.Tile> decoder(int band, ResolutionLevel res) {
+        return () -> {
+            int y0 = band * res.height / RadioTiles.NUM_BANDS;
+            int y1 = (band + 1) * res.height / RadioTiles.NUM_BANDS;
+            SubImage subImage = new SubImage(0, y0, res.width, y1 - y0, res.width, res.height);
+            ImageBuffer data = view.decode(subImage, res.level);
+            return new RadioTiles.Tile(data,
+                    subImage.x / (double) res.width, (subImage.x + data.width) / (double) res.width,
+                    subImage.y / (double) res.height, (subImage.y + data.height) / (double) res.height);
+        };
     }
 
-    void requestData(TimeAxis xAxis) {
-        if (willDraw && view != null) {
-            Rectangle roi = getROI(xAxis);
-            if (decodingNeeded && roi.width > 0 && roi.height > 0) {
-                view.setRegion(roi);
-                view.decode(null, 1, last_resolution);
-            }
-        }
-    }
-
-    private float computeResolution(int height, TimeAxis xAxis) {
-        double pixPerTime = j2kWidth / (double) (endDate - startDate);
-        int width = (int) ((xAxis.end() - xAxis.start()) * pixPerTime + 0.5);
-        double pct = Math.min(width / (double) j2kWidth, 1);
-
-        double visibleImagePercentage = pct * height / j2kHeight;
-        if (visibleImagePercentage <= 0.03125)
-            return 1;
-        if (visibleImagePercentage <= 0.0625)
-            return 0.5f;
-        if (visibleImagePercentage <= 0.125)
-            return 0.25f;
-        if (visibleImagePercentage <= 0.25)
-            return 0.125f;
-        if (visibleImagePercentage <= 0.5)
-            return 0.0625f;
-        return 0.03125f;
+    private double freqFraction(double freq) {
+        return MathUtils.clip((freq - startFreq) / (endFreq - startFreq), 0, 1);
     }
 
-    private boolean first = true;
-    private boolean decodingNeeded = false;
-    private float last_resolution = -1;
-    private long last_padded_start = -1;
-    private long last_padded_end = -1;
-    private int last_y0 = -1;
-    private int last_height = -1;
-
-    private Rectangle getROI(TimeAxis xAxis) {
-        double visibleStartFreq = Math.max(startFreq, RadioData.yAxis.start());
-        double visibleEndFreq = Math.min(endFreq, RadioData.yAxis.end());
-
-        double pixPerFreq = j2kHeight / (endFreq - startFreq);
-        int y0 = (int) ((endFreq - visibleEndFreq) * pixPerFreq + 0.5);
-        int height = (int) ((visibleEndFreq - visibleStartFreq) * pixPerFreq + 0.5);
-
-        long visibleStart = Math.max(startDate, xAxis.start());
-        long visibleEnd = Math.min(endDate, xAxis.end());
-        float resolution = computeResolution(height, xAxis);
-
-        if (last_resolution == resolution && y0 == last_y0 && height == last_height && visibleStart >= last_padded_start && visibleEnd <= last_padded_end) {
-            decodingNeeded = false;
-            return new Rectangle(0, 0, -1, -1);
-        }
-        decodingNeeded = true;
-
-        long ilen = xAxis.end() - xAxis.start();
-        long padded_start = xAxis.start() - ilen;
-        long padded_end = xAxis.end() + ilen;
-
-        long newVisibleStart = startDate;
-        long newVisibleEnd = endDate;
-        if (!first) {
-            newVisibleStart = Math.max(startDate, padded_start);
-            newVisibleEnd = Math.min(endDate, padded_end);
-        }
-        first = false;
-
-        double pixPerTime = j2kWidth / (double) (endDate - startDate);
-        int x0 = (int) ((newVisibleStart - startDate) * pixPerTime + 0.5);
-        int width = (int) ((newVisibleEnd - newVisibleStart) * pixPerTime + 0.5);
-
-        last_padded_end = newVisibleEnd;
-        last_padded_start = newVisibleStart;
-        last_y0 = y0;
-        last_height = height;
-        last_resolution = resolution;
-
-        return new Rectangle(x0, y0, width, height);
-    }
-
-    void draw(Graphics2D g, Rectangle ga, TimeAxis xAxis) {
-        if (!willDraw)
+    // Draws the available tiles of the visible bands and adds the decoders of the missing ones to wanted
+    void draw(Graphics2D g, Rectangle ga, TimeAxis xAxis, Map<RadioTiles.Key, Callable<RadioTiles.Tile>> wanted) {
+        if (!willDraw || endDate <= xAxis.start() || startDate >= xAxis.end())
             return;
 
-        if (hasData()) {
-            int sx0 = 0;
-            int sy0 = 0;
-            int sx1 = bufferedImage.getWidth();
-            int sy1 = bufferedImage.getHeight();
-            long imStart = (long) (startDate + (endDate - startDate) * region.llx / j2kWidth);
-            long imEnd = (long) (startDate + (endDate - startDate) * region.urx / j2kWidth);
-
-            double freqimStart = (startFreq + (endFreq - startFreq) * region.lly / j2kHeight);
-            double freqimEnd = (startFreq + (endFreq - startFreq) * region.ury / j2kHeight);
-
-            int dx0 = xAxis.value2pixel(ga.x, ga.width, imStart);
-            int dx1 = xAxis.value2pixel(ga.x, ga.width, imEnd);
-
-            int dy0 = RadioData.yAxis.value2pixel(ga.y, ga.height, freqimStart);
-            int dy1 = RadioData.yAxis.value2pixel(ga.y, ga.height, freqimEnd);
-
-            g.drawImage(bufferedImage, dx0, dy0, dx1, dy1, sx0, sy0, sx1, sy1, null);
-        } else
-            RadioData.drawString(g, ga, xAxis, "Fetching data");
-    }
-
-    void changeColormap(ColorModel cm) {
-        if (hasData()) {
-            BufferedImage old = bufferedImage;
-            bufferedImage = new BufferedImage(cm, old.getRaster(), false, null);
-            NIOImageFactory.free(old);
+        int dx0 = xAxis.value2pixel(ga.x, ga.width, startDate);
+        int dx1 = xAxis.value2pixel(ga.x, ga.width, endDate);
+        int dy0 = RadioData.yAxis.value2pixel(ga.y, ga.height, startFreq);
+        int dy1 = RadioData.yAxis.value2pixel(ga.y, ga.height, endFreq);
+        ResolutionLevel res = view.getResolutionLevel(Math.max(1, dx1 - dx0), Math.max(1, Math.abs(dy1 - dy0)));
+
+        double f0 = freqFraction(RadioData.yAxis.start());
+        double f1 = freqFraction(RadioData.yAxis.end());
+        int firstBand = (int) (Math.min(f0, f1) * RadioTiles.NUM_BANDS);
+        int lastBand = Math.min((int) (Math.max(f0, f1) * RadioTiles.NUM_BANDS), RadioTiles.NUM_BANDS - 1);
+
+        ArrayList<RadioTiles.Tile> tiles = new ArrayList<>(RadioTiles.NUM_BANDS);
+        for (int band = firstBand; band <= lastBand; band++) {
+            RadioTiles.Key key = new RadioTiles.Key(day, band, res.level);
+            RadioTiles.Tile tile = RadioTiles.get(key);
+            if (tile == null) {
+                wanted.put(key, decoder(band, res));
+                tile = RadioTiles.getNearest(key);
+            }
+            if (tile != null)
+                tiles.add(tile);
+        }
+        if (tiles.size() < lastBand - firstBand + 1)
+            RadioData.drawString(g, ga, Math.max(ga.x, dx0), Math.min(ga.x + ga.width, dx1), "Fetching data");
+
+        for (RadioTiles.Tile tile : tiles) {
+            int tx0 = (int) (dx0 + (dx1 - dx0) * tile.x0);
+            int tx1 = (int) (dx0 + (dx1 - dx0) * tile.x1);
+            int ty0 = (int) (dy0 + (dy1 - dy0) * tile.y0);
+            int ty1 = (int) (dy0 + (dy1 - dy0) * tile.y1);
+            g.drawImage(tile.image, tx0, ty0, tx1, ty1, 0, 0, tile.image.getWidth(), tile.image.getHeight(), null);
         }
     }
 
-    public boolean hasData() {
-        return bufferedImage != null;
+    boolean hasData() {
+        return RadioTiles.hasDay(day);
     }
 
 }
@@ -0,0 +1,195 @@
+package org.helioviewer.jhv.timelines.radio;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.helioviewer.jhv.Log;
+import org.helioviewer.jhv.imagedata.ImageBuffer;
+import org.helioviewer.jhv.threads.EventQueueCallbackExecutor;
+import org.helioviewer.jhv.threads.JHVThread;
+import org.helioviewer.jhv.timelines.draw.DrawController;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+// Spectrogram tiles of the days, by frequency band and resolution level, decoded by a pool of workers
+// shared by all days. Each tile keeps its indexed data beside the colourised image which is drawn,
+// a colormap change recolours the tiles without decoding. Decodes of tiles no longer visible are cancelled.
+// Accessed on the EDT.
+class RadioTiles {
+
+    static final int NUM_BANDS = 4;
+    private static final int MAX_LEVELS = 8;
+
+    private static final int NUM_WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final EventQueueCallbackExecutor executor =
+            new EventQueueCallbackExecutor(
+                    MoreExecutors.listeningDecorator(
+                            new ThreadPoolExecutor(NUM_WORKERS, NUM_WORKERS, 10000L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                                    new JHVThread.NamedThreadFactory("Radio Tiles"))));
+
+    private static final long MAX_BYTES = Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+    private static final Cache<Key, Tile> cache = Caffeine.newBuilder().maximumWeight(MAX_BYTES)
+            .weigher((Key k, Tile t) -> t.data.width * t.data.height * (1 + Integer.BYTES)).build();
+    private static final HashMap<Key, ListenableFuture<Tile>> pending = new HashMap<>();
+    private static final HashSet<Key> failed = new HashSet<>(); // not retried while the day is loaded
+
+    private static volatile int[] colors = new int[256];
+
+    record Key(long day, int band, int level) {
+    }
+
+    // The fractions x0..x1 and y0..y1 of the image of the day covered by the tile
+    static class Tile {
+
+        final ImageBuffer data; // Gray8 indices into the colormap
+        final double x0, x1, y0, y1;
+        BufferedImage image;
+        int[] imageColors;
+
+        Tile(ImageBuffer _data, double _x0, double _x1, double _y0, double _y1) {
+            data = _data;
+            x0 = _x0;
+            x1 = _x1;
+            y0 = _y0;
+            y1 = _y1;
+            imageColors = colors;
+            image = colorise(data, imageColors);
+        }
+
+    }
+
+    static BufferedImage colorise(ImageBuffer data, int[] cmap) {
+        int w = data.width, h = data.height;
+        ByteBuffer indices = (ByteBuffer) data.buffer;
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[w];
+        for (int j = 0; j < h; j++) {
+            for (int i = 0, idx = j * w; i < w; i++, idx++)
+                row[i] = cmap[indices.get(idx) & 0xFF];
+            image.getRaster().setDataElements(0, j, w, 1, row); // keeps the image managed
+        }
+        return image;
+    }
+
+    static void setColors(int[] lut) {
+        int[] cmap = new int[256];
+        for (int i = 0; i < cmap.length; i++)
+            cmap[i] = lut[Math.min(i, lut.length - 1)];
+        colors = cmap;
+
+        cache.asMap().values().forEach(RadioTiles::recolour);
+        DrawController.drawRequest();
+    }
+
+    private static void recolour(Tile tile) {
+        int[] cmap = colors;
+        if (tile.imageColors == cmap)
+            return;
+        executor.submit(() -> colorise(tile.data, cmap), new FutureCallback<>() {
+            @Override
+            public void onSuccess(BufferedImage result) {
+                if (cmap == colors) { // else superseded
+                    tile.image = result;
+                    tile.imageColors = cmap;
+                    DrawController.drawRequest();
+                }
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                Log.error(t);
+            }
+        });
+    }
+
+    @Nullable
+    static Tile get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    // The tile of the closest level available, to draw while the wanted one is decoded
+    @Nullable
+    static Tile getNearest(Key key) {
+        for (int d = 1; d < MAX_LEVELS; d++) {
+            Tile tile = cache.getIfPresent(new Key(key.day, key.band, key.level + d)); // coarser first
+            if (tile != null)
+                return tile;
+            if (key.level - d >= 0 && (tile = cache.getIfPresent(new Key(key.day, key.band, key.level - d))) != null)
+                return tile;
+        }
+        return null;
+    }
+
+    static boolean hasDay(long day) {
+        return cache.asMap().keySet().stream().anyMatch(key -> key.day == day);
+    }
+
+    // Cancels the decodes not wanted anymore and starts the missing ones
+    static void request(Map<Key, Callable<Tile>> wanted) {
+        pending.entrySet().removeIf(e -> {
+            if (wanted.containsKey(e.getKey()))
+                return false;
+            e.getValue().cancel(false);
+            return true;
+        });
+        wanted.forEach((key, decoder) -> {
+            if (!pending.containsKey(key) && !failed.contains(key) && cache.getIfPresent(key) == null)
+                pending.put(key, executor.submit(decoder, new TileCallback(key)));
+        });
+    }
+
+    static void removeDay(long day) {
+        pending.entrySet().removeIf(e -> {
+            if (e.getKey().day != day)
+                return false;
+            e.getValue().cancel(false);
+            return true;
+        });
+        failed.removeIf(key -> key.day == day);
+        cache.asMap().keySet().removeIf(key -> key.day == day);
+    }
+
+    static void clear() {
+        pending.values().forEach(future -> future.cancel(false));
+        pending.clear();
+        failed.clear();
+        cache.invalidateAll();
+    }
+
+    private record TileCallback(Key key) implements FutureCallback<Tile> {
+
+        @Override
+        public void onSuccess(Tile result) {
+            pending.remove(key);
+            cache.put(key, result);
+            recolour(result); // colormap changed meanwhile
+            DrawController.drawRequest();
+        }
+
+        @Override
+        public void onFailure(@Nonnull Throwable t) {
+            if (t instanceof CancellationException) // already removed from pending
+                return;
+            pending.remove(key);
+            failed.add(key);
+            Log.error(t);
+        }
+
+    }
+
+}
@@ -8,6 +8,7 @@ import javax.annotation.Nullable;
 
 import org.helioviewer.jhv.astronomy.Position;
 import org.helioviewer.jhv.base.lut.LUT;
+import org.helioviewer.jhv.imagedata.ImageData;
 import org.helioviewer.jhv.imagedata.ImageDataHandler;
 import org.helioviewer.jhv.io.APIRequest;
 import org.helioviewer.jhv.io.NetFileCache;
@@ -51,6 +52,12 @@ public class BaseView implements View {
     public void decode(Position viewpoint, double pixFactor, float factor) {
     }
 
+    @Nonnull
+    @Override
+    public ImageData decodeFrame(JHVTime time, int height) throws Exception {
+        throw new Exception("Cannot decode: " + uri);
+    }
+
     @Override
     public AtomicBoolean getFrameCacheStatus(int frame) {
         return fullCache;
@@ -2,6 +2,7 @@ package org.helioviewer.jhv.view;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -21,14 +22,33 @@ public class DecodeExecutor {
                                     new JHVThread.NamedThreadFactory("Decoder"),
                                     new ThreadPoolExecutor.DiscardPolicy())));
 
+    // Look-ahead decodes of upcoming movie frames, one at a time beside the decoder of the displayed frame
+    private final LinkedBlockingQueue<Runnable> aheadQueue = new LinkedBlockingQueue<>();
+    private final EventQueueCallbackExecutor aheadExecutor =
+            new EventQueueCallbackExecutor(
+                    MoreExecutors.listeningDecorator(
+                            new ThreadPoolExecutor(1, 1, 10000L, TimeUnit.MILLISECONDS, aheadQueue,
+                                    new JHVThread.NamedThreadFactory("Decoder Ahead"))));
+
     public void decode(Callable<ImageBuffer> callable, DecodeCallback callback) {
         blockingQueue.poll();
         executor.submit(callable, callback);
     }
 
+    public void decodeAhead(Callable<ImageBuffer> callable, DecodeCallback callback) {
+        aheadExecutor.submit(callable, callback);
+    }
+
+    // drops the queued look-ahead decodes, the running one completes
+    public void cancelAhead() {
+        aheadQueue.clear();
+    }
+
     public void abolish() {
         blockingQueue.poll();
         executor.shutdown();
+        aheadQueue.clear();
+        aheadExecutor.shutdown();
     }
 
 }
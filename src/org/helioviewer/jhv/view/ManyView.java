@@ -10,6 +10,7 @@ import javax.annotation.Nullable;
 
 import org.helioviewer.jhv.astronomy.Position;
 import org.helioviewer.jhv.base.lut.LUT;
+import org.helioviewer.jhv.imagedata.ImageData;
 import org.helioviewer.jhv.imagedata.ImageDataHandler;
 import org.helioviewer.jhv.io.APIRequest;
 import org.helioviewer.jhv.metadata.MetaData;
@@ -87,6 +88,13 @@ public class ManyView implements View {
         frameMap.indexedValue(targetFrame).view.decode(viewpoint, pixFactor, factor);
     }
 
+    @Nonnull
+    @Override
+    public ImageData decodeFrame(JHVTime time, int height) throws Exception {
+        FrameInfo frameInfo = frameMap.nearestValue(time);
+        return frameInfo.view.decodeFrame(frameInfo.timeView, height);
+    }
+
     @Nullable
     @Override
     public URI getURI() {
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 import org.helioviewer.jhv.astronomy.Position;
 import org.helioviewer.jhv.base.lut.LUT;
+import org.helioviewer.jhv.imagedata.ImageData;
 import org.helioviewer.jhv.imagedata.ImageDataHandler;
 import org.helioviewer.jhv.io.APIRequest;
 import org.helioviewer.jhv.metadata.MetaData;
@@ -78,6 +79,12 @@ public class NullView implements View {
     public void decode(Position viewpoint, double pixFactor, float factor) {
     }
 
+    @Nonnull
+    @Override
+    public ImageData decodeFrame(JHVTime _time, int height) throws Exception {
+        throw new Exception("Nothing to decode");
+    }
+
     @Nullable
     @Override
     public URI getURI() {
@@ -8,6 +8,7 @@ import javax.annotation.Nullable;
 
 import org.helioviewer.jhv.astronomy.Position;
 import org.helioviewer.jhv.base.lut.LUT;
+import org.helioviewer.jhv.imagedata.ImageData;
 import org.helioviewer.jhv.imagedata.ImageDataHandler;
 import org.helioviewer.jhv.io.APIRequest;
 import org.helioviewer.jhv.metadata.MetaData;
@@ -28,6 +29,11 @@ public interface View {
 
     void decode(Position viewpoint, double pixFactor, float factor);
 
+    // Decodes the frame nearest to time in the calling thread, at the resolution for the requested height
+    // and independently of the displayed frame, for batch work off the EDT
+    @Nonnull
+    ImageData decodeFrame(JHVTime time, int height) throws Exception;
+
     @Nullable
     URI getURI();
 
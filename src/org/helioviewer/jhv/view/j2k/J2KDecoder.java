@@ -2,7 +2,12 @@ package org.helioviewer.jhv.view.j2k;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -17,7 +22,10 @@ import kdu_jni.Kdu_quality_limiter;
 import kdu_jni.Kdu_region_compositor;
 import kdu_jni.Kdu_thread_env;
 
+import org.helioviewer.jhv.Settings;
 import org.helioviewer.jhv.imagedata.ImageBuffer;
+import org.helioviewer.jhv.math.MathUtils;
+import org.helioviewer.jhv.threads.JHVThread;
 import org.helioviewer.jhv.view.j2k.image.DecodeParams;
 import org.helioviewer.jhv.view.j2k.image.SubImage;
 
@@ -36,6 +44,24 @@ record J2KDecoder(J2KView view, DecodeParams params, boolean mgn) implements Cal
 
     private static final ThreadLocal<Kdu_thread_env> localThread = ThreadLocal.withInitial(J2KDecoder::createThreadEnv);
 
+    // Number of horizontal stripes of a frame decoded concurrently, each by its own compositor over the shared source
+    private static final int MIN_STRIPE_HEIGHT = 256;
+    private static int stripes = -1;
+    private static ExecutorService stripeExecutor;
+
+    private static synchronized int numStripes() {
+        if (stripes < 0) {
+            try {
+                stripes = MathUtils.clip(Integer.parseInt(Settings.getProperty("decode.stripes")), 1, Kdu_global.Kdu_get_num_processors());
+            } catch (Exception e) {
+                stripes = 1;
+            }
+            if (stripes > 1)
+                stripeExecutor = Executors.newFixedThreadPool(stripes - 1, new JHVThread.NamedThreadFactory("Decoder Stripe"));
+        }
+        return stripes;
+    }
+
     //private final Stopwatch sw = Stopwatch.createUnstarted();
     //private static final ThreadLocal<StatsAccumulator> localAcc = ThreadLocal.withInitial(StatsAccumulator::new);
 
@@ -45,23 +71,13 @@ record J2KDecoder(J2KView view, DecodeParams params, boolean mgn) implements Cal
         SubImage subImage = params.subImage;
         int frame = params.frame;
         int numComponents = view.getNumComponents(frame);
-        Kdu_region_compositor compositor = createCompositor(view, params.factor < 1 ? qualityLow : qualityHigh);
-
-        Kdu_dims empty = new Kdu_dims();
-        if (numComponents < 3) {
-            // alpha tbd
-            compositor.Add_primitive_ilayer(frame, firstComponent, Kdu_global.KDU_WANT_CODESTREAM_COMPONENTS, empty, empty);
-        } else {
-            compositor.Add_ilayer(frame, empty, empty);
-        }
-
-        compositor.Set_scale(false, false, false, 1f / (1 << params.level), params.factor);
+        Kdu_region_compositor compositor = openCompositor(numComponents);
 
         Kdu_dims requestedRegion = new Kdu_dims();
         requestedRegion.From_u32(subImage.x, subImage.y, subImage.w, subImage.h);
         compositor.Set_buffer_surface(requestedRegion);
 
-        Kdu_compositor_buf compositorBuf = compositor.Get_composition_buffer(empty, true); // modifies empty
+        Kdu_compositor_buf compositorBuf = compositor.Get_composition_buffer(new Kdu_dims(), true);
         Kdu_dims actualRegion = compositorBuf.Get_rendering_region();
 
         Kdu_coords actualPos = actualRegion.Access_pos();
@@ -70,15 +86,73 @@ record J2KDecoder(J2KView view, DecodeParams params, boolean mgn) implements Cal
         Kdu_coords actualSize = actualRegion.Access_size();
         int actualWidth = actualSize.Get_x(), actualHeight = actualSize.Get_y();
 
+        ImageBuffer.Format format = numComponents < 3 ? ImageBuffer.Format.Gray8 : ImageBuffer.Format.ARGB32;
+        // off-heap and pooled, the decoded images are bounded by the ImageBufferCache
+        ImageBuffer ib = ImageBuffer.allocate(actualWidth, actualHeight, format, null);
+        Target target = new Target((ByteBuffer) ib.buffer, actualX, actualY, actualWidth, numComponents);
+
+        //sw.reset().start();
+        int numStripes = Math.min(numStripes(), actualHeight / MIN_STRIPE_HEIGHT);
+        if (numStripes <= 1) {
+            render(compositor, compositorBuf, target);
+            destroyCompositor(compositor);
+        } else {
+            // all stripes are in the rendering coordinates of the whole region, each one is rendered by its own compositor
+            int stripeHeight = (actualHeight + numStripes - 1) / numStripes;
+            ArrayList<Future<?>> stripeFutures = new ArrayList<>(numStripes - 1);
+            try {
+                for (int y = actualY + stripeHeight; y < actualY + actualHeight; y += stripeHeight) {
+                    Kdu_dims stripeRegion = new Kdu_dims();
+                    stripeRegion.From_u32(actualX, y, actualWidth, Math.min(stripeHeight, actualY + actualHeight - y));
+                    stripeFutures.add(stripeExecutor.submit(() -> {
+                        Kdu_region_compositor stripeCompositor = openCompositor(numComponents);
+                        try {
+                            stripeCompositor.Set_buffer_surface(stripeRegion);
+                            render(stripeCompositor, stripeCompositor.Get_composition_buffer(new Kdu_dims(), true), target);
+                        } finally {
+                            destroyCompositor(stripeCompositor);
+                        }
+                        return null;
+                    }));
+                }
+
+                Kdu_dims firstRegion = new Kdu_dims();
+                firstRegion.From_u32(actualX, actualY, actualWidth, stripeHeight);
+                compositor.Set_buffer_surface(firstRegion);
+                render(compositor, compositor.Get_composition_buffer(new Kdu_dims(), true), target);
+            } finally {
+                destroyCompositor(compositor);
+                for (Future<?> stripe : stripeFutures) {
+                    try {
+                        stripe.get();
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof Exception ex ? ex : e;
+                    }
+                }
+            }
+        }
+/*
+        StatsAccumulator acc = localAcc.get();
+        acc.add(sw.elapsed().toNanos() / 1e9);
+        if (view.getMaximumFrameNumber() > 0 && acc.count() == view.getMaximumFrameNumber() + 1)
+            System.out.println(">>> mean: " + acc.mean() + " stddev: " + acc.sampleStandardDeviation());
+*/
+        return ImageBuffer.mgnFilter(ib, mgn);
+    }
+
+    // The output of the decode, the origin is the top left of the whole rendering region
+    private record Target(ByteBuffer buffer, int x, int y, int width, int numComponents) {
+    }
+
+    private static void render(Kdu_region_compositor compositor, Kdu_compositor_buf compositorBuf, Target target) throws KduException {
+        Kdu_coords bufSize = compositorBuf.Get_rendering_region().Access_size();
         int[] srcStride = new int[1];
         long addr = compositorBuf.Get_buf(srcStride, false);
-        ByteBuffer nativeBuffer = MemoryUtil.memByteBuffer(addr, 4 * srcStride[0] * actualHeight).order(ByteOrder.nativeOrder());
-
-        ImageBuffer.Format format = numComponents < 3 ? ImageBuffer.Format.Gray8 : ImageBuffer.Format.ARGB32;
-        byte[] outBuffer = new byte[actualWidth * actualHeight * format.bytes];
+        ByteBuffer nativeBuffer = MemoryUtil.memByteBuffer(addr, 4 * srcStride[0] * bufSize.Get_y()).order(ByteOrder.nativeOrder());
 
+        ByteBuffer outBuffer = target.buffer;
+        int actualWidth = target.width;
         Kdu_dims newRegion = new Kdu_dims();
-        //sw.reset().start();
         while (compositor.Process(MAX_RENDER_SAMPLES, newRegion)) {
             Kdu_coords newSize = newRegion.Access_size();
             int newWidth = newSize.Get_x();
@@ -87,34 +161,39 @@ record J2KDecoder(J2KView view, DecodeParams params, boolean mgn) implements Cal
                 continue;
 
             Kdu_coords newOffset = newRegion.Access_pos();
-            int newX = newOffset.Get_x() - actualX;
-            int newY = newOffset.Get_y() - actualY;
+            int newX = newOffset.Get_x() - target.x;
+            int newY = newOffset.Get_y() - target.y;
 
             int dstIdx = newX + newY * actualWidth;
             int srcIdx = 0;
 
-            if (numComponents < 3) {
+            if (target.numComponents < 3) {
                 for (int j = 0; j < newHeight; ++j, dstIdx += actualWidth, srcIdx += srcStride[0]) {
                     for (int i = 0; i < newWidth; ++i) {
-                        outBuffer[dstIdx + i] = nativeBuffer.get(4 * (srcIdx + i));
+                        outBuffer.put(dstIdx + i, nativeBuffer.get(4 * (srcIdx + i)));
                     }
                 }
             } else {
                 for (int j = 0; j < newHeight; ++j, dstIdx += actualWidth, srcIdx += srcStride[0]) {
-                    nativeBuffer.get(4 * srcIdx, outBuffer, 4 * dstIdx, 4 * newWidth);
+                    outBuffer.put(4 * dstIdx, nativeBuffer, 4 * srcIdx, 4 * newWidth);
                 }
             }
         }
+    }
 
-        destroyCompositor(compositor);
-/*
-        StatsAccumulator acc = localAcc.get();
-        acc.add(sw.elapsed().toNanos() / 1e9);
-        if (view.getMaximumFrameNumber() > 0 && acc.count() == view.getMaximumFrameNumber() + 1)
-            System.out.println(">>> mean: " + acc.mean() + " stddev: " + acc.sampleStandardDeviation());
-*/
-        ImageBuffer ib = new ImageBuffer(actualWidth, actualHeight, format, ByteBuffer.wrap(outBuffer).order(ByteOrder.nativeOrder()));
-        return ImageBuffer.mgnFilter(ib, mgn);
+    private Kdu_region_compositor openCompositor(int numComponents) throws KduException {
+        Kdu_region_compositor compositor = createCompositor(view, params.factor < 1 ? qualityLow : qualityHigh);
+
+        Kdu_dims empty = new Kdu_dims();
+        if (numComponents < 3) {
+            // alpha tbd
+            compositor.Add_primitive_ilayer(params.frame, firstComponent, Kdu_global.KDU_WANT_CODESTREAM_COMPONENTS, empty, empty);
+        } else {
+            compositor.Add_ilayer(params.frame, empty, empty);
+        }
+
+        compositor.Set_scale(false, false, false, 1f / (1 << params.level), params.factor);
+        return compositor;
     }
 
     @Nullable
@@ -122,7 +201,8 @@ record J2KDecoder(J2KView view, DecodeParams params, boolean mgn) implements Cal
         try {
             Kdu_thread_env kte = new Kdu_thread_env();
             kte.Create();
-            int numThreads = Math.min(8, Kdu_global.Kdu_get_num_processors());
+            // share the processors between the stripes decoded concurrently
+            int numThreads = Math.max(1, Math.min(8, Kdu_global.Kdu_get_num_processors() / numStripes()));
             for (int i = 1; i < numThreads; i++)
                 kte.Add_thread();
             return kte;
@@ -1,11 +1,23 @@
 package org.helioviewer.jhv.view.j2k;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import kdu_jni.KduException;
 
 import org.helioviewer.jhv.Log;
+import org.helioviewer.jhv.Settings;
 import org.helioviewer.jhv.gui.UITimer;
+import org.helioviewer.jhv.threads.JHVThread;
 import org.helioviewer.jhv.view.j2k.cache.CacheStatus;
 import org.helioviewer.jhv.view.j2k.image.ReadParams;
 import org.helioviewer.jhv.view.j2k.image.ResolutionSet.ResolutionLevel;
@@ -16,16 +28,34 @@ import org.helioviewer.jhv.view.j2k.io.jpip.JPIPConstants;
 import org.helioviewer.jhv.view.j2k.io.jpip.JPIPQuery;
 import org.helioviewer.jhv.view.j2k.io.jpip.JPIPResponse;
 import org.helioviewer.jhv.view.j2k.io.jpip.JPIPSocket;
-import org.helioviewer.jhv.view.j2k.io.jpip.JPIPStream;
 
 class J2KReader implements Runnable {
 
+    // number of JPIP channels per view used to fill movies, the reader channel included
+    private static final int numChannels = getNumChannels();
+
+    private static int getNumChannels() {
+        try {
+            return Math.max(1, Math.min(8, Integer.parseInt(Settings.getProperty("jpip.channels"))));
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
     private final BooleanSignal readerSignal = new BooleanSignal();
 
     private final Thread myThread;
     private volatile boolean isAbolished;
     private JPIPSocket socket;
 
+    // fill channels connect lazily, each is used by one fill task at a time
+    private static class FillChannel {
+        JPIPSocket socket;
+    }
+
+    private final LinkedBlockingQueue<FillChannel> fillChannels = new LinkedBlockingQueue<>();
+    private final ExecutorService fillPool;
+
     J2KReader(J2KView view) throws KduException, IOException {
         JPIPCache cache = view.getJPIPCache();
         socket = new JPIPSocket(view.getURI(), cache);
@@ -33,6 +63,13 @@ class J2KReader implements Runnable {
 
         myThread = new Thread(this, "Reader " + view.getName());
         myThread.setDaemon(true);
+
+        if (numChannels > 1 && view.getMaximumFrameNumber() > 0) {
+            fillPool = Executors.newFixedThreadPool(numChannels - 1, new JHVThread.NamedThreadFactory("Fill " + view.getName()));
+            for (int i = 1; i < numChannels; i++)
+                fillChannels.add(new FillChannel());
+        } else
+            fillPool = null;
     }
 
     void start() {
@@ -55,6 +92,32 @@ class J2KReader implements Runnable {
                 Log.error(e);
             }
         }
+        closeFillChannels();
+    }
+
+    private static void closeChannel(JPIPSocket channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.error("Error closing socket", e);
+            }
+        }
+    }
+
+    private void closeFillChannels() {
+        if (fillPool == null)
+            return;
+
+        fillPool.shutdownNow();
+        // channels in use are returned by their task, close them too
+        for (FillChannel channel : fillChannels)
+            closeChannel(channel.socket);
+        try {
+            if (fillPool.awaitTermination(1, TimeUnit.SECONDS))
+                fillChannels.forEach(channel -> closeChannel(channel.socket));
+        } catch (InterruptedException ignore) {
+        }
     }
 
     void signalReader(ReadParams params) {
@@ -83,14 +146,8 @@ class J2KReader implements Runnable {
     }
 
     private void initCloseSocket() {
-        if (socket != null) {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                Log.error(e);
-            }
-            socket = null;
-        }
+        closeChannel(socket);
+        socket = null;
     }
 
     private static String createQuery(String fSiz, int layer) {
@@ -105,6 +162,108 @@ class J2KReader implements Runnable {
         return stepQuerys;
     }
 
+    // Loads one frame from the disk cache or over the given channel, returns whether it is complete
+    private static boolean readStep(JPIPSocket channel, J2KView view, JPIPCache cache, String query, int step, int level) throws KduException, IOException {
+        String key = view.getCacheKey(step);
+        if (key != null && JPIPCacheManager.get(key, level, cache, step))
+            return true;
+
+        // not in JPIP cache
+        JPIPResponse res = channel.send(query, cache, step);
+        if (res.isResponseComplete()) { // downloaded
+            if (key != null)
+                JPIPCacheManager.put(key, level, cache, step);
+            return true;
+        }
+        return false;
+    }
+
+    // One pass over the frames of a movie, shared by the reader channel and the fill channels.
+    // Incomplete frames go back at the end of the queue, thus frames may complete out of order.
+    private class Fill {
+
+        private final J2KView view;
+        private final JPIPCache cache;
+        private final CacheStatus cacheStatus;
+        private final String[] stepQuerys;
+        private final int level;
+
+        private final LinkedBlockingDeque<Integer> pending = new LinkedBlockingDeque<>();
+        private final AtomicInteger remaining;
+        private volatile boolean stopped;
+
+        Fill(J2KView _view, String[] _stepQuerys, int firstStep, int _level) {
+            view = _view;
+            cache = view.getJPIPCache();
+            cacheStatus = view.getCacheStatus();
+            stepQuerys = _stepQuerys;
+            level = _level;
+
+            for (int i = 0; i < stepQuerys.length; i++)
+                pending.add((firstStep + i) % stepQuerys.length);
+            remaining = new AtomicInteger(stepQuerys.length);
+        }
+
+        void read(JPIPSocket channel) throws KduException, IOException, InterruptedException {
+            while (!stopped && remaining.get() > 0) {
+                // check whether caching has to be interrupted
+                if (isAbolished || readerSignal.isSignaled() || Thread.interrupted()) {
+                    stopped = true;
+                    break;
+                }
+
+                Integer step = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (step == null) // remaining frames are in flight on other channels
+                    continue;
+
+                boolean downloadComplete = false;
+                try {
+                    downloadComplete = readStep(channel, view, cache, stepQuerys[step], step, level);
+                    if (downloadComplete) {
+                        remaining.decrementAndGet();
+                        cacheStatus.setFrameComplete(view.getSource(), step, level); // tell the cache status
+                    } else {
+                        cacheStatus.setFramePartial(view.getSource(), step); // tell the cache status
+                    }
+                    UITimer.cacheStatusChanged();
+                } finally {
+                    if (!downloadComplete)
+                        pending.add(step);
+                }
+            }
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        boolean isStopped() {
+            return stopped;
+        }
+
+    }
+
+    private Future<?> submitFill(Fill fill) {
+        return fillPool.submit(() -> {
+            FillChannel channel = null;
+            try {
+                channel = fillChannels.take();
+                if (channel.socket == null || channel.socket.isClosed())
+                    channel.socket = new JPIPSocket(fill.view.getURI(), fill.cache);
+                fill.read(channel.socket);
+            } catch (InterruptedException ignore) {
+            } catch (Exception e) { // the reader channel keeps going
+                if (!isAbolished)
+                    Log.warn("Fill channel error: " + e.getMessage());
+                if (channel != null)
+                    closeChannel(channel.socket);
+            } finally {
+                if (channel != null)
+                    fillChannels.add(channel);
+            }
+        });
+    }
+
     @Override
     public void run() {
         while (!isAbolished) {
@@ -124,12 +283,14 @@ class J2KReader implements Runnable {
             int frame = params.decodeParams.frame;
             int level = params.decodeParams.level;
 
-            ResolutionLevel resolution = view.getResolutionLevel(frame, level);
+            // a frame not reached yet is requested at the size of the first frame
+            ResolutionLevel resolution = view.getResolutionLevel(cacheStatus.getFrameStatus(frame, level) == null ? 0 : frame, level);
             int width = resolution.width;
             int height = resolution.height;
 
             view.setDownloading(true);
 
+            Fill fill = null;
             try {
                 if (socket.isClosed()) {
                     // System.out.println(">>> reconnect");
@@ -138,70 +299,39 @@ class J2KReader implements Runnable {
                 // choose cache strategy
                 boolean singleFrame = numFrames <= 1 /* one frame */ || params.priority;
 
-                // build query based on strategy
-                int currentStep;
-                String[] stepQuerys;
                 String fSiz = width + "," + height;
-                if (singleFrame) {
-                    stepQuerys = new String[]{createQuery(fSiz, frame)};
-                    currentStep = frame;
-                } else {
-                    stepQuerys = createMultiQuery(fSiz, numFrames);
-
-                    int partial = cacheStatus.getPartialUntil();
-                    currentStep = partial < numFrames - 1 ? partial : frame;
-                }
-
-                // send queries until everything is complete or caching is interrupted
-                int completeSteps = 0;
                 boolean stopReading = false;
-                while (!stopReading && completeSteps < stepQuerys.length) {
-                    if (currentStep >= stepQuerys.length)
-                        currentStep = 0;
-
-                    // if query is already complete, go to next step
-                    if (stepQuerys[currentStep] == null) {
-                        currentStep++;
-                        continue;
-                    }
-
-                    boolean downloadComplete = false;
-                    {
-                        String key = view.getCacheKey(currentStep);
-                        JPIPStream stream = key == null ? null : JPIPCacheManager.get(key, level);
-                        if (stream == null) { // not in JPIP cache
-                            JPIPResponse res = socket.send(stepQuerys[currentStep], cache, currentStep);
-                            if (res.isResponseComplete()) { // downloaded
-                                downloadComplete = true;
-                                if (key != null && (stream = cache.get(currentStep)) != null)
-                                    JPIPCacheManager.put(key, level, stream);
-                            }
-                        } else {
-                            downloadComplete = true;
-                            cache.put(currentStep, stream);
+                if (singleFrame) {
+                    // send query until complete or caching is interrupted
+                    while (!stopReading) {
+                        if (readStep(socket, view, cache, createQuery(fSiz, frame), frame, level)) {
+                            cacheStatus.setFrameComplete(view.getSource(), frame, level); // tell the cache status
+                            view.signalDecoderFromReader(params); // refresh current image
+                            UITimer.cacheStatusChanged();
+                            break;
+                        }
+                        cacheStatus.setFramePartial(view.getSource(), frame); // tell the cache status
+                        UITimer.cacheStatusChanged();
+                        // check whether caching has to be interrupted
+                        if (readerSignal.isSignaled() || Thread.interrupted()) {
+                            stopReading = true;
                         }
                     }
+                } else {
+                    int partial = cacheStatus.getPartialUntil();
+                    fill = new Fill(view, createMultiQuery(fSiz, numFrames), partial < numFrames - 1 ? partial : frame, level);
 
-                    if (downloadComplete) {
-                        // mark query as complete
-                        completeSteps++;
-                        stepQuerys[currentStep] = null;
-
-                        cacheStatus.setFrameComplete(view.getSource(), currentStep, level); // tell the cache status
-                        if (singleFrame)
-                            view.signalDecoderFromReader(params); // refresh current image
-                    } else {
-                        cacheStatus.setFramePartial(view.getSource(), currentStep); // tell the cache status
+                    List<Future<?>> fills = new ArrayList<>(numChannels - 1);
+                    if (fillPool != null) {
+                        for (int i = 1; i < numChannels; i++)
+                            fills.add(submitFill(fill));
                     }
+                    fill.read(socket);
 
-                    UITimer.cacheStatusChanged();
-
-                    // select next query based on strategy
-                    if (!singleFrame)
-                        currentStep++;
-                    // check whether caching has to be interrupted
-                    if (readerSignal.isSignaled() || Thread.interrupted()) {
-                        stopReading = true;
+                    stopReading = fill.isStopped();
+                    if (!stopReading) { // the last frames may still be in flight on the fill channels
+                        for (Future<?> f : fills)
+                            f.get();
                     }
                 }
 
@@ -209,10 +339,8 @@ class J2KReader implements Runnable {
 
                 // suicide if fully done
                 if (cacheStatus.isComplete(0)) {
-                    try {
-                        socket.close();
-                    } catch (IOException ignore) {
-                    }
+                    closeChannel(socket);
+                    closeFillChannels();
                     return;
                 }
                 // if single frame & not interrupted & incomplete -> signal again to go on reading
@@ -220,12 +348,13 @@ class J2KReader implements Runnable {
                     params.priority = false;
                     readerSignal.signal(params);
                 }
-            } catch (KduException | IOException e) {
-                try {
-                    socket.close();
-                } catch (IOException ioe) {
-                    Log.error("Error closing socket", ioe);
-                }
+            } catch (InterruptedException e) {
+                if (fill != null)
+                    fill.stop();
+            } catch (ExecutionException | KduException | IOException e) {
+                if (fill != null)
+                    fill.stop();
+                closeChannel(socket);
 
                 if (retries++ < 13)
                     readerSignal.signal(params); // signal to retry
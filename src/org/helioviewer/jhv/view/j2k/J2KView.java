@@ -3,6 +3,9 @@ package org.helioviewer.jhv.view.j2k;
 import java.awt.EventQueue;
 import java.lang.ref.Cleaner;
 import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -16,9 +19,11 @@ import org.helioviewer.jhv.astronomy.Position;
 import org.helioviewer.jhv.base.Region;
 import org.helioviewer.jhv.base.lut.LUT;
 import org.helioviewer.jhv.imagedata.ImageBuffer;
+import org.helioviewer.jhv.imagedata.ImageBufferCache;
 import org.helioviewer.jhv.imagedata.ImageData;
 import org.helioviewer.jhv.io.APIRequest;
 import org.helioviewer.jhv.layers.Movie;
+import org.helioviewer.jhv.math.MathUtils;
 import org.helioviewer.jhv.metadata.MetaData;
 import org.helioviewer.jhv.time.JHVTime;
 import org.helioviewer.jhv.time.TimeMap;
@@ -35,15 +40,10 @@ import org.helioviewer.jhv.view.j2k.image.SubImage;
 import org.helioviewer.jhv.view.j2k.io.jpip.JPIPCache;
 import org.helioviewer.jhv.view.j2k.kakadu.KakaduSource;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-
 public class J2KView extends BaseView {
 
     private static final AtomicInteger global_serial = new AtomicInteger(0);
 
-    private static final Cache<DecodeParams, ImageBuffer> decodeCache = Caffeine.newBuilder().softValues().build();
-
     private static final Cleaner reaper = Cleaner.create();
     private final Cleaner.Cleanable abolishable;
 
@@ -152,10 +152,7 @@ public class J2KView extends BaseView {
 
         @Override
         public void run() {
-            for (DecodeParams params : decodeCache.asMap().keySet()) {
-                if (params.serial == aSerial)
-                    decodeCache.invalidate(params);
-            }
+            ImageBufferCache.invalidateIf(key -> key instanceof DecodeParams params && params.serial == aSerial);
             // reader abolish may take too long in stressed conditions
             new Thread(() -> {
                 if (aReader != null) {
@@ -181,7 +178,7 @@ public class J2KView extends BaseView {
 
     @Override
     public void clearCache() {
-        decodeCache.invalidateAll();
+        ImageBufferCache.invalidateIf(key -> key instanceof DecodeParams);
     }
 
     @Override
@@ -290,6 +287,95 @@ public class J2KView extends BaseView {
             signalReader(decodeParams);
         }
         executeDecode(decodeParams);
+
+        if (maxFrame > 0 && Movie.isPlaying() && !Movie.isRecording())
+            decodeAhead(decodeParams, viewpoint, pixFactor, factor);
+        else
+            cancelAhead();
+    }
+
+    // Look-ahead: during playback, the complete frames expected next are decoded into the ImageBufferCache
+    // by a second decoder thread. The window follows the measured decode time and a share of the cache budget.
+    private static final int MAX_AHEAD = 8;
+    private final Set<DecodeParams> aheadPending = new HashSet<>();
+    private int aheadTarget = -1; // target frame of the last look-ahead
+    private int aheadPartial = -1; // frames downloaded at the last look-ahead
+    private int aheadNext = -1; // first frame predicted by the last look-ahead
+    private volatile double decodeMillis = 0; // moving average
+
+    private void cancelAhead() {
+        if (aheadNext != -1) {
+            executor.cancelAhead();
+            aheadPending.clear();
+            aheadNext = -1;
+        }
+        aheadTarget = -1;
+    }
+
+    private int aheadWindow(DecodeParams decodeParams) {
+        int window = (int) Math.ceil(2 * decodeMillis / Math.max(1, Movie.getFrameDelay())) + 1;
+
+        // the frames decoded ahead live in the ImageBufferCache, don't let them evict more than a quarter of it
+        long frameBytes = (long) decodeParams.subImage.w * decodeParams.subImage.h * (getNumComponents(decodeParams.frame) < 3 ? 1 : 4);
+        window = (int) Math.min(window, ImageBufferCache.getBudget() / 4 / Math.max(1, frameBytes));
+
+        return MathUtils.clip(window, 0, MAX_AHEAD);
+    }
+
+    private void decodeAhead(DecodeParams decodeParams, Position viewpoint, double pixFactor, float factor) {
+        int partial = cacheStatus.getPartialUntil();
+        if (targetFrame == aheadTarget && partial == aheadPartial) // nothing new to decode since the last call
+            return;
+        if (targetFrame != aheadNext) // user scrubbed or playback went elsewhere
+            cancelAhead();
+        aheadTarget = targetFrame;
+        aheadPartial = partial;
+
+        int[] frames = Movie.upcomingFrames(targetFrame, maxFrame, aheadWindow(decodeParams));
+        aheadNext = frames.length == 0 ? -1 : frames[0];
+        for (int frame : frames) {
+            if (frame > partial)
+                break;
+            DecodeParams params = getDecodeParams(viewpoint, frame, pixFactor, factor);
+            if (!params.complete) // not yet downloaded
+                break;
+            if (ImageBufferCache.get(params) != null || !aheadPending.add(params))
+                continue;
+
+            executor.decodeAhead(timedDecoder(params), new AheadCallback(params));
+        }
+    }
+
+    private Callable<ImageBuffer> timedDecoder(DecodeParams params) {
+        J2KDecoder decoder = new J2KDecoder(this, params, mgn);
+        return () -> {
+            long start = System.nanoTime();
+            ImageBuffer result = decoder.call();
+            decodeMillis = 0.8 * decodeMillis + 0.2 * (System.nanoTime() - start) / 1e6;
+            return result;
+        };
+    }
+
+    private class AheadCallback extends DecodeCallback {
+
+        private final DecodeParams params;
+
+        AheadCallback(DecodeParams _params) {
+            params = _params;
+        }
+
+        @Override
+        public void onSuccess(ImageBuffer result) {
+            if (aheadPending.remove(params))
+                ImageBufferCache.put(params, result);
+        }
+
+        @Override
+        public void onFailure(@Nonnull Throwable t) {
+            aheadPending.remove(params);
+            super.onFailure(t);
+        }
+
     }
 
     void signalDecoderFromReader(ReadParams params) {
@@ -302,9 +388,9 @@ public class J2KView extends BaseView {
     }
 
     private void executeDecode(DecodeParams params) {
-        ImageBuffer imageBuffer = decodeCache.getIfPresent(params);
+        ImageBuffer imageBuffer = ImageBufferCache.get(params);
         if (imageBuffer == null) {
-            executor.decode(new J2KDecoder(this, params, mgn), new J2KCallback(params));
+            executor.decode(timedDecoder(params), new J2KCallback(params));
         } else {
             sendDataToHandler(params, imageBuffer);
         }
@@ -321,20 +407,67 @@ public class J2KView extends BaseView {
         @Override
         public void onSuccess(ImageBuffer result) {
             if (params.complete)
-                decodeCache.put(params, result);
+                ImageBufferCache.put(params, result);
             sendDataToHandler(params, result);
         }
 
     }
 
-    private void sendDataToHandler(DecodeParams decodeParams, ImageBuffer imageBuffer) {
+    private static final long BATCH_READ_TIMEOUT = 5 * 60 * 1000;
+
+    @Nonnull
+    @Override
+    public ImageData decodeFrame(JHVTime time, int height) throws Exception {
+        int frame = frameMap.nearestValue(time);
+        long deadline = System.currentTimeMillis() + BATCH_READ_TIMEOUT;
+        if (cacheStatus.getFrameStatus(frame, 0) == null) { // the reader did not reach the frame, its resolution set is not known
+            if (reader == null)
+                throw new Exception("Frame " + frame + " not available: " + uri);
+            ResolutionLevel first = cacheStatus.getResolutionSet(0).getNextResolutionLevel(height, height);
+            reader.signalReader(new ReadParams(this, new DecodeParams(serial, frame, first.subImage, first.level, 1, false, metaData[frame].getViewpoint()), true));
+            while (cacheStatus.getFrameStatus(frame, 0) == null) {
+                if (System.currentTimeMillis() > deadline)
+                    throw new Exception("Timeout reading frame " + frame + ": " + uri);
+                Thread.sleep(50);
+            }
+        }
+
+        ResolutionLevel res = cacheStatus.getResolutionSet(frame).getNextResolutionLevel(height, height);
+        AtomicBoolean status = cacheStatus.getFrameStatus(frame, res.level);
+        DecodeParams params = new DecodeParams(serial, frame, res.subImage, res.level, 1, status != null && status.get(), metaData[frame].getViewpoint());
+
+        if (!params.complete) {
+            if (reader == null || status == null)
+                throw new Exception("Frame " + frame + " not available: " + uri);
+            // the reader fetches the prioritized frame, then continues to fill the others
+            reader.signalReader(new ReadParams(this, params, true));
+            while (!status.get()) {
+                if (System.currentTimeMillis() > deadline)
+                    throw new Exception("Timeout reading frame " + frame + ": " + uri);
+                Thread.sleep(50);
+            }
+            params = new DecodeParams(serial, frame, res.subImage, res.level, 1, true, params.viewpoint);
+        }
+
+        ImageBuffer imageBuffer = ImageBufferCache.get(params);
+        if (imageBuffer == null) {
+            imageBuffer = new J2KDecoder(this, params, mgn).call();
+            ImageBufferCache.put(params, imageBuffer);
+        }
+        return createImageData(params, imageBuffer);
+    }
+
+    private ImageData createImageData(DecodeParams decodeParams, ImageBuffer imageBuffer) {
         int frame = decodeParams.frame;
         MetaData m = metaData[frame];
         SubImage roi = decodeParams.subImage;
         ResolutionLevel resolution = getResolutionLevel(frame, decodeParams.level);
         Region r = m.roiToRegion(roi.x, roi.y, roi.w, roi.h, resolution.factorX, resolution.factorY);
-        ImageData data = new ImageData(imageBuffer, m, r, decodeParams.viewpoint);
+        return new ImageData(imageBuffer, m, r, decodeParams.viewpoint);
+    }
 
+    private void sendDataToHandler(DecodeParams decodeParams, ImageBuffer imageBuffer) {
+        ImageData data = createImageData(decodeParams, imageBuffer);
         EventQueue.invokeLater(() -> {
             if (dataHandler != null)
                 dataHandler.handleData(data);
@@ -1,40 +1,28 @@
 package org.helioviewer.jhv.view.j2k;
 
-import java.awt.Rectangle;
 import java.net.URI;
-import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.helioviewer.jhv.astronomy.Position;
+import org.helioviewer.jhv.imagedata.ImageBuffer;
 import org.helioviewer.jhv.io.APIRequest;
-import org.helioviewer.jhv.view.DecodeExecutor;
 import org.helioviewer.jhv.view.j2k.image.DecodeParams;
-import org.helioviewer.jhv.view.j2k.image.ReadParams;
 import org.helioviewer.jhv.view.j2k.image.ResolutionSet.ResolutionLevel;
 import org.helioviewer.jhv.view.j2k.image.SubImage;
 
+// Local spectrogram file, decoded synchronously by region on the threads of the caller;
+// there is no executor, the asynchronous decode of the views is not used
 public class J2KViewCallisto extends J2KView {
 
-    public J2KViewCallisto(DecodeExecutor _executor, APIRequest _request, URI _uri) throws Exception {
-        super(_executor, _request, _uri);
+    public J2KViewCallisto(APIRequest _request, URI _uri) throws Exception {
+        super(null, _request, _uri);
     }
 
-    public void setRegion(Rectangle r) {
-        region = r;
+    // The coarsest resolution level of at least w x h pixels
+    public ResolutionLevel getResolutionLevel(int w, int h) {
+        return cacheStatus.getResolutionSet(0).getNextResolutionLevel(w, h);
     }
 
-    private Rectangle region;
-
-    @Override
-    protected DecodeParams getDecodeParams(Position viewpoint, int frame, double pixFactor, float factor) {
-        ResolutionLevel res = getResolutionLevel(frame, 0);
-        SubImage subImage = new SubImage(region.x, region.y, region.width, region.height, res.width, res.height);
-        AtomicBoolean status = cacheStatus.getFrameStatus(frame, res.level);
-        return new DecodeParams(serial, frame, subImage, res.level, factor, status != null && status.get(), viewpoint);
-    }
-
-    @Override
-    protected void signalReader(DecodeParams decodeParams) { // not used
-        reader.signalReader(new ReadParams(this, decodeParams, true));
+    public ImageBuffer decode(SubImage subImage, int level) throws Exception {
+        return new J2KDecoder(this, new DecodeParams(serial, 0, subImage, level, 1, true, null), false).call();
     }
 
 }
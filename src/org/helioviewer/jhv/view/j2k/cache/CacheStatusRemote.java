@@ -1,6 +1,7 @@
 package org.helioviewer.jhv.view.j2k.cache;
 
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.annotation.Nullable;
 
@@ -10,24 +11,27 @@ import org.helioviewer.jhv.Log;
 import org.helioviewer.jhv.view.j2k.image.ResolutionSet;
 import org.helioviewer.jhv.view.j2k.kakadu.KakaduSource;
 
+// Frames may be reported by several reader channels and complete out of order:
+// readers are lock-free, updates are serialized
 public class CacheStatusRemote implements CacheStatus {
 
     private final int maxFrame;
-    private final ResolutionSet[] resolutionSet;
+    private final AtomicReferenceArray<ResolutionSet> resolutionSet;
 
-    private int partialUntil = 0;
+    private volatile int partialUntil = 0;
 
     public CacheStatusRemote(KakaduSource source, int _maxFrame) throws KduException {
         maxFrame = _maxFrame;
-        resolutionSet = new ResolutionSet[maxFrame + 1];
-        resolutionSet[0] = source.getResolutionSet(0);
+        resolutionSet = new AtomicReferenceArray<>(maxFrame + 1);
+        resolutionSet.set(0, source.getResolutionSet(0));
     }
 
+    // the contiguous run of known frames from the start
     @Override
     public int getPartialUntil() {
         int i;
         for (i = partialUntil; i <= maxFrame; i++) {
-            if (resolutionSet[i] == null)
+            if (resolutionSet.get(i) == null)
                 break;
         }
         partialUntil = Math.max(0, i - 1);
@@ -36,14 +40,15 @@ public class CacheStatusRemote implements CacheStatus {
 
     @Override
     public ResolutionSet getResolutionSet(int frame) {
-        if (resolutionSet[frame] == null) {
+        ResolutionSet set = resolutionSet.get(frame);
+        if (set == null) {
             Log.error("resolutionSet[" + frame + "] is null"); // never happened?
-            return resolutionSet[0];
+            return resolutionSet.get(0);
         }
-        return resolutionSet[frame];
+        return set;
     }
 
-    private boolean fullyComplete;
+    private volatile boolean fullyComplete;
     private static final AtomicBoolean full = new AtomicBoolean(true);
 
     @Override
@@ -52,9 +57,10 @@ public class CacheStatusRemote implements CacheStatus {
             return true;
 
         for (int i = 0; i <= maxFrame; i++) {
-            if (resolutionSet[i] == null)
+            ResolutionSet set = resolutionSet.get(i);
+            if (set == null)
                 return false;
-            AtomicBoolean status = resolutionSet[i].getComplete(level);
+            AtomicBoolean status = set.getComplete(level);
             if (status == null || !status.get())
                 return false;
         }
@@ -68,25 +74,25 @@ public class CacheStatusRemote implements CacheStatus {
     public AtomicBoolean getFrameStatus(int frame, int level) {
         if (fullyComplete)
             return full;
-        if (resolutionSet[frame] == null)
-            return null;
-        return resolutionSet[frame].getComplete(level);
+        ResolutionSet set = resolutionSet.get(frame);
+        return set == null ? null : set.getComplete(level);
     }
 
     @Override
-    public void setFrameComplete(KakaduSource source, int frame, int level) throws KduException {
+    public synchronized void setFrameComplete(KakaduSource source, int frame, int level) throws KduException {
         if (fullyComplete)
             return;
 
         setFramePartial(source, frame);
-        if (resolutionSet[frame] != null)
-            resolutionSet[frame].setComplete(level);
+        ResolutionSet set = resolutionSet.get(frame);
+        if (set != null)
+            set.setComplete(level);
     }
 
     @Override
-    public void setFramePartial(KakaduSource source, int frame) throws KduException {
-        if (resolutionSet[frame] == null) {
-            resolutionSet[frame] = source.getResolutionSet(frame);
+    public synchronized void setFramePartial(KakaduSource source, int frame) throws KduException {
+        if (resolutionSet.get(frame) == null) {
+            resolutionSet.set(frame, source.getResolutionSet(frame));
         }
     }
 
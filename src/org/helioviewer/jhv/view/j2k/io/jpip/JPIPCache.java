@@ -1,5 +1,7 @@
 package org.helioviewer.jhv.view.j2k.io.jpip;
 
+import java.nio.ByteBuffer;
+
 import javax.annotation.Nullable;
 
 import kdu_jni.KduException;
@@ -18,7 +20,12 @@ public class JPIPCache extends Kdu_cache {
         Add_to_databin(data.klassID, frame, data.binID, data.data, data.offset, data.length, data.isFinal, true, false);
     }
 
-    private JPIPStream scan(int frame) throws KduException {
+    void putDatabin(int klassID, int frame, long binID, byte[] data, int length, boolean isFinal) throws KduException {
+        Add_to_databin(klassID, frame, binID, data, 0, length, isFinal, true, false);
+    }
+
+    // Kakadu keeps the scan cursor in the cache, so scans of concurrent puts must not interleave
+    private synchronized JPIPRecord scan(int frame) throws KduException {
         int flags = Kdu_global.KDU_CACHE_SCAN_START | Kdu_global.KDU_CACHE_SCAN_FIX_CODESTREAM;
         int[] klassID = new int[1];
         long[] codestreamID = {frame};
@@ -26,41 +33,32 @@ public class JPIPCache extends Kdu_cache {
         int[] binLen = new int[1];
         boolean[] complete = new boolean[1];
 
-        JPIPStream stream = new JPIPStream();
+        JPIPRecord record = new JPIPRecord(64 * 1024);
+        byte[] data = new byte[0];
         while (Scan_databins(flags, klassID, codestreamID, binID, binLen, complete, null, 0)) {
             if (klassID[0] == KakaduConstants.KDU_META_DATABIN)
                 continue;
 
             flags &= ~Kdu_global.KDU_CACHE_SCAN_START;
-            byte[] data = new byte[binLen[0]];
+            if (data.length < binLen[0])
+                data = new byte[Math.max(binLen[0], 2 * data.length)];
             if (!Scan_databins(flags | Kdu_global.KDU_CACHE_SCAN_NO_ADVANCE, klassID, codestreamID, binID, binLen, complete, data, binLen[0]))
                 break;
 
-            JPIPSegment seg = new JPIPSegment();
-            seg.binID = binID[0];
-            seg.klassID = klassID[0];
-            seg.codestreamID = codestreamID[0];
-            seg.length = binLen[0];
-            seg.data = data;
-            seg.isFinal = complete[0];
-            stream.segments.add(seg);
+            record.add(klassID[0], binID[0], data, binLen[0], complete[0]);
         }
-        return stream;
+        return record;
     }
 
     public void put(int frame, JPIPSegment seg) throws KduException {
         addToKdu(frame, seg);
     }
 
-    public void put(int frame, JPIPStream stream) throws KduException {
-        for (JPIPSegment seg : stream.segments)
-            addToKdu(frame, seg);
-    }
-
     @Nullable
-    public JPIPStream get(int frame) {
+    synchronized ByteBuffer get(int frame, int level) {
         try {
-            return scan(frame);
+            JPIPRecord record = scan(frame);
+            return record.isEmpty() ? null : record.toBuffer(level);
         } catch (Exception e) {
             e.printStackTrace();
         }
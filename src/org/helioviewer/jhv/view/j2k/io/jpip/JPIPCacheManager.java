@@ -1,136 +1,285 @@
 package org.helioviewer.jhv.view.j2k.io.jpip;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
+
+import kdu_jni.KduException;
 
 import org.helioviewer.jhv.JHVDirectory;
 import org.helioviewer.jhv.Log;
 import org.helioviewer.jhv.io.FileUtils;
+import org.helioviewer.jhv.threads.JHVThread;
 
 import org.ehcache.Cache;
 import org.ehcache.PersistentCacheManager;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.CacheManagerBuilder;
-import org.ehcache.config.builders.ExpiryPolicyBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
-import org.ehcache.expiry.ExpiryPolicy;
 import org.ehcache.config.units.EntryUnit;
 import org.ehcache.config.units.MemoryUnit;
 
+// Disk store of the JPIP databins, one packed record file per (sourceId+milli) key,
+// with the level of the record in its header. Records are read through memory-mapped files.
 public class JPIPCacheManager {
 
     static {
         Logger.getLogger("org.ehcache").setLevel(Level.WARNING); // shutup Ehcache info logs
     }
 
-    private static final Path levelCacheDir = Path.of(JHVDirectory.CACHE.getPath(), "JPIPLevel-3");
-    private static final Path streamCacheDir = Path.of(JHVDirectory.CACHE.getPath(), "JPIPStream-3");
-
-    private static PersistentCacheManager levelManager;
-    private static PersistentCacheManager streamManager;
-    private static Cache<String, Integer> levelCache;
-    private static Cache<String, JPIPStream> streamCache;
-    private static Thread hook;
+    private static final Path legacyLevelCacheDir = Path.of(JHVDirectory.CACHE.getPath(), "JPIPLevel-3");
+    private static final Path legacyStreamCacheDir = Path.of(JHVDirectory.CACHE.getPath(), "JPIPStream-3");
+    private static final Path cacheDir = Path.of(JHVDirectory.CACHE.getPath(), "JPIPStream-4");
 
-    public static void init() {
-        deleteDirs("JPIPLevel", "JPIPStream", "JPIPLevel-2", "JPIPStream-2"); // delete old versions
+    private static final long EXPIRY = Duration.ofDays(7).toMillis(); // time to idle
+    private static final long MAX_SIZE = 8L * 1024 * 1024 * 1024;
+    private static final long EVICT_SIZE = MAX_SIZE - MAX_SIZE / 8;
 
-        ExpiryPolicy<Object, Object> expiryPolicy = ExpiryPolicyBuilder.timeToIdleExpiration(Duration.ofDays(7));
+    private static final ExecutorService maintenance = Executors.newSingleThreadExecutor(new JHVThread.NamedThreadFactory("JPIP Cache"));
+    private static final AtomicLong size = new AtomicLong();
+    private static final AtomicBoolean evicting = new AtomicBoolean();
 
-        levelManager = CacheManagerBuilder.newCacheManagerBuilder()
-                .with(CacheManagerBuilder.persistence(levelCacheDir.toString()))
-                .withCache("JPIPLevel", CacheConfigurationBuilder
-                        .newCacheConfigurationBuilder(String.class, Integer.class,
-                                ResourcePoolsBuilder.newResourcePoolsBuilder()
-                                        .heap(10000, EntryUnit.ENTRIES)
-                                        .disk(10, MemoryUnit.MB, true))
-                        .withExpiry(expiryPolicy))
-                .build(true);
-        streamManager = CacheManagerBuilder.newCacheManagerBuilder()
-                .with(CacheManagerBuilder.persistence(streamCacheDir.toString()))
-                .withCache("JPIPStream", CacheConfigurationBuilder
-                        .newCacheConfigurationBuilder(String.class, JPIPStream.class,
-                                ResourcePoolsBuilder.newResourcePoolsBuilder()
-                                        .disk(8, MemoryUnit.GB, true))
-                        .withExpiry(expiryPolicy))
-                .build(true);
+    public static void init() throws IOException {
+        deleteDirs("JPIPLevel", "JPIPStream", "JPIPLevel-2", "JPIPStream-2"); // delete old versions
+        Files.createDirectories(cacheDir);
 
-        if (hook == null) {
-            hook = new Thread(JPIPCacheManager::close);
-            Runtime.getRuntime().addShutdownHook(hook);
-        }
+        maintenance.execute(() -> {
+            try {
+                FileUtils.deleteFromDir(cacheDir, EXPIRY, false);
+                size.addAndGet(FileUtils.diskUsage(cacheDir)); // puts may already have counted, overcount at worst
+            } catch (Exception e) {
+                Log.error(e);
+            }
+            migrate();
+        });
+    }
 
-        streamCache = streamManager.getCache("JPIPStream", String.class, JPIPStream.class);
-        levelCache = levelManager.getCache("JPIPLevel", String.class, Integer.class);
+    private static Path getPath(String key) {
+        return cacheDir.resolve(key);
     }
 
-    @Nullable
-    public static JPIPStream get(@Nonnull String key, int level) {
+    // Loads the record of key into the Kakadu cache if it exists at least for the requested level;
+    // an expired record is deleted, so that the following put stores it anew
+    public static boolean get(@Nonnull String key, int level, JPIPCache cache, int frame) {
+        Path path = getPath(key);
         try {
-            Integer clevel = levelCache.get(key);
-            if (clevel != null && clevel <= level)
-                return streamCache.get(key);
-        } catch (Exception e) { // might get interrupted
+            long now = System.currentTimeMillis();
+            if (now - Files.getLastModifiedTime(path).toMillis() > EXPIRY) {
+                long oldSize = Files.size(path);
+                if (delete(path))
+                    size.addAndGet(-oldSize);
+                return false;
+            }
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer record = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (JPIPRecord.getLevel(record) > level)
+                    return false;
+
+                JPIPRecord.load(record, cache, frame);
+            }
+            Files.setLastModifiedTime(path, FileTime.fromMillis(now));
+            return true;
+        } catch (NoSuchFileException ignore) {
+        } catch (IOException | KduException e) { // might get interrupted
             Log.error(e);
+            delete(path);
         }
-        return null;
+        return false;
     }
 
-    public static void put(@Nonnull String key, int level, @Nonnull JPIPStream stream) {
+    // Stores the databins of frame from the Kakadu cache unless a record at the same or a better level exists
+    public static void put(@Nonnull String key, int level, JPIPCache cache, int frame) {
+        Path path = getPath(key);
         try {
-            Integer clevel = levelCache.get(key);
-            if (clevel == null || clevel > level) {
-                levelCache.put(key, level);
-                streamCache.put(key, stream);
+            long oldSize = 0;
+            if (Files.exists(path)) {
+                if (getLevel(path) <= level)
+                    return;
+                oldSize = Files.size(path);
+            }
+
+            ByteBuffer record = cache.get(frame, level);
+            if (record == null)
+                return;
+
+            long newSize = record.remaining();
+            Path tmp = Files.createTempFile(cacheDir, key, ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (record.hasRemaining())
+                    channel.write(record);
             }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (size.addAndGet(newSize - oldSize) > MAX_SIZE && evicting.compareAndSet(false, true))
+                maintenance.execute(JPIPCacheManager::evict);
         } catch (Exception e) {
             Log.error(e);
         }
     }
 
-    private static void deleteDirs(String... dirs) {
-        for (String dir : dirs) { // delete old versions
-            try {
-                FileUtils.deleteDir(Path.of(JHVDirectory.CACHE.getPath(), dir));
-            } catch (Exception ignore) {
-            }
+    private static int getLevel(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(JPIPRecord.HEADER_SIZE);
+            channel.read(header);
+            return JPIPRecord.getLevel(header.flip());
+        } catch (IOException e) {
+            return Integer.MAX_VALUE; // unreadable record, replace it
         }
     }
 
-    private static void close() {
+    private record Entry(Path path, long time, long size) {
+    }
+
+    // Deletes least recently used records until below the size cap
+    private static void evict() {
         try {
-            levelManager.close();
-            streamManager.close();
+            List<Entry> entries = new ArrayList<>();
+            long total = 0;
+            try (Stream<Path> stream = Files.list(cacheDir)) {
+                for (Path p : (Iterable<Path>) stream::iterator) {
+                    try {
+                        Entry entry = new Entry(p, Files.getLastModifiedTime(p).toMillis(), Files.size(p));
+                        entries.add(entry);
+                        total += entry.size;
+                    } catch (IOException ignore) { // concurrently replaced
+                    }
+                }
+            }
+            entries.sort(Comparator.comparingLong(Entry::time));
+
+            for (Entry entry : entries) {
+                if (total <= EVICT_SIZE)
+                    break;
+                if (delete(entry.path)) {
+                    total -= entry.size;
+                    size.addAndGet(-entry.size); // keeps the concurrent puts
+                }
+            }
         } catch (Exception e) {
             Log.error(e);
+        } finally {
+            evicting.set(false);
         }
     }
 
-    public static void clear() {
-        close();
+    private static boolean delete(Path path) {
         try {
-            levelManager.destroy();
-            streamManager.destroy();
-        } catch (Exception e) {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
             Log.error(e);
         }
-        init();
+        return false;
+    }
+
+    // Converts the Java-serialized JPIPStream-3 cache into records, then deletes it. Its entries have
+    // no access time, the records get the time of the last write to the legacy store and expire from it.
+    private static void migrate() {
+        if (!Files.isDirectory(legacyStreamCacheDir) || !Files.isDirectory(legacyLevelCacheDir))
+            return;
+
+        FileTime lastUse;
+        try (Stream<Path> stream = Files.walk(legacyStreamCacheDir)) {
+            long last = 0;
+            for (Path p : (Iterable<Path>) stream::iterator)
+                last = Math.max(last, Files.getLastModifiedTime(p).toMillis());
+            lastUse = FileTime.fromMillis(last);
+        } catch (IOException | UncheckedIOException e) {
+            lastUse = FileTime.fromMillis(0);
+        }
+        if (System.currentTimeMillis() - lastUse.toMillis() > EXPIRY) {
+            Log.info("JPIP cache entries expired, not migrated");
+            deleteDirs(legacyLevelCacheDir.getFileName().toString(), legacyStreamCacheDir.getFileName().toString());
+            return;
+        }
+
+        try (PersistentCacheManager levelManager = CacheManagerBuilder.newCacheManagerBuilder()
+                .with(CacheManagerBuilder.persistence(legacyLevelCacheDir.toString()))
+                .withCache("JPIPLevel", CacheConfigurationBuilder
+                        .newCacheConfigurationBuilder(String.class, Integer.class,
+                                ResourcePoolsBuilder.newResourcePoolsBuilder()
+                                        .heap(10000, EntryUnit.ENTRIES)
+                                        .disk(10, MemoryUnit.MB, true)))
+                .build(true);
+             PersistentCacheManager streamManager = CacheManagerBuilder.newCacheManagerBuilder()
+                     .with(CacheManagerBuilder.persistence(legacyStreamCacheDir.toString()))
+                     .withCache("JPIPStream", CacheConfigurationBuilder
+                             .newCacheConfigurationBuilder(String.class, JPIPStream.class,
+                                     ResourcePoolsBuilder.newResourcePoolsBuilder()
+                                             .disk(8, MemoryUnit.GB, true)))
+                     .build(true)) {
+            Cache<String, Integer> levelCache = levelManager.getCache("JPIPLevel", String.class, Integer.class);
+            Cache<String, JPIPStream> streamCache = streamManager.getCache("JPIPStream", String.class, JPIPStream.class);
+
+            int count = 0;
+            for (Cache.Entry<String, Integer> entry : levelCache) {
+                String key = entry.getKey();
+                Path path = getPath(key);
+                JPIPStream stream = streamCache.get(key);
+                if (stream == null || Files.exists(path))
+                    continue;
+
+                ByteBuffer record = JPIPRecord.fromStream(stream, entry.getValue());
+                Path tmp = Files.createTempFile(cacheDir, key, ".tmp");
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    while (record.hasRemaining())
+                        channel.write(record);
+                }
+                Files.setLastModifiedTime(tmp, lastUse);
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+                size.addAndGet(Files.size(path));
+                count++;
+            }
+            Log.info("Migrated " + count + " JPIP cache entries");
+        } catch (Exception e) {
+            Log.error("JPIP cache migration error", e);
+        }
+        deleteDirs(legacyLevelCacheDir.getFileName().toString(), legacyStreamCacheDir.getFileName().toString());
+    }
+
+    private static void deleteDirs(String... dirs) {
+        for (String dir : dirs) { // delete old versions
+            try {
+                FileUtils.deleteDir(Path.of(JHVDirectory.CACHE.getPath(), dir));
+            } catch (Exception ignore) {
+            }
+        }
+    }
+
+    public static void clear() throws IOException {
+        FileUtils.deleteFromDir(cacheDir, -1, false);
+        size.set(0);
     }
 
     public static long getSize() {
-        long size = 0;
+        long total = 0;
         try {
-            size += FileUtils.diskUsage(levelCacheDir);
-            size += FileUtils.diskUsage(streamCacheDir);
+            total += FileUtils.diskUsage(cacheDir);
         } catch (Exception e) {
             Log.error(e);
         }
-        return size;
+        return total;
     }
 
 }
@@ -0,0 +1,91 @@
+package org.helioviewer.jhv.view.j2k.io.jpip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import kdu_jni.KduException;
+
+// Packed on-disk form of the databins of one frame, all segments back to back in one contiguous record:
+//   header:  int magic, int level, int number of segments, int payload length
+//   segment: int klassID, long binID, int length (high bit set if final), byte[length] data
+// Segments are always complete databins starting at offset 0 and belong to the frame the record is keyed by.
+class JPIPRecord {
+
+    private static final int MAGIC = 0x4a505034; // JPP4
+    private static final int FINAL = 0x80000000;
+
+    static final int HEADER_SIZE = 16;
+    private static final int SEGMENT_HEADER_SIZE = 16;
+
+    private ByteBuffer buffer;
+    private int numSegments;
+
+    JPIPRecord(int capacity) {
+        buffer = ByteBuffer.allocate(HEADER_SIZE + capacity);
+        buffer.position(HEADER_SIZE);
+    }
+
+    void add(int klassID, long binID, byte[] data, int length, boolean isFinal) {
+        if (buffer.remaining() < SEGMENT_HEADER_SIZE + length) {
+            int capacity = Math.max(2 * buffer.capacity(), buffer.position() + SEGMENT_HEADER_SIZE + length);
+            buffer = ByteBuffer.allocate(capacity).put(buffer.flip());
+        }
+        buffer.putInt(klassID).putLong(binID).putInt(isFinal ? length | FINAL : length).put(data, 0, length);
+        numSegments++;
+    }
+
+    boolean isEmpty() {
+        return numSegments == 0;
+    }
+
+    // Seals the record for the given level, the returned buffer is ready to be written
+    ByteBuffer toBuffer(int level) {
+        int end = buffer.position();
+        return buffer.putInt(0, MAGIC).putInt(4, level).putInt(8, numSegments).putInt(12, end - HEADER_SIZE).flip();
+    }
+
+    // Returns the level from the header starting at the buffer position, without consuming it
+    static int getLevel(ByteBuffer header) throws IOException {
+        int pos = header.position();
+        if (header.remaining() < HEADER_SIZE || header.getInt(pos) != MAGIC)
+            throw new IOException("Corrupt JPIP cache record");
+        return header.getInt(pos + 4);
+    }
+
+    // Feeds the databins straight into the Kakadu cache, through one scratch array for all segments
+    static void load(ByteBuffer record, JPIPCache cache, int frame) throws IOException, KduException {
+        getLevel(record);
+        if (record.remaining() - HEADER_SIZE != record.getInt(record.position() + 12))
+            throw new IOException("Truncated JPIP cache record");
+        int numSegments = record.getInt(record.position() + 8);
+        record.position(record.position() + HEADER_SIZE);
+
+        byte[] scratch = new byte[0];
+        for (int i = 0; i < numSegments; i++) {
+            if (record.remaining() < SEGMENT_HEADER_SIZE)
+                throw new IOException("Truncated JPIP cache record");
+            int klassID = record.getInt();
+            long binID = record.getLong();
+            int length = record.getInt();
+            boolean isFinal = (length & FINAL) != 0;
+            length &= ~FINAL;
+            if (record.remaining() < length)
+                throw new IOException("Truncated JPIP cache record");
+
+            if (scratch.length < length)
+                scratch = new byte[Math.max(length, 2 * scratch.length)];
+            record.get(scratch, 0, length);
+            cache.putDatabin(klassID, frame, binID, scratch, length, isFinal);
+        }
+    }
+
+    // Converts a stream of the legacy Java-serialized cache
+    static ByteBuffer fromStream(JPIPStream stream, int level) {
+        JPIPRecord record = new JPIPRecord(0);
+        for (JPIPSegment seg : stream.segments) {
+            record.add(seg.klassID, seg.binID, seg.data == null ? new byte[0] : seg.data, seg.length, seg.isFinal);
+        }
+        return record.toBuffer(level);
+    }
+
+}
@@ -42,10 +42,10 @@ public class JPIPResponse {
     // The first byte of the last VBAS read
     private int vbasFstByte = 0;
 
-    // Reads an VBAS integer from the stream. The length in bytes of the VBAS is
+    // Reads an VBAS integer from the window. The length in bytes of the VBAS is
     // stored in the vbasLength variable, and the first byte of the
     // VBAS is stored in the vbasFstByte variable.
-    private long readVBAS(InputStream in) throws IOException {
+    private long readVBAS(JPIPWindow in) throws IOException {
         vbasLength = 0;
         long value = 0;
         int c;
@@ -53,7 +53,7 @@ public class JPIPResponse {
             if (vbasLength >= 9)
                 throw new ProtocolException("VBAS length not supported");
 
-            if ((c = in.read()) < 0) {
+            if ((c = in.get()) < 0) {
                 if (vbasLength > 0)
                     throw new EOFException("EOF reached before completing VBAS");
                 else
@@ -70,23 +70,26 @@ public class JPIPResponse {
         return value;
     }
 
-    // Reads the next data segment from the stream, and stores its information
-    // in the JPIPSegment object passed as parameter. The data
-    // buffer is not reallocated every time. It is only reallocated if the next
+    // Reads the next data segment from the window, and stores its information
+    // in the JPIPSegment object of the window. The data buffer is not
+    // reallocated every time. It is only reallocated if the next
     // data length is bigger than the previous one.
     @Nullable
-    private JPIPSegment readSegment(InputStream in) throws IOException {
+    private JPIPSegment readSegment(JPIPWindow in) throws IOException {
         long id;
         if ((id = readVBAS(in)) < 0)
             return null;
 
-        JPIPSegment seg = new JPIPSegment();
+        JPIPSegment seg = in.segment;
         seg.binID = id;
+        seg.aux = 0;
+        seg.offset = 0;
+        seg.isFinal = false;
 
         if (vbasFstByte == 0) {
             seg.isEOR = true;
 
-            if ((seg.binID = in.read()) < 0)
+            if ((seg.binID = in.get()) < 0)
                 throw new EOFException("EOF reached before completing EOR message");
 
             seg.length = (int) readVBAS(in);
@@ -117,26 +120,17 @@ public class JPIPResponse {
                 seg.aux = readVBAS(in);
         }
 
-        if (seg.length > 0) {
-            seg.data = new byte[seg.length];
-
-            int offset = 0;
-            int len = seg.length;
-            while (len != 0) {
-                int read = in.read(seg.data, offset, len);
-                if (read == -1)
-                    throw new EOFException("Unexpected EOF");
-                len -= read;
-                offset += read;
-            }
-        }
+        if (seg.length > 0)
+            in.readData(seg.length);
 
         return seg;
     }
 
-    public void readSegments(InputStream in, JPIPCache cache, int frame) throws KduException, IOException {
+    void readSegments(InputStream in, JPIPWindow window, JPIPCache cache, int frame) throws KduException, IOException {
+        window.reset(in);
+
         JPIPSegment seg;
-        while ((seg = readSegment(in)) != null) {
+        while ((seg = readSegment(window)) != null) {
             if (seg.isEOR)
                 status = seg.binID;
             else if (seg.isFinal || seg.length > 0) { // avoid pointless segments
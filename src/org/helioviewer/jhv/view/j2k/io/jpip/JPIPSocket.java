@@ -32,6 +32,9 @@ public class JPIPSocket extends HTTPSocket {
      */
     private String jpipPath;
 
+    // Reused for all responses on this connection
+    private final JPIPWindow window = new JPIPWindow();
+
     private static final String[] cnewParams = {"cid", "transport", "host", "path", "port", "auxport"};
 
     public JPIPSocket(URI uri, JPIPCache cache) throws KduException, IOException {
@@ -133,7 +136,7 @@ public class JPIPSocket extends HTTPSocket {
 
         JPIPResponse jpipRes = new JPIPResponse(res.getHeader("JPIP-cnew"));
         try (InputStream in = input) {
-            jpipRes.readSegments(in, cache, frame);
+            jpipRes.readSegments(in, window, cache, frame);
         }
         // totalLength += transferInput.getTotalLength();
 
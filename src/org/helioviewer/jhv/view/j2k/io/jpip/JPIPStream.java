@@ -4,7 +4,8 @@ import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
 
-public class JPIPStream implements Serializable {
+// Value type of the legacy Java-serialized JPIPStream-3 cache, kept only for migrating it
+class JPIPStream implements Serializable {
 
     @Serial
     private static final long serialVersionUID = JPIPSegment.serialVersionUID;
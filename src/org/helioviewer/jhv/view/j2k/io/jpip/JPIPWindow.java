@@ -0,0 +1,65 @@
+package org.helioviewer.jhv.view.j2k.io.jpip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// Buffered window over the body of a JPP-stream response. It is owned by one JPIPSocket
+// and reused across responses, together with the segment and its data buffer.
+class JPIPWindow {
+
+    // must not exceed the buffer of ByteChannelInputStream, which blocks until the whole request is read
+    private static final int SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+    private InputStream in;
+
+    final JPIPSegment segment = new JPIPSegment();
+
+    JPIPWindow() {
+        segment.data = new byte[SIZE];
+    }
+
+    void reset(InputStream _in) {
+        in = _in;
+        buffer.clear().flip();
+    }
+
+    // Refills the window, returns false at the end of the body
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read = in.read(buffer.array(), 0, SIZE);
+        if (read < 0) {
+            buffer.flip();
+            return false;
+        }
+        buffer.limit(read);
+        return true;
+    }
+
+    // Returns the next byte or -1 at the end of the body
+    int get() throws IOException {
+        if (!buffer.hasRemaining() && !fill())
+            return -1;
+        return buffer.get() & 0xFF;
+    }
+
+    // Reads the data of the current segment into its buffer, which is only reallocated if it is too small
+    void readData(int length) throws IOException {
+        if (segment.data.length < length)
+            segment.data = new byte[Math.max(length, 2 * segment.data.length)];
+
+        byte[] data = segment.data;
+        int offset = Math.min(length, buffer.remaining());
+        buffer.get(data, 0, offset);
+        // the rest bypasses the window
+        while (offset < length) {
+            int read = in.read(data, offset, Math.min(SIZE, length - offset));
+            if (read == -1)
+                throw new EOFException("Unexpected EOF");
+            offset += read;
+        }
+    }
+
+}
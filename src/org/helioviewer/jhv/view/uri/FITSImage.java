@@ -19,6 +19,7 @@ import nom.tam.image.compression.hdu.CompressedImageHDU;
 import nom.tam.util.Cursor;
 
 import org.helioviewer.jhv.imagedata.ImageBuffer;
+import org.helioviewer.jhv.imagedata.ImageBufferPool;
 import org.helioviewer.jhv.io.FileUtils;
 import org.helioviewer.jhv.io.NetClient;
 import org.helioviewer.jhv.math.MathUtils;
@@ -145,11 +146,12 @@ class FITSImage implements URIImageReader {
 
         if (bitpix == Bitpix.BYTE) {
             byte[][] inData = (byte[][]) pixelData;
-            byte[] outData = new byte[width * height];
+            ImageBuffer ib = ImageBuffer.allocate(width, height, ImageBuffer.Format.Gray8, null);
+            ByteBuffer outData = (ByteBuffer) ib.buffer;
             for (int j = 0; j < height; j++) {
-                System.arraycopy(inData[j], 0, outData, width * (height - 1 - j), width);
+                outData.put(width * (height - 1 - j), inData[j], 0, width);
             }
-            return new ImageBuffer(width, height, ImageBuffer.Format.Gray8, ByteBuffer.wrap(outData));
+            return ib;
         }
 
         double bzero = hdu.getBZero();
@@ -172,8 +174,9 @@ class FITSImage implements URIImageReader {
         double range = minMax[1] - minMax[0];
         // System.out.println(">>> " + minMax[0] + ' ' + minMax[1]);
 
-        short[] outData = new short[width * height];
-        float[] lut = new float[65536];
+        float[] lut = ImageBufferPool.acquireLut();
+        ImageBuffer ib = ImageBuffer.allocatePooledLut(width, height, ImageBuffer.Format.Gray16, lut);
+        ShortBuffer outData = (ShortBuffer) ib.buffer;
         switch (bitpix) {
             case SHORT, INTEGER, LONG, FLOAT -> {
                 double scale = 65535. / Math.pow(range, GAMMA);
@@ -183,7 +186,7 @@ class FITSImage implements URIImageReader {
                         float v = getValue(bitpix, lineData, i, blank, bzero, bscale);
                         int p = (int) MathUtils.clip(scale * Math.pow(v - minMax[0], GAMMA) + .5, 0, 65535);
                         lut[p] = v;
-                        outData[width * (height - 1 - j) + i] = v == ImageBuffer.BAD_PIXEL ? 0 : (short) p;
+                        outData.put(width * (height - 1 - j) + i, v == ImageBuffer.BAD_PIXEL ? 0 : (short) p);
                     }
                 }
             }
@@ -195,12 +198,12 @@ class FITSImage implements URIImageReader {
                         float v = getValue(bitpix, lineData, i, blank, bzero, bscale);
                         int p = (int) MathUtils.clip(scale * Math.log1p(v - minMax[0]) + .5, 0, 65535);
                         lut[p] = v;
-                        outData[width * (height - 1 - j) + i] = v == ImageBuffer.BAD_PIXEL ? 0 : (short) p;
+                        outData.put(width * (height - 1 - j) + i, v == ImageBuffer.BAD_PIXEL ? 0 : (short) p);
                     }
                 }
             }
         }
-        return new ImageBuffer(width, height, ImageBuffer.Format.Gray16, ShortBuffer.wrap(outData), lut);
+        return ib;
     }
 
     private static final String nl = System.getProperty("line.separator");
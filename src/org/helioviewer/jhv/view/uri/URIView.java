@@ -8,22 +8,19 @@ import javax.annotation.Nonnull;
 import org.helioviewer.jhv.astronomy.Position;
 import org.helioviewer.jhv.base.Region;
 import org.helioviewer.jhv.imagedata.ImageBuffer;
+import org.helioviewer.jhv.imagedata.ImageBufferCache;
 import org.helioviewer.jhv.imagedata.ImageData;
 import org.helioviewer.jhv.io.APIRequest;
 import org.helioviewer.jhv.metadata.MetaData;
 import org.helioviewer.jhv.metadata.PixelBasedMetaData;
 import org.helioviewer.jhv.metadata.XMLMetaDataContainer;
+import org.helioviewer.jhv.time.JHVTime;
 import org.helioviewer.jhv.view.BaseView;
 import org.helioviewer.jhv.view.DecodeCallback;
 import org.helioviewer.jhv.view.DecodeExecutor;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-
 public class URIView extends BaseView {
 
-    private static final Cache<URI, ImageBuffer> decodeCache = Caffeine.newBuilder().softValues().build();
-
     public enum URIType {
 
         FITS {
@@ -72,7 +69,7 @@ public class URIView extends BaseView {
 
     @Override
     public void decode(Position viewpoint, double pixFactor, float factor) {
-        ImageBuffer imageBuffer = decodeCache.getIfPresent(uri);
+        ImageBuffer imageBuffer = ImageBufferCache.get(uri);
         if (imageBuffer == null) {
             executor.decode(new URIDecoder(uri, reader, metaData[0].getMinMax(), mgn), new URICallback(viewpoint));
         } else {
@@ -80,6 +77,17 @@ public class URIView extends BaseView {
         }
     }
 
+    @Nonnull
+    @Override
+    public ImageData decodeFrame(JHVTime time, int height) throws Exception {
+        ImageBuffer imageBuffer = ImageBufferCache.get(uri);
+        if (imageBuffer == null) {
+            imageBuffer = new URIDecoder(uri, reader, metaData[0].getMinMax(), mgn).call();
+            ImageBufferCache.put(uri, imageBuffer);
+        }
+        return new ImageData(imageBuffer, metaData[0], imageRegion, metaData[0].getViewpoint());
+    }
+
     private class URICallback extends DecodeCallback {
 
         private final Position viewpoint;
@@ -90,7 +98,7 @@ public class URIView extends BaseView {
 
         @Override
         public void onSuccess(ImageBuffer result) {
-            decodeCache.put(uri, result);
+            ImageBufferCache.put(uri, result);
             sendDataToHandler(result, viewpoint);
         }
 
@@ -112,12 +120,12 @@ public class URIView extends BaseView {
 
     @Override
     public void abolish() {
-        decodeCache.invalidate(uri);
+        ImageBufferCache.invalidate(uri);
     }
 
     @Override
     public void clearCache() {
-        decodeCache.invalidateAll();
+        ImageBufferCache.invalidateIf(key -> key instanceof URI);
     }
 
 }